@@ -0,0 +1,53 @@
+// Runs after `npm run build` (as the postbuild script): writes a Brotli (.br)
+// and a gzip (.gz) copy next to each compressible file in build/, which the
+// backend sends to browsers that accept them (see FrontendAssetService), so
+// nothing is compressed per request.
+const fs = require("fs");
+const path = require("path");
+const zlib = require("zlib");
+
+const BUILD_DIR = path.join(__dirname, "..", "build");
+const COMPRESSIBLE = /\.(html|js|css|json|map|svg|txt|ico)$/;
+// Smaller files gain too little to be worth a second request header
+const MIN_BYTES = 1024;
+
+function* filesUnder(dir) {
+  for (const entry of fs.readdirSync(dir, { withFileTypes: true })) {
+    const file = path.join(dir, entry.name);
+    if (entry.isDirectory()) {
+      yield* filesUnder(file);
+    } else {
+      yield file;
+    }
+  }
+}
+
+function compressions(content) {
+  return {
+    ".br": zlib.brotliCompressSync(content, {
+      params: {
+        [zlib.constants.BROTLI_PARAM_QUALITY]: zlib.constants.BROTLI_MAX_QUALITY,
+        [zlib.constants.BROTLI_PARAM_SIZE_HINT]: content.length,
+      },
+    }),
+    ".gz": zlib.gzipSync(content, { level: zlib.constants.Z_BEST_COMPRESSION }),
+  };
+}
+
+let written = 0;
+for (const file of filesUnder(BUILD_DIR)) {
+  if (!COMPRESSIBLE.test(file)) {
+    continue;
+  }
+  const content = fs.readFileSync(file);
+  if (content.length < MIN_BYTES) {
+    continue;
+  }
+  for (const [suffix, compressed] of Object.entries(compressions(content))) {
+    if (compressed.length < content.length) {
+      fs.writeFileSync(file + suffix, compressed);
+      written++;
+    }
+  }
+}
+console.log(`Precompressed ${written} files in ${path.relative(process.cwd(), BUILD_DIR) || "."}`);
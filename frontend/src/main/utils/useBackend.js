@@ -25,12 +25,29 @@ import { toast } from "react-toastify";
 //     []
 // );
 
+// The /all endpoints return a page of rows at a time; while more rows
+// follow, the X-Next-Cursor header holds the value to pass back as ?after=
+// for the next page, so useBackend follows it to fetch every row
+const nextCursor = (response) => response.headers?.["x-next-cursor"];
+
+async function getAllPages(axiosParameters) {
+    let response = await axios(axiosParameters);
+    let data = response.data;
+    while (nextCursor(response) !== undefined) {
+        response = await axios({
+            ...axiosParameters,
+            params: { ...axiosParameters.params, after: nextCursor(response) }
+        });
+        data = data.concat(response.data);
+    }
+    return data;
+}
+
 export function useBackend(queryKey, axiosParameters, initialData) {
 
     return useQuery(queryKey, async () => {
         try {
-            const response = await axios(axiosParameters);
-            return response.data;
+            return await getAllPages(axiosParameters);
         } catch (e) {
             const errorMessage = `Error communicating with backend via ${axiosParameters.method} on ${axiosParameters.url}`;
             toast(errorMessage);
@@ -67,6 +67,37 @@ describe("utils/useBackend tests", () => {
             expect(errorMessage).toMatch("Error communicating with backend via GET on /api/admin/users");
 
         });
+
+        test("test useBackend follows X-Next-Cursor to the last page", async () => {
+
+            const queryClient = new QueryClient({
+                defaultOptions: {
+                    queries: {
+                        retry: false,
+                    },
+                },
+            })
+            const wrapper = ({ children }) => (
+                <QueryClientProvider client={queryClient}>
+                    {children}
+                </QueryClientProvider>
+            );
+
+            var axiosMock = new AxiosMockAdapter(axios);
+
+            axiosMock.onGet("/api/ucsbdates/all", { params: { after: "2" } }).reply(200, [{ id: 3 }]);
+            axiosMock.onGet("/api/ucsbdates/all", { params: { after: "1" } }).reply(200, [{ id: 2 }], { "x-next-cursor": "2" });
+            axiosMock.onGet("/api/ucsbdates/all").reply(200, [{ id: 1 }], { "x-next-cursor": "1" });
+
+            const { result, waitFor } = renderHook(() => useBackend(
+                ["/api/ucsbdates/all"],
+                { method: "GET", url: "/api/ucsbdates/all" },
+                []
+            ), { wrapper });
+
+            await waitFor(() => expect(result.current.data).toEqual([{ id: 1 }, { id: 2 }, { id: 3 }]));
+            expect(axiosMock.history.get.length).toBe(3);
+        });
     });
     describe("utils/useBackend useBackend tests", () => {
         test("test useBackendMutation handles success correctly", async () => {
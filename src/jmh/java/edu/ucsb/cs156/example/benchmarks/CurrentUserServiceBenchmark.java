@@ -0,0 +1,106 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.CurrentUserServiceImpl;
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.UserCacheService;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CurrentUserServiceImpl.getCurrentUser for a logged-in Google user whose
+ * row is already in the user cache: once per request (the usual case) and
+ * repeated within one request, where the request-scoped copy is used.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CurrentUserServiceBenchmark {
+
+  private CurrentUserServiceImpl currentUserService;
+  private ServletRequestAttributes sameRequest;
+
+  @Setup
+  public void setup() {
+    LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+    loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.WARN);
+
+    User user = User.builder().id(1L).googleSub("1234").email("cgaucho@ucsb.edu").admin(false).build();
+    UserRepository userRepository = Mockito.mock(UserRepository.class);
+    Mockito.when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(user));
+
+    currentUserService = new CurrentUserServiceImpl();
+    ReflectionTestUtils.setField(currentUserService, "userRepository", userRepository);
+    ReflectionTestUtils.setField(currentUserService, "userCache", new UserCacheService(100, Duration.ofMinutes(30)));
+    ReflectionTestUtils.setField(currentUserService, "grantedAuthoritiesService", new GrantedAuthoritiesService());
+
+    Map<String, Object> attributes = Map.of(
+        "sub", "1234",
+        "email", "cgaucho@ucsb.edu",
+        "name", "Chris Gaucho",
+        "given_name", "Chris",
+        "family_name", "Gaucho",
+        "email_verified", true,
+        "picture", "https://example.org/picture.png",
+        "locale", "en",
+        "hd", "ucsb.edu");
+    List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+    DefaultOAuth2User principal = new DefaultOAuth2User(authorities, attributes, "sub");
+    SecurityContextHolder.getContext().setAuthentication(new OAuth2AuthenticationToken(principal, authorities, "google"));
+
+    sameRequest = new ServletRequestAttributes(new MockHttpServletRequest());
+  }
+
+  @TearDown
+  public void tearDown() {
+    RequestContextHolder.resetRequestAttributes();
+    SecurityContextHolder.clearContext();
+  }
+
+  @Benchmark
+  public CurrentUser oncePerRequest() {
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    return currentUserService.getCurrentUser();
+  }
+
+  @Benchmark
+  public CurrentUser repeatedWithinRequest() {
+    RequestContextHolder.setRequestAttributes(sameRequest);
+    return currentUserService.getCurrentUser();
+  }
+}
@@ -0,0 +1,111 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of one row of each entity, using an ObjectMapper
+ * configured the way Spring Boot configures the one behind our controllers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EntitySerializationBenchmark {
+
+  private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+  private final LocalDateTime ldt = LocalDateTime.parse("2022-01-03T00:00:00");
+
+  private final MenuItemReview menuItemReview = MenuItemReview.builder()
+      .Id(1L).itemId(7L).reviewerEmail("cgaucho@ucsb.edu").stars(5).dateReviewed(ldt).comments("great").build();
+
+  private final Articles articles = Articles.builder()
+      .Id(1L).title("title").url("https://example.org/article").explanation("explanation")
+      .email("cgaucho@ucsb.edu").dateAdded(ldt).build();
+
+  private final UCSBDate ucsbDate = UCSBDate.builder()
+      .id(1L).quarterYYYYQ("20222").name("firstDayOfClasses").localDateTime(ldt).build();
+
+  private final HelpRequest helpRequest = HelpRequest.builder()
+      .id(1L).title("help").requester("cgaucho@ucsb.edu").requestBody("body").requestDateTime(ldt).build();
+
+  private final RecommendationRequest recommendationRequest = RecommendationRequest.builder()
+      .Id(1L).requesterEmail("cgaucho@ucsb.edu").professorEmail("phtcon@ucsb.edu").explanation("grad school")
+      .dateRequested(ldt).dateNeeded(ldt).done(false).build();
+
+  private final UCSBDiningCommons ucsbDiningCommons = UCSBDiningCommons.builder()
+      .code("ortega").name("Ortega").hasSackMeal(true).hasTakeOutMeal(true).hasDiningCam(true)
+      .latitude(34.410987).longitude(-119.84709).build();
+
+  private final UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem = UCSBDiningCommonsMenuItem.builder()
+      .Id(1L).diningCommonsCode("ortega").name("Baked Pesto Pasta with Chicken").station("Entree Specials").build();
+
+  private final UCSBOrganization ucsbOrganization = UCSBOrganization.builder()
+      .orgCode("ZPR").orgTranslationShort("ZETA PHI RHO").orgTranslation("ZETA PHI RHO").inactive(false).build();
+
+  @Benchmark
+  public String menuItemReview() throws JsonProcessingException {
+    return mapper.writeValueAsString(menuItemReview);
+  }
+
+  @Benchmark
+  public String articles() throws JsonProcessingException {
+    return mapper.writeValueAsString(articles);
+  }
+
+  @Benchmark
+  public String ucsbDate() throws JsonProcessingException {
+    return mapper.writeValueAsString(ucsbDate);
+  }
+
+  @Benchmark
+  public String helpRequest() throws JsonProcessingException {
+    return mapper.writeValueAsString(helpRequest);
+  }
+
+  @Benchmark
+  public String recommendationRequest() throws JsonProcessingException {
+    return mapper.writeValueAsString(recommendationRequest);
+  }
+
+  @Benchmark
+  public String ucsbDiningCommons() throws JsonProcessingException {
+    return mapper.writeValueAsString(ucsbDiningCommons);
+  }
+
+  @Benchmark
+  public String ucsbDiningCommonsMenuItem() throws JsonProcessingException {
+    return mapper.writeValueAsString(ucsbDiningCommonsMenuItem);
+  }
+
+  @Benchmark
+  public String ucsbOrganization() throws JsonProcessingException {
+    return mapper.writeValueAsString(ucsbOrganization);
+  }
+}
@@ -0,0 +1,107 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.helpers.NOPAppender;
+
+import edu.ucsb.cs156.example.aop.LoggingAspect;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead LoggingAspect adds to a controller call: the same handler is
+ * called directly and through an AOP proxy carrying the aspect. The aspect's
+ * logger feeds an async appender (as in logback-spring.xml) that discards
+ * events, so console I/O is left out; at WARN the aspect logs nothing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingAspectBenchmark {
+
+  public static class SampleController {
+    @GetMapping("/api/sample")
+    public String sample() {
+      return "sample";
+    }
+  }
+
+  @Param({ "INFO", "WARN" })
+  public String level;
+
+  private SampleController direct;
+  private SampleController proxied;
+  private AsyncAppender asyncAppender;
+
+  @Setup
+  public void setup() {
+    LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+    loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.WARN);
+
+    NOPAppender<ILoggingEvent> discard = new NOPAppender<>();
+    discard.setContext(loggerContext);
+    discard.start();
+    asyncAppender = new AsyncAppender();
+    asyncAppender.setContext(loggerContext);
+    asyncAppender.setQueueSize(8192);
+    asyncAppender.setDiscardingThreshold(0);
+    asyncAppender.setNeverBlock(true);
+    asyncAppender.addAppender(discard);
+    asyncAppender.start();
+
+    Logger aspectLogger = loggerContext.getLogger(LoggingAspect.class);
+    aspectLogger.setLevel(Level.toLevel(level));
+    aspectLogger.setAdditive(false);
+    aspectLogger.addAppender(asyncAppender);
+
+    direct = new SampleController();
+    AspectJProxyFactory factory = new AspectJProxyFactory(new SampleController());
+    factory.setProxyTargetClass(true);
+    factory.addAspect(new LoggingAspect());
+    proxied = factory.getProxy();
+
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/sample");
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request), true);
+  }
+
+  @TearDown
+  public void tearDown() {
+    RequestContextHolder.resetRequestAttributes();
+    asyncAppender.stop();
+  }
+
+  @Benchmark
+  public String direct() {
+    return direct.sample();
+  }
+
+  @Benchmark
+  public String withAspect() {
+    return proxied.sample();
+  }
+}
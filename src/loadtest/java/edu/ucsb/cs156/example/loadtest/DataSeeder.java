@@ -0,0 +1,152 @@
+package edu.ucsb.cs156.example.loadtest;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.StreamSupport;
+
+/**
+ * Fills every table with a volume roughly proportional to what a deployed
+ * copy of the app holds (many reviews and menu items, a handful of dining
+ * commons), multiplied by loadtest.scale. The keys of the seeded rows are
+ * kept so that the get-by-id requests hit existing rows.
+ */
+@Slf4j
+@Component
+public class DataSeeder {
+
+  private static final String[] COMMONS = { "carrillo", "de-la-guerra", "ortega", "portola", "the-gaucho-market" };
+  private static final String[] STATIONS = { "Entree Specials", "Grill", "Pizza", "Salad Bar", "Desserts" };
+
+  @Autowired
+  UserRepository userRepository;
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired
+  UCSBOrganizationRepository ucsbOrganizationRepository;
+
+  @Autowired
+  UCSBDateRepository ucsbDateRepository;
+
+  @Autowired
+  UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+  @Autowired
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  @Autowired
+  ArticlesRepository articlesRepository;
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  @Autowired
+  RecommendationRequestRepository recommendationRequestRepository;
+
+  @Value("${loadtest.scale:1}")
+  int scale;
+
+  @Getter private List<String> diningCommonsCodes;
+  @Getter private List<String> orgCodes;
+  @Getter private List<Long> ucsbDateIds;
+  @Getter private List<Long> menuItemIds;
+  @Getter private List<Long> menuItemReviewIds;
+  @Getter private List<Long> articlesIds;
+  @Getter private List<Long> helpRequestIds;
+  @Getter private List<Long> recommendationRequestIds;
+
+  public void seed() {
+    LocalDateTime start = LocalDateTime.parse("2022-01-03T00:00:00");
+
+    userRepository.saveAll(rows(500, i -> User.builder()
+        .googleSub("sub" + i).email("user" + i + "@ucsb.edu").fullName("User " + i)
+        .givenName("User").familyName(String.valueOf(i)).emailVerified(true).hostedDomain("ucsb.edu")
+        .build()));
+
+    diningCommonsCodes = keys(ucsbDiningCommonsRepository.saveAll(rows(COMMONS.length, i -> UCSBDiningCommons.builder()
+        .code(i < COMMONS.length ? COMMONS[i] : "commons-" + i).name("Commons " + i)
+        .hasSackMeal(i % 2 == 0).hasTakeOutMeal(true).hasDiningCam(i % 3 == 0)
+        .latitude(34.41 + i * 0.001).longitude(-119.84 - i * 0.001)
+        .build())), UCSBDiningCommons::getCode);
+
+    orgCodes = keys(ucsbOrganizationRepository.saveAll(rows(300, i -> UCSBOrganization.builder()
+        .orgCode(String.format("ORG%05d", i)).orgTranslationShort("ORG " + i)
+        .orgTranslation("Student Organization " + i).inactive(i % 10 == 0)
+        .build())), UCSBOrganization::getOrgCode);
+
+    ucsbDateIds = keys(ucsbDateRepository.saveAll(rows(200, i -> UCSBDate.builder()
+        .quarterYYYYQ(String.valueOf(20221 + (i % 4))).name("date " + i).localDateTime(start.plusDays(i))
+        .build())), UCSBDate::getId);
+
+    menuItemIds = keys(ucsbDiningCommonsMenuItemRepository.saveAll(rows(2000, i -> UCSBDiningCommonsMenuItem.builder()
+        .diningCommonsCode(COMMONS[i % COMMONS.length]).name("Menu item " + i).station(STATIONS[i % STATIONS.length])
+        .build())), UCSBDiningCommonsMenuItem::getId);
+
+    menuItemReviewIds = keys(menuItemReviewRepository.saveAll(rows(10000, i -> MenuItemReview.builder()
+        .itemId(menuItemIds.get(i % menuItemIds.size())).reviewerEmail("user" + (i % 500) + "@ucsb.edu")
+        .stars(1 + i % 5).dateReviewed(start.plusMinutes(i)).comments("Review " + i)
+        .build())), MenuItemReview::getId);
+
+    articlesIds = keys(articlesRepository.saveAll(rows(1000, i -> Articles.builder()
+        .title("Article " + i).url("https://example.org/articles/" + i).explanation("Explanation " + i)
+        .email("user" + (i % 500) + "@ucsb.edu").dateAdded(start.plusHours(i))
+        .build())), Articles::getId);
+
+    helpRequestIds = keys(helpRequestRepository.saveAll(rows(1000, i -> HelpRequest.builder()
+        .title("Help " + i).requester("user" + (i % 500) + "@ucsb.edu").requestBody("Request " + i)
+        .requestDateTime(start.plusHours(i))
+        .build())), HelpRequest::getId);
+
+    recommendationRequestIds = keys(recommendationRequestRepository.saveAll(rows(1000, i -> RecommendationRequest.builder()
+        .requesterEmail("user" + (i % 500) + "@ucsb.edu").professorEmail("prof" + (i % 50) + "@ucsb.edu")
+        .explanation("Recommendation " + i).dateRequested(start.plusDays(i % 365)).dateNeeded(start.plusDays(i % 365 + 30))
+        .done(i % 2 == 0)
+        .build())), RecommendationRequest::getId);
+
+    log.info("Seeded {} menu item reviews, {} menu items, {} articles, {} help requests, {} recommendation requests, "
+        + "{} dates, {} organizations and {} dining commons",
+        menuItemReviewIds.size(), menuItemIds.size(), articlesIds.size(), helpRequestIds.size(),
+        recommendationRequestIds.size(), ucsbDateIds.size(), orgCodes.size(), diningCommonsCodes.size());
+  }
+
+  private <T> List<T> rows(int baseCount, IntFunction<T> row) {
+    List<T> rows = new ArrayList<>(baseCount * scale);
+    for (int i = 0; i < baseCount * scale; i++) {
+      rows.add(row.apply(i));
+    }
+    return rows;
+  }
+
+  private static <T, K> List<K> keys(Iterable<T> saved, Function<T, K> key) {
+    return StreamSupport.stream(saved.spliterator(), false).map(key).toList();
+  }
+}
@@ -0,0 +1,47 @@
+package edu.ucsb.cs156.example.loadtest;
+
+import edu.ucsb.cs156.example.ExampleApplication;
+
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+
+/**
+ * Boots the whole application on an in-memory H2 database, seeds it, and
+ * drives every /api endpoint through the full filter chain with many
+ * threads (see LoadTestRunner). Run with:
+ *
+ *   mvn -Ploadtest -DskipTests verify
+ *
+ * The real CurrentUserServiceImpl needs a Google login, so it is swapped for
+ * the MockCurrentUserServiceImpl the controller tests use.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@AutoConfigurationPackage(basePackageClasses = ExampleApplication.class)
+@ComponentScan(basePackageClasses = ExampleApplication.class,
+    excludeFilters = @ComponentScan.Filter(type = FilterType.REGEX, pattern = {
+        "edu\\.ucsb\\.cs156\\.example\\.ExampleApplication",
+        "edu\\.ucsb\\.cs156\\.example\\.services\\.CurrentUserServiceImpl",
+        "edu\\.ucsb\\.cs156\\.example\\.testconfig\\.TestConfig"
+    }))
+public class LoadTestApplication {
+
+  public static void main(String[] args) throws Exception {
+    // Set before startup, since devtools decides whether to restart in a new
+    // classloader before application properties are read
+    System.setProperty("spring.devtools.restart.enabled", "false");
+    System.setProperty("spring.profiles.active", "development,loadtest");
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(LoadTestApplication.class).run(args);
+    try {
+      context.getBean(DataSeeder.class).seed();
+      context.getBean(LoadTestRunner.class).run();
+    } finally {
+      context.close();
+    }
+  }
+}
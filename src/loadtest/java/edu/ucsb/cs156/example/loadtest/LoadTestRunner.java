@@ -0,0 +1,223 @@
+package edu.ucsb.cs156.example.loadtest;
+
+import edu.ucsb.cs156.example.config.VirtualThreadConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Sends loadtest.requests requests to each endpoint in turn from
+ * loadtest.threads threads, after loadtest.warmup untimed ones, and reports
+ * requests/sec and latency percentiles per endpoint. Requests go through
+ * MockMvc, so everything from the security filters down to the database is
+ * measured, but Tomcat and the network are not.
+ *
+ * loadtest.threads may list several counts (e.g. 8,64,256) to see how
+ * throughput scales with concurrency. With app.virtualThreads.enabled=true,
+ * on Java 21 or later, the requests run on virtual threads, as Tomcat's would
+ * in that mode; what this shows is how the app's own blocking (mostly waits
+ * for a Hikari connection) behaves on them, not how Tomcat's connector does.
+ */
+@Slf4j
+@Component
+public class LoadTestRunner {
+
+  @Autowired
+  WebApplicationContext context;
+
+  @Autowired
+  DataSeeder seeded;
+
+  @Value("${loadtest.threads:8}")
+  int[] threads;
+
+  // only there when app.virtualThreads.enabled=true on a runtime that has them
+  @Autowired(required = false)
+  VirtualThreadConfig virtualThreadConfig;
+
+  @Value("${loadtest.requests:2000}")
+  int requests;
+
+  @Value("${loadtest.warmup:500}")
+  int warmup;
+
+  @Value("${loadtest.output:target/loadtest-result.csv}")
+  String output;
+
+  private MockMvc mockMvc;
+
+  record Endpoint(String name, Supplier<MockHttpServletRequestBuilder> request) {}
+
+  record Result(String name, int threads, int requests, int errors, double requestsPerSecond,
+      double p50, double p90, double p99, double max) {}
+
+  public void run() throws Exception {
+    mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+
+    List<Endpoint> endpoints = endpoints();
+    List<Result> results = new ArrayList<>();
+    boolean virtualThreads = virtualThreadConfig != null;
+    for (int threadCount : threads) {
+      ExecutorService pool = virtualThreads
+          ? VirtualThreadConfig.newVirtualThreadPerTaskExecutor()
+          : Executors.newFixedThreadPool(threadCount);
+      try {
+        for (Endpoint endpoint : endpoints) {
+          measure(pool, threadCount, endpoint, warmup);
+          results.add(measure(pool, threadCount, endpoint, requests));
+        }
+      } finally {
+        pool.shutdown();
+      }
+    }
+    report(results, virtualThreads);
+  }
+
+  private List<Endpoint> endpoints() {
+    AtomicInteger created = new AtomicInteger();
+    return List.of(
+        new Endpoint("GET /api/currentUser", () -> get("/api/currentUser")),
+        new Endpoint("GET /api/systemInfo", () -> get("/api/systemInfo")),
+        new Endpoint("GET /api/admin/users", () -> get("/api/admin/users")),
+
+        new Endpoint("GET /api/ucsbdiningcommons/all", () -> get("/api/ucsbdiningcommons/all")),
+        new Endpoint("GET /api/ucsbdiningcommons", () -> get("/api/ucsbdiningcommons")
+            .param("code", any(seeded.getDiningCommonsCodes()))),
+        new Endpoint("GET /api/UCSBOrganization/all", () -> get("/api/UCSBOrganization/all")),
+        new Endpoint("GET /api/UCSBOrganization", () -> get("/api/UCSBOrganization")
+            .param("orgCode", any(seeded.getOrgCodes()))),
+        new Endpoint("GET /api/ucsbdates/all", () -> get("/api/ucsbdates/all")),
+        new Endpoint("GET /api/ucsbdates", () -> get("/api/ucsbdates")
+            .param("id", any(seeded.getUcsbDateIds()))),
+        new Endpoint("GET /api/UCSBDiningCommonsMenuItem/all", () -> get("/api/UCSBDiningCommonsMenuItem/all")),
+        new Endpoint("GET /api/UCSBDiningCommonsMenuItem", () -> get("/api/UCSBDiningCommonsMenuItem")
+            .param("id", any(seeded.getMenuItemIds()))),
+        new Endpoint("GET /api/menuitemreview/all", () -> get("/api/menuitemreview/all")),
+        new Endpoint("GET /api/menuitemreview", () -> get("/api/menuitemreview")
+            .param("id", any(seeded.getMenuItemReviewIds()))),
+        new Endpoint("GET /api/articles/all", () -> get("/api/articles/all")),
+        new Endpoint("GET /api/articles", () -> get("/api/articles")
+            .param("id", any(seeded.getArticlesIds()))),
+        new Endpoint("GET /api/helprequest/all", () -> get("/api/helprequest/all")),
+        new Endpoint("GET /api/helprequest", () -> get("/api/helprequest")
+            .param("id", any(seeded.getHelpRequestIds()))),
+        new Endpoint("GET /api/recommendationrequest/all", () -> get("/api/recommendationrequest/all")),
+        new Endpoint("GET /api/recommendationrequest", () -> get("/api/recommendationrequest")
+            .param("id", any(seeded.getRecommendationRequestIds()))),
+
+        new Endpoint("POST /api/ucsbdiningcommons/post", () -> post("/api/ucsbdiningcommons/post")
+            .param("code", "loadtest-" + created.incrementAndGet()).param("name", "Load test commons")
+            .param("hasSackMeal", "true").param("hasTakeOutMeal", "true").param("hasDiningCam", "false")
+            .param("latitude", "34.41").param("longitude", "-119.84")),
+        new Endpoint("POST /api/UCSBOrganization/post", () -> post("/api/UCSBOrganization/post")
+            .param("orgCode", "LOADTEST" + created.incrementAndGet()).param("orgTranslationShort", "LOAD TEST")
+            .param("orgTranslation", "Load Test Organization").param("inactive", "false")),
+        new Endpoint("POST /api/ucsbdates/post", () -> post("/api/ucsbdates/post")
+            .param("quarterYYYYQ", "20224").param("name", "load test")
+            .param("localDateTime", "2022-10-01T00:00:00")),
+        new Endpoint("POST /api/UCSBDiningCommonsMenuItem/post", () -> post("/api/UCSBDiningCommonsMenuItem/post")
+            .param("diningCommonsCode", "ortega").param("name", "Load test item").param("station", "Grill")),
+        new Endpoint("POST /api/menuitemreview/post", () -> post("/api/menuitemreview/post")
+            .param("itemId", any(seeded.getMenuItemIds())).param("reviewerEmail", "admin@example.org")
+            .param("stars", "4").param("dateReviewed", "2022-10-01T00:00:00").param("comments", "load test")),
+        new Endpoint("POST /api/articles/post", () -> post("/api/articles/post")
+            .param("title", "Load test").param("url", "https://example.org/loadtest")
+            .param("explanation", "load test").param("email", "admin@example.org")
+            .param("dateAdded", "2022-10-01T00:00:00")),
+        new Endpoint("POST /api/helprequest/post", () -> post("/api/helprequest/post")
+            .param("title", "Load test").param("requester", "admin@example.org")
+            .param("requestBody", "load test").param("requestDateTime", "2022-10-01T00:00:00")),
+        new Endpoint("POST /api/recommendationrequest/post", () -> post("/api/recommendationrequest/post")
+            .param("requestorEmail", "admin@example.org").param("professorEmail", "prof@ucsb.edu")
+            .param("explanation", "load test").param("dateRequested", "2022-10-01T00:00:00")
+            .param("dateNeeded", "2022-11-01T00:00:00").param("done", "false")));
+  }
+
+  private Result measure(ExecutorService pool, int threadCount, Endpoint endpoint, int count) throws Exception {
+    long[] latencies = new long[count];
+    AtomicInteger next = new AtomicInteger();
+    AtomicInteger errors = new AtomicInteger();
+
+    List<Future<?>> workers = new ArrayList<>();
+    long started = System.nanoTime();
+    for (int t = 0; t < threadCount; t++) {
+      workers.add(pool.submit(() -> {
+        for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+          long requestStarted = System.nanoTime();
+          MvcResult result = mockMvc.perform(endpoint.request().get()
+              .with(user("admin").roles("USER", "ADMIN")).with(csrf())).andReturn();
+          latencies[i] = System.nanoTime() - requestStarted;
+          if (result.getResponse().getStatus() >= 400) {
+            errors.incrementAndGet();
+          }
+        }
+        return null;
+      }));
+    }
+    for (Future<?> worker : workers) {
+      worker.get();
+    }
+    long elapsed = System.nanoTime() - started;
+
+    Arrays.sort(latencies);
+    return new Result(endpoint.name(), threadCount, count, errors.get(), count / (elapsed / 1e9),
+        millis(latencies, 0.50), millis(latencies, 0.90), millis(latencies, 0.99), latencies[count - 1] / 1e6);
+  }
+
+  private void report(List<Result> results, boolean virtualThreads) throws IOException {
+    String format = "%-45s %7s %8s %7s %10s %9s %9s %9s %9s%n";
+    StringBuilder table = new StringBuilder(String.format(format,
+        "endpoint", "threads", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+    Path csv = Path.of(output);
+    Files.createDirectories(csv.toAbsolutePath().getParent());
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(csv))) {
+      out.println("endpoint,threads,requests,errors,requestsPerSecond,p50Millis,p90Millis,p99Millis,maxMillis");
+      for (Result r : results) {
+        table.append(String.format(format, r.name(), r.threads(), r.requests(), r.errors(),
+            String.format("%.0f", r.requestsPerSecond()), String.format("%.2f", r.p50()),
+            String.format("%.2f", r.p90()), String.format("%.2f", r.p99()), String.format("%.2f", r.max())));
+        out.printf("%s,%d,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f%n", r.name(), r.threads(), r.requests(), r.errors(),
+            r.requestsPerSecond(), r.p50(), r.p90(), r.p99(), r.max());
+      }
+    }
+    log.info("Load test on {} threads, {} requests per endpoint:\n{}",
+        virtualThreads ? "virtual" : "platform", requests, table);
+    log.info("Results written to {}", csv.toAbsolutePath());
+  }
+
+  private static double millis(long[] sorted, double percentile) {
+    int index = (int) Math.ceil(percentile * sorted.length) - 1;
+    return sorted[Math.max(index, 0)] / 1e6;
+  }
+
+  private static String any(List<?> keys) {
+    return String.valueOf(keys.get(ThreadLocalRandom.current().nextInt(keys.size())));
+  }
+}
@@ -4,16 +4,25 @@ import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
 import javax.servlet.http.HttpServletRequest;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.lang.reflect.Method;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Logs one line per controller invocation. This runs on every request, so
+ * the per-method part of the message (and whether the method is logged at
+ * all) is worked out once and cached, and the line itself is handed to the
+ * asynchronous appender configured in logback-spring.xml.
+ */
 @Slf4j
 @Aspect
 @Component
@@ -28,19 +37,33 @@ public class LoggingAspect {
       @annotation(org.springframework.web.bind.annotation.PatchMapping)
       """;
 
-  private ArrayList<String> stoplist = new ArrayList<String>(Arrays.asList(
-      "edu.ucsb.cs156.example.controllers.FrontendProxyController"));
+  private static final Set<String> stoplist = Set.of(
+      "edu.ucsb.cs156.example.controllers.FrontendProxyController");
+
+  // "handled by <method> in <class>" for each handler method, or "" when
+  // the method's class is on the stoplist
+  private final Map<Method, String> handlerDescriptions = new ConcurrentHashMap<>();
 
   @Before(pointcut)
   public void logControllers(JoinPoint joinPoint) {
+    if (!log.isInfoEnabled()) {
+      return;
+    }
+    Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+    String handlerDescription = handlerDescriptions.computeIfAbsent(method, LoggingAspect::describe);
+    if (handlerDescription.isEmpty()) {
+      return;
+    }
     getCurrentHttpRequest().ifPresent(
-        request -> {
-          String declaringTypeName = joinPoint.getSignature().getDeclaringTypeName();
-          if (!stoplist.contains(declaringTypeName)) {
-            log.info("===== %s %s handled by %s in %s".formatted(request.getMethod(), request.getRequestURI(),
-                joinPoint.getSignature().getName(), declaringTypeName));
-          }
-        });
+        request -> log.info("===== {} {} {}", request.getMethod(), request.getRequestURI(), handlerDescription));
+  }
+
+  private static String describe(Method method) {
+    String declaringTypeName = method.getDeclaringClass().getName();
+    if (stoplist.contains(declaringTypeName)) {
+      return "";
+    }
+    return "handled by %s in %s".formatted(method.getName(), declaringTypeName);
   }
 
   private static Optional<HttpServletRequest> getCurrentHttpRequest() {
@@ -0,0 +1,20 @@
+package edu.ucsb.cs156.example.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Reference data (dining commons, organizations, dates) is read on nearly
+ * every page load and rarely changes, so the repositories' list queries are
+ * cached in-process; see spring.cache.* in application.properties for the
+ * size and TTL bounds. The controllers empty a cache once a write to the
+ * corresponding table commits (ApiController.evictAfterCommit), so that a
+ * read made before the commit cannot cache the old rows again.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+  public static final String UCSB_DATES = "ucsbDates";
+  public static final String UCSB_DINING_COMMONS = "ucsbDiningCommons";
+  public static final String UCSB_ORGANIZATIONS = "ucsbOrganizations";
+}
@@ -0,0 +1,30 @@
+package edu.ucsb.cs156.example.config;
+
+import edu.ucsb.cs156.example.filters.ApiCompressionFilter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.servlet.DispatcherType;
+
+/**
+ * Registers ApiCompressionFilter for /api/* only; the frontend's files come
+ * with their own compressed copies. The filter also sees async dispatches,
+ * which is where an NDJSON export's gzip stream is finished.
+ */
+@Configuration
+public class CompressionConfig {
+
+  @Bean
+  public FilterRegistrationBean<ApiCompressionFilter> apiCompressionFilter(
+      @Value("${app.compression.minResponseSize:2048}") int minResponseSize,
+      @Value("${app.compression.level:5}") int level) {
+    FilterRegistrationBean<ApiCompressionFilter> registration = new FilterRegistrationBean<>(
+        new ApiCompressionFilter(minResponseSize, level, Runtime.getRuntime().availableProcessors()));
+    registration.addUrlPatterns("/api/*");
+    registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+    return registration;
+  }
+}
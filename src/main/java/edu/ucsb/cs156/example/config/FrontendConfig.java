@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.config;
+
+import edu.ucsb.cs156.example.services.FrontendAssetService;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
+
+/**
+ * Maps each file of the frontend build to its handler by exact path (see
+ * FrontendAssetService). The mapping is consulted before the controllers'
+ * patterns, since a hash lookup settles most page loads, and it cannot
+ * shadow an API path because it only holds paths from the build.
+ */
+@Configuration
+@Profile("!development")
+public class FrontendConfig {
+
+  @Bean
+  public SimpleUrlHandlerMapping frontendAssetHandlerMapping(FrontendAssetService frontendAssets) {
+    return new SimpleUrlHandlerMapping(frontendAssets.handlers(), -1);
+  }
+}
@@ -0,0 +1,44 @@
+package edu.ucsb.cs156.example.config;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTagsContributor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.HandlerMethod;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Adds a handler tag (e.g. UCSBDatesController.allUCSBDates) to the
+ * http.server.requests timer. The uri tag alone can't tell apart handlers
+ * that share a path, such as the JSON and NDJSON versions of /all.
+ */
+@Configuration
+public class MetricsConfig {
+
+  @Bean
+  public WebMvcTagsContributor handlerMethodTagsContributor() {
+    return new WebMvcTagsContributor() {
+      @Override
+      public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response, Object handler,
+          Throwable exception) {
+        return Tags.of("handler", handlerName(handler));
+      }
+
+      @Override
+      public Iterable<Tag> getLongRequestTags(HttpServletRequest request, Object handler) {
+        return Tags.empty();
+      }
+    };
+  }
+
+  private static String handlerName(Object handler) {
+    if (handler instanceof HandlerMethod handlerMethod) {
+      return handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName();
+    }
+    return "none";
+  }
+}
@@ -16,12 +16,18 @@ import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusScrapeEndpoint;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.authority.mapping.GrantedAuthoritiesMapper;
@@ -35,6 +41,7 @@ import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
 import edu.ucsb.cs156.example.entities.User;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.UserCacheService;
 import lombok.extern.slf4j.Slf4j;
 
 @Configuration
@@ -43,15 +50,21 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
+  static final String SCRAPER_ROLE = "METRICS_SCRAPER";
+
   @Value("${app.admin.emails}")
   private final List<String> adminEmails = new ArrayList<String>();
 
   @Autowired
   UserRepository userRepository;
 
+  @Autowired
+  UserCacheService userCache;
+
   @Override
   protected void configure(HttpSecurity http) throws Exception {
     http.authorizeRequests(authorize -> authorize
+        .antMatchers("/actuator/**").hasRole("ADMIN")
         .anyRequest().permitAll())
         .exceptionHandling(handlingConfigurer -> handlingConfigurer
             .authenticationEntryPoint(new Http403ForbiddenEntryPoint()))
@@ -84,7 +97,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
           log.info("********** userAttributes={}", userAttributes);
 
           String email = (String) userAttributes.get("email");
-          if (getAdmin(email)) {
+          String googleSub = (String) userAttributes.get("sub");
+          if (getAdmin(email, googleSub)) {
             mappedAuthorities.add(new SimpleGrantedAuthority("ROLE_ADMIN"));
           }
 
@@ -99,11 +113,53 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     };
   }
 
-  public boolean getAdmin(String email) {
+  public boolean getAdmin(String email, String googleSub) {
     if (adminEmails.contains(email)) {
       return true;
     }
+    User cached = userCache.getIfPresent(googleSub);
+    if (cached != null) {
+      return cached.getAdmin();
+    }
     Optional<User> u = userRepository.findByEmail(email);
+    u.ifPresent(user -> userCache.put(googleSub, user));
     return u.isPresent() && u.get().getAdmin();
   }
-}
\ No newline at end of file
+
+  // Prometheus can't log in with Google, so it scrapes /actuator/prometheus
+  // with HTTP basic auth instead, as app.metrics.scrapeUsername with
+  // app.metrics.scrapePassword; while no password is set, every request is
+  // refused. This chain is consulted before the one above, which keeps the
+  // other actuator endpoints for admins
+  @Configuration
+  @Order(1)
+  public static class PrometheusScrapeSecurityConfig extends WebSecurityConfigurerAdapter {
+
+    @Value("${app.metrics.scrapeUsername:prometheus}")
+    private String username;
+
+    @Value("${app.metrics.scrapePassword:}")
+    private String password;
+
+    @Override
+    protected void configure(HttpSecurity http) throws Exception {
+      http.requestMatcher(EndpointRequest.to(PrometheusScrapeEndpoint.class))
+          .authorizeRequests(authorize -> {
+            if (password.isEmpty()) {
+              authorize.anyRequest().denyAll();
+            } else {
+              authorize.anyRequest().hasRole(SCRAPER_ROLE);
+            }
+          })
+          .httpBasic(Customizer.withDefaults())
+          .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+          .csrf(csrf -> csrf.disable());
+    }
+
+    @Override
+    protected void configure(AuthenticationManagerBuilder auth) throws Exception {
+      auth.inMemoryAuthentication()
+          .withUser(username).password("{noop}" + password).roles(SCRAPER_ROLE);
+    }
+  }
+}
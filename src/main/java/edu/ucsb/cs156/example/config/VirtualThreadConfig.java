@@ -0,0 +1,81 @@
+package edu.ucsb.cs156.example.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.autoconfigure.condition.ConditionMessage;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in (app.virtualThreads.enabled=true): Tomcat handles each request on
+ * a new virtual thread instead of a thread from its fixed pool, and the
+ * application task executor, which writes the NDJSON exports and would run
+ * any {@code @Async} methods, does the same. A request blocked on JDBC then no
+ * longer holds a platform thread, so concurrency is bounded by the Hikari
+ * pool (spring.datasource.hikari.maximum-pool-size) rather than by Tomcat's
+ * thread count.
+ *
+ * Virtual threads need a Java 21 runtime, while the project compiles for
+ * Java 17 (the version it is built and deployed with). The executor is
+ * therefore looked up reflectively, and the whole configuration only applies
+ * on Java 21 or later: on an older runtime the property is ignored with a
+ * warning at startup, and requests stay on Tomcat's pool.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "app.virtualThreads.enabled", havingValue = "true")
+@Conditional(VirtualThreadConfig.OnVirtualThreadRuntime.class)
+public class VirtualThreadConfig {
+
+  public static final int MINIMUM_JAVA_VERSION = 21;
+
+  public static boolean isSupported() {
+    return Runtime.version().feature() >= MINIMUM_JAVA_VERSION;
+  }
+
+  public static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not create a virtual-thread executor on Java " + Runtime.version(), e);
+    }
+  }
+
+  static class OnVirtualThreadRuntime extends SpringBootCondition {
+    @Override
+    public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+      ConditionMessage.Builder message = ConditionMessage.forCondition("Virtual threads");
+      if (isSupported()) {
+        return ConditionOutcome.match(message.because("running on Java " + Runtime.version().feature()));
+      }
+      log.warn("app.virtualThreads.enabled=true is ignored: virtual threads need Java {} or later, "
+          + "and this is Java {}", MINIMUM_JAVA_VERSION, Runtime.version());
+      return ConditionOutcome.noMatch(message.because("running on Java " + Runtime.version().feature()));
+    }
+  }
+
+  @Bean
+  public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+    return protocolHandler -> protocolHandler.setExecutor(newVirtualThreadPerTaskExecutor());
+  }
+
+  // Takes the place of Boot's pooled applicationTaskExecutor, which is also
+  // what Spring MVC uses for StreamingResponseBody
+  @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+  public AsyncTaskExecutor applicationTaskExecutor() {
+    return new TaskExecutorAdapter(newVirtualThreadPerTaskExecutor());
+  }
+}
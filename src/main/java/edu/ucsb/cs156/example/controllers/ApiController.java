@@ -1,22 +1,77 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.PreconditionFailedException;
+import edu.ucsb.cs156.example.errors.UnknownFieldException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 
 import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.services.ChangeFeedService;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.EntityVersionService;
+import edu.ucsb.cs156.example.services.FieldProjectionService;
+import edu.ucsb.cs156.example.services.NdjsonExportService;
+import edu.ucsb.cs156.example.services.SearchIndexService;
 // import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.CrudRepository;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+import static edu.ucsb.cs156.example.services.Transactions.afterCommit;
 
 // @Slf4j
 public abstract class ApiController {
+  // Keyset pagination for the /all endpoints: a page never holds more than
+  // MAX_PAGE_SIZE rows, which is also the page size when the client gives no
+  // limit, and when more rows follow, the key of the last row is returned in
+  // the NEXT_CURSOR_HEADER header, to be passed back as ?after=
+  public static final int MAX_PAGE_SIZE = 1000;
+  public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+  protected static final String FIELDS_DESCRIPTION = "only return these fields of each row, e.g. id,title; "
+      + "the row's key is always included";
+
+  protected static final String IF_MATCH_DESCRIPTION = "the row's version field as last read, e.g. \"3\"; "
+      + "the update is refused with 412 if the row has changed since";
+
   @Autowired
   private CurrentUserService currentUserService;
 
+  @Autowired
+  private NdjsonExportService ndjsonExportService;
+
+  @Autowired
+  private EntityVersionService entityVersionService;
+
+  @Autowired
+  private FieldProjectionService fieldProjectionService;
+
+  @Autowired
+  private ApplicationEventPublisher eventPublisher;
+
+  @Autowired
+  private CacheManager cacheManager;
+
   protected CurrentUser getCurrentUser() {
     return currentUserService.getCurrentUser();
   }
@@ -25,6 +80,145 @@ public abstract class ApiController {
     return Map.of("message", message);
   }
 
+  // Asks for one row more than the page size, so that keysetPage can tell
+  // whether another page follows without a second query
+  protected Pageable keysetPageRequest(Integer limit) {
+    int pageSize = (limit == null) ? MAX_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    return PageRequest.of(0, pageSize + 1);
+  }
+
+  protected <T> ResponseEntity<Iterable<T>> keysetPage(List<T> rows, Pageable pageRequest, Function<T, ?> key) {
+    int pageSize = pageRequest.getPageSize() - 1;
+    if (rows.size() <= pageSize) {
+      return ResponseEntity.ok(rows);
+    }
+    List<T> page = rows.subList(0, pageSize);
+    String nextCursor = key.apply(page.get(pageSize - 1)).toString();
+    return ResponseEntity.ok().header(NEXT_CURSOR_HEADER, nextCursor).body(page);
+  }
+
+  // Streams every row as newline-delimited JSON; used by the /all endpoints
+  // when the client asks for application/x-ndjson
+  protected <T> ResponseEntity<StreamingResponseBody> ndjson(Supplier<Stream<T>> rows) {
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .body(ndjsonExportService.export(rows));
+  }
+
+  // The ?fields= variant of the /all endpoints: reads only the key and the
+  // given fields of each row, paged like the full rows
+  protected ResponseEntity<Iterable<Map<String, Object>>> fieldsPage(Class<?> table, List<String> fields,
+      Object after, Integer limit) {
+    Pageable pageRequest = keysetPageRequest(limit);
+    List<Map<String, Object>> rows = fieldProjectionService.select(table, fields, after, pageRequest.getPageSize());
+    return keysetPage(rows, pageRequest, row -> row.get(fieldProjectionService.table(table).key()));
+  }
+
+  // Loads every row named by a /bulk request with a single query, in the order
+  // the ids were given, or fails on the first id that does not exist
+  protected <T, ID> List<T> findAllOrThrow(CrudRepository<T, ID> repository, List<ID> ids,
+      Function<T, ID> key, Class<T> type) {
+    Map<ID, T> found = new HashMap<>();
+    repository.findAllById(ids).forEach(row -> found.put(key.apply(row), row));
+    List<T> rows = new ArrayList<>(ids.size());
+    for (ID id : ids) {
+      T row = found.get(id);
+      if (row == null) {
+        throw new EntityNotFoundException(type, id);
+      }
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  // The bulk counterpart of If-Match: each row sent to a /bulk update must
+  // carry the version field it was read at, or the whole batch is refused
+  // before any row is changed
+  protected <T> void requireVersions(List<T> rows, List<T> incoming, ToLongFunction<T> version,
+      Function<T, ?> key, Class<T> type) {
+    for (int i = 0; i < rows.size(); i++) {
+      if (version.applyAsLong(rows.get(i)) != version.applyAsLong(incoming.get(i))) {
+        throw new PreconditionFailedException(type, key.apply(rows.get(i)));
+      }
+    }
+  }
+
+  // Loads the rows found by a /search with a single query, in the order the
+  // ids were given, skipping any that were deleted after the index was read
+  protected <T, ID> List<T> findAllInOrder(CrudRepository<T, ID> repository, List<ID> ids, Function<T, ID> key) {
+    Map<ID, T> found = new HashMap<>();
+    repository.findAllById(ids).forEach(row -> found.put(key.apply(row), row));
+    return ids.stream().map(found::get).filter(Objects::nonNull).toList();
+  }
+
+  // Number of results for a /search, DEFAULT_RESULTS unless the client asks
+  protected int searchLimit(Integer limit) {
+    return (limit == null) ? SearchIndexService.DEFAULT_RESULTS
+        : Math.max(1, Math.min(limit, SearchIndexService.MAX_RESULTS));
+  }
+
+  // Conditional GET: sets the table's ETag and Last-Modified headers, and
+  // returns true when the client's copy is still current, in which case the
+  // handler returns null and Spring answers 304 without a body
+  protected boolean notModified(WebRequest request, Class<?> table) {
+    EntityVersionService.Version version = entityVersionService.current(table);
+    return request.checkNotModified(version.etag(), version.lastModified());
+  }
+
+  // The version a conditional PUT expects the row to be at: its If-Match
+  // header holds the row's version field as last read, quoted like an ETag
+  // ("3"). Returns null, for an unconditional update, when the header is
+  // absent or "*"; a value that is not a version can never match
+  protected Long ifMatchVersion(String ifMatch, Class<?> type, Object id) {
+    if (ifMatch == null || ifMatch.equals("*")) {
+      return null;
+    }
+    try {
+      return Long.valueOf(ifMatch.replace("\"", "").trim());
+    } catch (NumberFormatException e) {
+      throw new PreconditionFailedException(type, id);
+    }
+  }
+
+  // For the single-statement conditional updates (UPDATE ... WHERE id = ?
+  // AND version = ?): when no row was updated, one more query tells a
+  // missing row (404) from one that has moved on to another version (412)
+  protected <ID> void requireUpdated(int updated, CrudRepository<?, ID> repository, ID id, Class<?> type) {
+    if (updated == 0) {
+      if (!repository.existsById(id)) {
+        throw new EntityNotFoundException(type, id);
+      }
+      throw new PreconditionFailedException(type, id);
+    }
+  }
+
+  // For the single-statement deletes (DELETE ... WHERE id = ?), which tell a
+  // missing row from the number of rows they removed instead of reading it
+  protected void requireDeleted(int deleted, Class<?> type, Object id) {
+    if (deleted == 0) {
+      throw new EntityNotFoundException(type, id);
+    }
+  }
+
+  // Called by every handler that writes to a table, after the write succeeds.
+  // The table's version is bumped, and the change pushed to
+  // /api/changes/stream, only once the write's transaction commits, so a
+  // write that is rolled back leaves the ETag as it was
+  protected void entityChanged(Class<?> table) {
+    afterCommit(() -> {
+      EntityVersionService.Version version = entityVersionService.bump(table);
+      eventPublisher.publishEvent(
+          new ChangeFeedService.Change(table.getSimpleName(), version.etag(), version.lastModified()));
+    });
+  }
+
+  // Empties one of CacheConfig's caches once the current transaction commits,
+  // so that a read in between cannot put the old rows back; call it before
+  // entityChanged, so the cache is empty by the time the new ETag is served
+  protected void evictAfterCommit(String cacheName) {
+    afterCommit(() -> cacheManager.getCache(cacheName).clear());
+  }
+
   @ExceptionHandler({ EntityNotFoundException.class })
   @ResponseStatus(HttpStatus.NOT_FOUND)
   public Object handleGenericException(Throwable e) {
@@ -33,4 +227,33 @@ public abstract class ApiController {
       "message", e.getMessage()
     );
   }
+
+  @ExceptionHandler({ UnknownFieldException.class })
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Object handleUnknownField(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
+  @ExceptionHandler({ PreconditionFailedException.class })
+  @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+  public Object handlePreconditionFailed(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
+  // An unconditional update that lost a race with another one: the row
+  // changed between being read and being written
+  @ExceptionHandler({ OptimisticLockingFailureException.class })
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Object handleOptimisticLockingFailure(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", "The row was changed by another request; read it again and retry"
+    );
+  }
 }
@@ -1,8 +1,11 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.OutboxEvent;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import edu.ucsb.cs156.example.services.OutboxService;
+import edu.ucsb.cs156.example.services.SearchIndexService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,18 +16,29 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 import javax.validation.Valid;
 
@@ -37,19 +51,67 @@ public class ArticlesController extends ApiController{
     @Autowired
     ArticlesRepository articlesRepository;
 
+    @Autowired
+    SearchIndexService searchIndexService;
+
+    @Autowired
+    OutboxService outboxService;
+
     @Operation(summary= "List all articles")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<Articles> allArticles() {
-        Iterable<Articles> articles = articlesRepository.findAll();
-        return articles;
+    public ResponseEntity<Iterable<Articles>> allArticles(
+            @Parameter(name="after", description="continuation token: only return articles whose id sorts after this one") @RequestParam(required = false) Long after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, Articles.class)) {
+            return null;
+        }
+        Pageable pageRequest = keysetPageRequest(limit);
+        List<Articles> page = articlesRepository.findPageAfter(after == null ? 0L : after, pageRequest);
+        return keysetPage(page, pageRequest, Articles::getId);
+    }
+
+    @Operation(summary= "List all articles, with only the given fields")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "fields")
+    public ResponseEntity<Iterable<Map<String, Object>>> allArticlesFields(
+            @Parameter(name="fields", description=FIELDS_DESCRIPTION) @RequestParam List<String> fields,
+            @Parameter(name="after", description="continuation token: only return articles whose id sorts after this one") @RequestParam(required = false) Long after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, Articles.class)) {
+            return null;
+        }
+        return fieldsPage(Articles.class, fields, after, limit);
+    }
+
+    @Operation(summary= "Export all articles as newline-delimited JSON, streamed as they are read")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportArticles() {
+        return ndjson(articlesRepository::streamAll);
+    }
+
+    @Operation(summary= "Search articles by title and explanation, best match first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/search")
+    public Iterable<Articles> searchArticles(
+            @Parameter(name="q", description="search terms; \"quoted phrases\", -excluded and prefix* terms are supported") @RequestParam String q,
+            @Parameter(name="limit", description="number of results (at most " + SearchIndexService.MAX_RESULTS + ")") @RequestParam(required = false) Integer limit) throws IOException {
+        List<Long> ids = searchIndexService.search(Articles.class, q, searchLimit(limit));
+        return findAllInOrder(articlesRepository, ids, Articles::getId);
     }
 
     @Operation(summary= "Get a single article")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public Articles getById(
-            @Parameter(name="id") @RequestParam Long id) {
+            @Parameter(name="id") @RequestParam Long id,
+            WebRequest webRequest) {
+        if (notModified(webRequest, Articles.class)) {
+            return null;
+        }
         Articles article = articlesRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
 
@@ -59,6 +121,7 @@ public class ArticlesController extends ApiController{
 
     @Operation(summary= "Create a new Article")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PostMapping("/post")
     public Articles postArticle(
         @Parameter(name="title") @RequestParam String title,
@@ -80,15 +143,28 @@ public class ArticlesController extends ApiController{
 
             Articles savedArticle = articlesRepository.save(article);
 
+            entityChanged(Articles.class);
+            outboxService.record(Articles.class, savedArticle.getId(), OutboxEvent.SAVED);
             return savedArticle;
         }
 
     @Operation(summary= "Update an existing article")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PutMapping("")
     public Articles updateArticles(
             @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="If-Match", description=IF_MATCH_DESCRIPTION) @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody @Valid Articles incoming) {
+        Long version = ifMatchVersion(ifMatch, Articles.class, id);
+        if (version != null) {
+            requireUpdated(articlesRepository.updateIfVersion(id, version, incoming), articlesRepository, id, Articles.class);
+            incoming.setId(id);
+            incoming.setVersion(version + 1);
+            entityChanged(Articles.class);
+            outboxService.record(Articles.class, id, OutboxEvent.SAVED);
+            return incoming;
+        }
         log.info("incoming={}", incoming);
         log.info("id={}", id);  
         Articles article = articlesRepository.findById(id)
@@ -102,18 +178,21 @@ public class ArticlesController extends ApiController{
 
         articlesRepository.save(article);
 
+        entityChanged(Articles.class);
+        outboxService.record(Articles.class, id, OutboxEvent.SAVED);
         return article;
     }
 
     @Operation(summary= "Delete an existing article")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @DeleteMapping("")
     public Object deleteArticles(
         @Parameter(name="id") @RequestParam Long id){
     
-        Articles article = articlesRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
-        articlesRepository.delete(article);
+        requireDeleted(articlesRepository.deleteRow(id), Articles.class, id);
+        entityChanged(Articles.class);
+        outboxService.record(Articles.class, id, OutboxEvent.DELETED);
         return genericMessage("Article with id %s deleted".formatted(id));
     }
     
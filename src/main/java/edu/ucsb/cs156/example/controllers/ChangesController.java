@@ -0,0 +1,30 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.services.ChangeFeedService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@Tag(name = "Change feed")
+@RequestMapping("/api/changes")
+@RestController
+public class ChangesController extends ApiController {
+
+    @Autowired
+    ChangeFeedService changeFeedService;
+
+    @Operation(summary = "Stream a server-sent \"change\" event, with the table's new ETag, after every write to a table")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        return changeFeedService.subscribe();
+    }
+}
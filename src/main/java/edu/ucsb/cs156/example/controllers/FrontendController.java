@@ -1,16 +1,27 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.services.FrontendAssetService;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
 @Profile("!development")
 @Controller
 public class FrontendController {
+  @Autowired
+  FrontendAssetService frontendAssets;
+
   @GetMapping("/**/{path:[^\\.]*}")
-  public String index() {
-    return "forward:/index.html";
+  public void index(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    frontendAssets.serveIndex(request, response);
   }
 
   @GetMapping("/csrf")
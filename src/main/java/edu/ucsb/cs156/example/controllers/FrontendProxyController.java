@@ -1,37 +1,137 @@
 package edu.ucsb.cs156.example.controllers;
 
-import org.springframework.cloud.gateway.mvc.ProxyExchange;
 import org.springframework.context.annotation.Profile;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.ResourceAccessException;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
+/**
+ * In development, passes page and asset requests on to the React dev server
+ * (npm start, on localhost:3000), so that its hot reloading keeps working.
+ *
+ * A single HttpClient keeps its connections to the dev server alive between
+ * requests, and bodies are copied through as they arrive instead of being
+ * read into memory first. Files with a content hash in their name (e.g.
+ * static/media/logo.6ce24c58023cc2f8fd88.svg) never change, so the most
+ * recently used of them are kept and served without asking the dev server.
+ */
 @Profile("development")
 @RestController
 public class FrontendProxyController {
+
+  static final String FRONTEND_SERVER = "http://localhost:3000";
+  static final int CACHE_ENTRIES = 64;
+  static final long CACHE_MAX_BYTES = 1024 * 1024;
+
+  // Request headers passed on to the dev server; the rest are either about
+  // this hop or of no interest to it (cookies, the session, CSRF tokens)
+  private static final List<String> FORWARDED = List.of(
+      HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.ACCEPT_LANGUAGE,
+      HttpHeaders.IF_NONE_MATCH, HttpHeaders.IF_MODIFIED_SINCE);
+
+  // Response headers that describe the connection to the dev server
+  private static final Set<String> HOP_BY_HOP = Set.of("connection", "keep-alive", "transfer-encoding", "upgrade");
+
+  private static final Pattern CONTENT_HASH = Pattern.compile("\\.[0-9a-f]{8,}\\.");
+
+  private static final String INSTRUCTIONS = """
+      <p>Failed to connect to the frontend server...</p>
+      <p>On Dokku, be sure that <code>PRODUCTION</code> is defined.</p>
+      <p>On localhost, open a second terminal window, cd into <code>frontend</code> and type: <code>npm install; npm start</code></p>
+      <p>Or, you may click to access: </p>
+      <ul>
+        <li><a href='/swagger-ui/index.html'>/swagger-ui/index.html</a></li>
+        <li><a href='/h2-console'>/h2-console</a></li>
+      </ul>""";
+
+  private record CachedAsset(Map<String, List<String>> headers, byte[] body) {
+  }
+
+  // HTTP/1.1 on purpose: the dev server does not speak cleartext HTTP/2, and
+  // Node hands the h2c upgrade request to its websocket handler instead
+  private final HttpClient client = HttpClient.newBuilder()
+      .version(HttpClient.Version.HTTP_1_1)
+      .connectTimeout(Duration.ofSeconds(5))
+      .build();
+
+  // least recently used first
+  private final Map<String, CachedAsset> cache = Collections.synchronizedMap(
+      new LinkedHashMap<>(CACHE_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedAsset> eldest) {
+          return size() > CACHE_ENTRIES;
+        }
+      });
+
   @GetMapping({"/", "/{path:^(?!api|oauth2|swagger-ui|h2-console).*}/**"})
-  public ResponseEntity<?> proxy(ProxyExchange<byte []> proxy) {
-    String path = proxy.path("/");
+  public void proxy(HttpServletRequest request, HttpServletResponse response)
+      throws IOException, InterruptedException {
+    String path = request.getRequestURI();
+    boolean immutable = CONTENT_HASH.matcher(path).find();
+    CachedAsset cached = immutable ? cache.get(path) : null;
+    if (cached != null) {
+      copyHeaders(cached.headers(), response);
+      response.getOutputStream().write(cached.body());
+      return;
+    }
+
+    String query = request.getQueryString();
+    HttpRequest.Builder upstreamRequest = HttpRequest.newBuilder(
+        URI.create(FRONTEND_SERVER + path + (query == null ? "" : "?" + query)));
+    // a cached copy must suit every client, so it is fetched uncompressed
+    // and unconditionally
+    if (!immutable) {
+      for (String name : FORWARDED) {
+        Collections.list(request.getHeaders(name)).forEach(value -> upstreamRequest.header(name, value));
+      }
+    }
+
+    HttpResponse<InputStream> upstream;
     try {
-      return proxy.uri("http://localhost:3000/" + path).get();
-    } catch (ResourceAccessException e) {
-      if (e.getCause() instanceof ConnectException) {
-        String instructions = """
-                <p>Failed to connect to the frontend server...</p>
-                <p>On Dokku, be sure that <code>PRODUCTION</code> is defined.</p>
-                <p>On localhost, open a second terminal window, cd into <code>frontend</code> and type: <code>npm install; npm start</code></p>
-                <p>Or, you may click to access: </p>
-                <ul>
-                  <li><a href='/swagger-ui/index.html'>/swagger-ui/index.html</a></li>
-                  <li><a href='/h2-console'>/h2-console</a></li>
-                </ul>""";
-
-        return ResponseEntity.ok(instructions);
+      upstream = client.send(upstreamRequest.build(), HttpResponse.BodyHandlers.ofInputStream());
+    } catch (ConnectException e) {
+      response.setContentType("text/html;charset=UTF-8");
+      response.getWriter().write(INSTRUCTIONS);
+      return;
+    }
+
+    response.setStatus(upstream.statusCode());
+    copyHeaders(upstream.headers().map(), response);
+    try (InputStream body = upstream.body()) {
+      long length = upstream.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH).orElse(Long.MAX_VALUE);
+      if (immutable && upstream.statusCode() == 200 && length <= CACHE_MAX_BYTES) {
+        byte[] bytes = body.readAllBytes();
+        cache.put(path, new CachedAsset(upstream.headers().map(), bytes));
+        response.getOutputStream().write(bytes);
+      } else {
+        body.transferTo(response.getOutputStream());
       }
-      throw e;
     }
   }
+
+  private static void copyHeaders(Map<String, List<String>> headers, HttpServletResponse response) {
+    headers.forEach((name, values) -> {
+      if (!HOP_BY_HOP.contains(name.toLowerCase())) {
+        values.forEach(value -> response.addHeader(name, value));
+      }
+    });
+  }
 }
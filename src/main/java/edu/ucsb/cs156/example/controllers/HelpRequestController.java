@@ -1,8 +1,11 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.OutboxEvent;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.services.OutboxService;
+import edu.ucsb.cs156.example.services.SearchIndexService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,18 +16,29 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 import javax.validation.Valid;
 
@@ -37,19 +51,67 @@ public class HelpRequestController extends ApiController{
     @Autowired
     HelpRequestRepository requestRepository;
 
+    @Autowired
+    SearchIndexService searchIndexService;
+
+    @Autowired
+    OutboxService outboxService;
+
     @Operation(summary= "List all help requests")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<HelpRequest> allHelpRequest() {
-        Iterable<HelpRequest> helpRequest = requestRepository.findAll();
-        return helpRequest;
+    public ResponseEntity<Iterable<HelpRequest>> allHelpRequest(
+            @Parameter(name="after", description="continuation token: only return help requests whose id sorts after this one") @RequestParam(required = false) Long after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, HelpRequest.class)) {
+            return null;
+        }
+        Pageable pageRequest = keysetPageRequest(limit);
+        List<HelpRequest> page = requestRepository.findPageAfter(after == null ? 0L : after, pageRequest);
+        return keysetPage(page, pageRequest, HelpRequest::getId);
+    }
+
+    @Operation(summary= "List all help requests, with only the given fields")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "fields")
+    public ResponseEntity<Iterable<Map<String, Object>>> allHelpRequestFields(
+            @Parameter(name="fields", description=FIELDS_DESCRIPTION) @RequestParam List<String> fields,
+            @Parameter(name="after", description="continuation token: only return help requests whose id sorts after this one") @RequestParam(required = false) Long after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, HelpRequest.class)) {
+            return null;
+        }
+        return fieldsPage(HelpRequest.class, fields, after, limit);
+    }
+
+    @Operation(summary= "Export all help requests as newline-delimited JSON, streamed as they are read")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportHelpRequests() {
+        return ndjson(requestRepository::streamAll);
+    }
+
+    @Operation(summary= "Search help requests by title and request body, best match first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/search")
+    public Iterable<HelpRequest> searchHelpRequests(
+            @Parameter(name="q", description="search terms; \"quoted phrases\", -excluded and prefix* terms are supported") @RequestParam String q,
+            @Parameter(name="limit", description="number of results (at most " + SearchIndexService.MAX_RESULTS + ")") @RequestParam(required = false) Integer limit) throws IOException {
+        List<Long> ids = searchIndexService.search(HelpRequest.class, q, searchLimit(limit));
+        return findAllInOrder(requestRepository, ids, HelpRequest::getId);
     }
 
     @Operation(summary= "Get a single help request")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public HelpRequest getById(
-            @Parameter(name="id") @RequestParam Long id) {
+            @Parameter(name="id") @RequestParam Long id,
+            WebRequest webRequest) {
+        if (notModified(webRequest, HelpRequest.class)) {
+            return null;
+        }
         HelpRequest request = requestRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
 
@@ -59,6 +121,7 @@ public class HelpRequestController extends ApiController{
 
     @Operation(summary= "Create a new help request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PostMapping("/post")
     public HelpRequest postHelpRequest(
         @Parameter(name="title") @RequestParam String title,
@@ -78,27 +141,40 @@ public class HelpRequestController extends ApiController{
 
             HelpRequest savedArticle = requestRepository.save(request);
 
+            entityChanged(HelpRequest.class);
+            outboxService.record(HelpRequest.class, savedArticle.getId(), OutboxEvent.SAVED);
             return savedArticle;
         }
 
     @Operation(summary= "Delete a help request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @DeleteMapping("")
     public Object deleteCommons(
             @Parameter(name="id") @RequestParam Long id) {
-        HelpRequest commons = requestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
-
-        requestRepository.delete(commons);
+        requireDeleted(requestRepository.deleteRow(id), HelpRequest.class, id);
+        entityChanged(HelpRequest.class);
+        outboxService.record(HelpRequest.class, id, OutboxEvent.DELETED);
         return genericMessage("HelpRequest with id %d deleted".formatted(id));
     }
 
     @Operation(summary= "Update an existing help request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PutMapping("")
     public HelpRequest updateHelpRequest(
             @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="If-Match", description=IF_MATCH_DESCRIPTION) @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody @Valid HelpRequest incoming) {
+        Long version = ifMatchVersion(ifMatch, HelpRequest.class, id);
+        if (version != null) {
+            requireUpdated(requestRepository.updateIfVersion(id, version, incoming), requestRepository, id, HelpRequest.class);
+            incoming.setId(id);
+            incoming.setVersion(version + 1);
+            entityChanged(HelpRequest.class);
+            outboxService.record(HelpRequest.class, id, OutboxEvent.SAVED);
+            return incoming;
+        }
         log.info("incoming={}", incoming);
         log.info("id={}", id);  
         HelpRequest request = requestRepository.findById(id)
@@ -111,6 +187,8 @@ public class HelpRequestController extends ApiController{
 
         requestRepository.save(request);
 
+        entityChanged(HelpRequest.class);
+        outboxService.record(HelpRequest.class, id, OutboxEvent.SAVED);
         return request;
     }
     
@@ -1,8 +1,16 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.entities.OutboxEvent;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.PreconditionFailedException;
+import edu.ucsb.cs156.example.models.DiningCommonsReviewStats;
+import edu.ucsb.cs156.example.models.TopMenuItem;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.services.MenuItemLeaderboardService;
+import edu.ucsb.cs156.example.services.MenuItemReviewStatsService;
+import edu.ucsb.cs156.example.services.OutboxService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -12,18 +20,29 @@ import lombok.extern.slf4j.Slf4j;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 import javax.validation.Valid;
 
@@ -32,20 +51,89 @@ import javax.validation.Valid;
 @RestController
 @Slf4j
 public class MenuItemReviewController extends ApiController {
+    public static final int DEFAULT_TOP_MENU_ITEMS = 10;
+    public static final int MAX_TOP_MENU_ITEMS = 100;
 
     @Autowired
     MenuItemReviewRepository menuItemReviewRepository;
 
+    @Autowired
+    MenuItemReviewStatsService menuItemReviewStatsService;
+
+    @Autowired
+    MenuItemLeaderboardService menuItemLeaderboardService;
+
+    @Autowired
+    OutboxService outboxService;
+
     @Operation(summary = "List all menu item reviews")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<MenuItemReview> allMenuItemReviews() {
-        Iterable<MenuItemReview> menuItemReviews = menuItemReviewRepository.findAll();
-        return menuItemReviews;
+    public ResponseEntity<Iterable<MenuItemReview>> allMenuItemReviews(
+            @Parameter(name="after", description="continuation token: only return menu item reviews whose id sorts after this one") @RequestParam(required = false) Long after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, MenuItemReview.class)) {
+            return null;
+        }
+        Pageable pageRequest = keysetPageRequest(limit);
+        List<MenuItemReview> page = menuItemReviewRepository.findPageAfter(after == null ? 0L : after, pageRequest);
+        return keysetPage(page, pageRequest, MenuItemReview::getId);
+    }
+
+    @Operation(summary= "List all menu item reviews, with only the given fields")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "fields")
+    public ResponseEntity<Iterable<Map<String, Object>>> allMenuItemReviewsFields(
+            @Parameter(name="fields", description=FIELDS_DESCRIPTION) @RequestParam List<String> fields,
+            @Parameter(name="after", description="continuation token: only return menu item reviews whose id sorts after this one") @RequestParam(required = false) Long after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, MenuItemReview.class)) {
+            return null;
+        }
+        return fieldsPage(MenuItemReview.class, fields, after, limit);
+    }
+
+    @Operation(summary = "Export all menu item reviews as newline-delimited JSON, streamed as they are read")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportMenuItemReviews() {
+        return ndjson(menuItemReviewRepository::streamAll);
+    }
+
+    @Operation(summary = "Number of reviews and average stars of a menu item")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/stats")
+    public MenuItemReviewStats statsForMenuItem(
+        @Parameter(name="itemId") @RequestParam Long itemId
+    ) {
+        return menuItemReviewStatsService.statsForMenuItem(itemId);
+    }
+
+    @Operation(summary = "Number of reviews and average stars of all menu items of a dining commons")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/stats/diningcommons")
+    public DiningCommonsReviewStats statsForDiningCommons(
+        @Parameter(name="diningCommonsCode") @RequestParam String diningCommonsCode
+    ) {
+        return menuItemReviewStatsService.statsForDiningCommons(diningCommonsCode);
+    }
+
+    @Operation(summary = "The highest rated menu items, of one dining commons or of all of them")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/top")
+    public List<TopMenuItem> topMenuItems(
+        @Parameter(name="diningCommonsCode", description="leave out for all dining commons") @RequestParam(required = false) String diningCommonsCode,
+        @Parameter(name="n", description="number of menu items (at most " + MAX_TOP_MENU_ITEMS + ")") @RequestParam(required = false) Integer n
+    ) {
+        int count = (n == null) ? DEFAULT_TOP_MENU_ITEMS : Math.max(1, Math.min(n, MAX_TOP_MENU_ITEMS));
+        return menuItemLeaderboardService.top(diningCommonsCode, count);
     }
 
     @Operation(summary = "Create a new MenuItemReview")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PostMapping("/post")
     public MenuItemReview postItemReview(
         @Parameter(name="itemId") @RequestParam Long itemId,
@@ -64,15 +152,23 @@ public class MenuItemReviewController extends ApiController {
             .comments(comments)
             .build();
         
-        return menuItemReviewRepository.save(menuItemReview);
+        MenuItemReview saved = menuItemReviewRepository.save(menuItemReview);
+        outboxService.record(MenuItemReview.class, saved.getId(), OutboxEvent.REVIEW_ADDED,
+            new MenuItemReviewStatsService.Review(saved.getItemId(), saved.getStars()));
+        entityChanged(MenuItemReview.class);
+        return saved;
     }
 
     @Operation(summary = "Get a single menu item review")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public MenuItemReview getById(
-        @Parameter(name="id") @RequestParam Long id
+        @Parameter(name="id") @RequestParam Long id,
+        WebRequest webRequest
     ) {
+        if (notModified(webRequest, MenuItemReview.class)) {
+            return null;
+        }
         MenuItemReview menuItemReview = menuItemReviewRepository.findById(id)
             .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
 
@@ -81,13 +177,23 @@ public class MenuItemReviewController extends ApiController {
 
     @Operation(summary = "Update a single menu item review")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PutMapping("")
     public MenuItemReview updatMenuItemReview(
         @Parameter(name="id") @RequestParam Long id,
+        @Parameter(name="If-Match", description=IF_MATCH_DESCRIPTION) @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @RequestBody @Valid MenuItemReview menuItemReview
     ) {
+        Long version = ifMatchVersion(ifMatch, MenuItemReview.class, id);
         MenuItemReview existingMenuItemReview = menuItemReviewRepository.findById(id)
             .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
+        // the old item and stars are needed for the stats, so the row is read
+        // first and its version checked here rather than in the UPDATE
+        if (version != null && version != existingMenuItemReview.getVersion()) {
+            throw new PreconditionFailedException(MenuItemReview.class, id);
+        }
+        outboxService.record(MenuItemReview.class, id, OutboxEvent.REVIEW_REMOVED,
+            new MenuItemReviewStatsService.Review(existingMenuItemReview.getItemId(), existingMenuItemReview.getStars()));
 
         existingMenuItemReview.setItemId(menuItemReview.getItemId());
         existingMenuItemReview.setReviewerEmail(menuItemReview.getReviewerEmail());
@@ -96,20 +202,34 @@ public class MenuItemReviewController extends ApiController {
         existingMenuItemReview.setComments(menuItemReview.getComments());
 
         menuItemReviewRepository.save(existingMenuItemReview);
+        outboxService.record(MenuItemReview.class, id, OutboxEvent.REVIEW_ADDED,
+            new MenuItemReviewStatsService.Review(existingMenuItemReview.getItemId(), existingMenuItemReview.getStars()));
 
+        entityChanged(MenuItemReview.class);
         return existingMenuItemReview;
     }
 
     @Operation(summary = "Delete a menu item review")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @DeleteMapping("")
     public Object deleteMenuItemReview(
         @Parameter(name="id") @RequestParam Long id
     ) {
+        // the stats need the review's item and stars, so this one delete
+        // still reads the row first, and only deletes the version it read:
+        // if another request got there in between, the stats are left alone
         MenuItemReview menuItemReview = menuItemReviewRepository.findById(id)
             .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
 
-        menuItemReviewRepository.delete(menuItemReview);
+        int deleted = menuItemReviewRepository.deleteIfVersion(id, menuItemReview.getVersion());
+        if (deleted == 0 && menuItemReviewRepository.existsById(id)) {
+            throw new OptimisticLockingFailureException("MenuItemReview with id %s was changed".formatted(id));
+        }
+        requireDeleted(deleted, MenuItemReview.class, id);
+        outboxService.record(MenuItemReview.class, id, OutboxEvent.REVIEW_REMOVED,
+            new MenuItemReviewStatsService.Review(menuItemReview.getItemId(), menuItemReview.getStars()));
+        entityChanged(MenuItemReview.class);
         return genericMessage("MenuItemReview with id %s deleted".formatted(id));
     }
 }
\ No newline at end of file
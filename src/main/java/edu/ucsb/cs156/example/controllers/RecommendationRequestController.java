@@ -1,8 +1,10 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.entities.OutboxEvent;
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+import edu.ucsb.cs156.example.services.OutboxService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -12,19 +14,29 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 
 @Tag(name = "RecommendationRequest")
@@ -36,13 +48,44 @@ public class RecommendationRequestController extends ApiController{
     @Autowired
     RecommendationRequestRepository recommendationRequestRepository;
 
+    @Autowired
+    OutboxService outboxService;
+
     // GET /api/recommendationrequest/all
     @Operation(summary= "List all recommendation requests")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<RecommendationRequest> allRecommendationRequests() {
-        Iterable<RecommendationRequest> recommendationRequests = recommendationRequestRepository.findAll();
-        return recommendationRequests;
+    public ResponseEntity<Iterable<RecommendationRequest>> allRecommendationRequests(
+            @Parameter(name="after", description="continuation token: only return recommendation requests whose id sorts after this one") @RequestParam(required = false) Long after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, RecommendationRequest.class)) {
+            return null;
+        }
+        Pageable pageRequest = keysetPageRequest(limit);
+        List<RecommendationRequest> page = recommendationRequestRepository.findPageAfter(after == null ? 0L : after, pageRequest);
+        return keysetPage(page, pageRequest, RecommendationRequest::getId);
+    }
+
+    @Operation(summary= "List all recommendation requests, with only the given fields")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "fields")
+    public ResponseEntity<Iterable<Map<String, Object>>> allRecommendationRequestsFields(
+            @Parameter(name="fields", description=FIELDS_DESCRIPTION) @RequestParam List<String> fields,
+            @Parameter(name="after", description="continuation token: only return recommendation requests whose id sorts after this one") @RequestParam(required = false) Long after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, RecommendationRequest.class)) {
+            return null;
+        }
+        return fieldsPage(RecommendationRequest.class, fields, after, limit);
+    }
+
+    @Operation(summary= "Export all recommendation requests as newline-delimited JSON, streamed as they are read")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportRecommendationRequests() {
+        return ndjson(recommendationRequestRepository::streamAll);
     }
 
     // GET /api/recommendationrequest?id
@@ -50,7 +93,11 @@ public class RecommendationRequestController extends ApiController{
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public RecommendationRequest getById(
-            @Parameter(name="id") @RequestParam Long id) {
+            @Parameter(name="id") @RequestParam Long id,
+            WebRequest webRequest) {
+        if (notModified(webRequest, RecommendationRequest.class)) {
+            return null;
+        }
         RecommendationRequest recommendationRequest = recommendationRequestRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
 
@@ -60,6 +107,7 @@ public class RecommendationRequestController extends ApiController{
     // POST /api/recommendationrequest/post
     @Operation(summary= "Create a new recommendation request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PostMapping("/post")
     public RecommendationRequest createRecommendationRequest(
             @Parameter(name= "requestorEmail") @RequestParam String requestorEmail,
@@ -82,6 +130,8 @@ public class RecommendationRequestController extends ApiController{
         
         RecommendationRequest savedRequest = recommendationRequestRepository.save(request);
 
+        entityChanged(RecommendationRequest.class);
+        outboxService.record(RecommendationRequest.class, savedRequest.getId(), OutboxEvent.SAVED);
         return savedRequest;    
     }
 
@@ -89,10 +139,22 @@ public class RecommendationRequestController extends ApiController{
     // PUT /api/recommendationrequest/put
     @Operation(summary= "Update an existing recommendation request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PutMapping("")
     public RecommendationRequest updateRecommendationRequest(
             @Parameter(name= "id") @RequestParam Long id,
+            @Parameter(name="If-Match", description=IF_MATCH_DESCRIPTION) @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody @Valid RecommendationRequest nReq) {
+        Long version = ifMatchVersion(ifMatch, RecommendationRequest.class, id);
+        if (version != null) {
+            requireUpdated(recommendationRequestRepository.updateIfVersion(id, version, nReq),
+                    recommendationRequestRepository, id, RecommendationRequest.class);
+            nReq.setId(id);
+            nReq.setVersion(version + 1);
+            entityChanged(RecommendationRequest.class);
+            outboxService.record(RecommendationRequest.class, id, OutboxEvent.SAVED);
+            return nReq;
+        }
         
         
         // Get the existing recommendation request
@@ -111,23 +173,24 @@ public class RecommendationRequestController extends ApiController{
         // Save the updated recommendation request
         recommendationRequestRepository.save(request);
 
+        entityChanged(RecommendationRequest.class);
+        outboxService.record(RecommendationRequest.class, id, OutboxEvent.SAVED);
         return request;    
     }
 
     // DELETE /api/recommendationrequest/delete
     @Operation(summary= "Delete an existing recommendation request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @DeleteMapping("")
     public Object deleteRecommendationRequest(
             @Parameter(name="id") @RequestParam Long id) {
         
-        // Get the existing recommendation request
-        RecommendationRequest request = recommendationRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
-
-        // Delete the recommendation request
-        recommendationRequestRepository.delete(request);
+        // Delete the recommendation request, if there is one
+        requireDeleted(recommendationRequestRepository.deleteRow(id), RecommendationRequest.class, id);
         
+        entityChanged(RecommendationRequest.class);
+        outboxService.record(RecommendationRequest.class, id, OutboxEvent.DELETED);
         return genericMessage("RecommendationRequest with id %s deleted".formatted(id));
 
     }
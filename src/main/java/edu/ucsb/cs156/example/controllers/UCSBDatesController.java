@@ -1,5 +1,6 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.config.CacheConfig;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
@@ -13,19 +14,29 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 @Tag(name = "UCSBDates")
 @RequestMapping("/api/ucsbdates")
@@ -39,16 +50,48 @@ public class UCSBDatesController extends ApiController {
     @Operation(summary= "List all ucsb dates")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDate> allUCSBDates() {
-        Iterable<UCSBDate> dates = ucsbDateRepository.findAll();
-        return dates;
+    public ResponseEntity<Iterable<UCSBDate>> allUCSBDates(
+            @Parameter(name="after", description="continuation token: only return dates whose id sorts after this one") @RequestParam(required = false) Long after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, UCSBDate.class)) {
+            return null;
+        }
+        Pageable pageRequest = keysetPageRequest(limit);
+        List<UCSBDate> page = ucsbDateRepository.findPageAfter(after == null ? 0L : after, pageRequest);
+        return keysetPage(page, pageRequest, UCSBDate::getId);
+    }
+
+    @Operation(summary= "List all ucsb dates, with only the given fields")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "fields")
+    public ResponseEntity<Iterable<Map<String, Object>>> allUCSBDatesFields(
+            @Parameter(name="fields", description=FIELDS_DESCRIPTION) @RequestParam List<String> fields,
+            @Parameter(name="after", description="continuation token: only return dates whose id sorts after this one") @RequestParam(required = false) Long after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, UCSBDate.class)) {
+            return null;
+        }
+        return fieldsPage(UCSBDate.class, fields, after, limit);
+    }
+
+    @Operation(summary= "Export all ucsb dates as newline-delimited JSON, streamed as they are read")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUCSBDates() {
+        return ndjson(ucsbDateRepository::streamAll);
     }
 
     @Operation(summary= "Get a single date")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public UCSBDate getById(
-            @Parameter(name="id") @RequestParam Long id) {
+            @Parameter(name="id") @RequestParam Long id,
+            WebRequest webRequest) {
+        if (notModified(webRequest, UCSBDate.class)) {
+            return null;
+        }
         UCSBDate ucsbDate = ucsbDateRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
 
@@ -57,6 +100,7 @@ public class UCSBDatesController extends ApiController {
 
     @Operation(summary= "Create a new date")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PostMapping("/post")
     public UCSBDate postUCSBDate(
             @Parameter(name="quarterYYYYQ") @RequestParam String quarterYYYYQ,
@@ -76,27 +120,42 @@ public class UCSBDatesController extends ApiController {
 
         UCSBDate savedUcsbDate = ucsbDateRepository.save(ucsbDate);
 
+        evictAfterCommit(CacheConfig.UCSB_DATES);
+        entityChanged(UCSBDate.class);
         return savedUcsbDate;
     }
 
     @Operation(summary= "Delete a UCSBDate")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @DeleteMapping("")
     public Object deleteUCSBDate(
             @Parameter(name="id") @RequestParam Long id) {
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
-
-        ucsbDateRepository.delete(ucsbDate);
+        // one DELETE ... WHERE id = ?; the row count says whether it was there
+        requireDeleted(ucsbDateRepository.deleteRow(id), UCSBDate.class, id);
+        evictAfterCommit(CacheConfig.UCSB_DATES);
+        entityChanged(UCSBDate.class);
         return genericMessage("UCSBDate with id %s deleted".formatted(id));
     }
 
     @Operation(summary= "Update a single date")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PutMapping("")
     public UCSBDate updateUCSBDate(
             @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="If-Match", description=IF_MATCH_DESCRIPTION) @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody @Valid UCSBDate incoming) {
+        Long version = ifMatchVersion(ifMatch, UCSBDate.class, id);
+        if (version != null) {
+            // one UPDATE ... WHERE id = ? AND version = ?, without reading the row first
+            requireUpdated(ucsbDateRepository.updateIfVersion(id, version, incoming), ucsbDateRepository, id, UCSBDate.class);
+            incoming.setId(id);
+            incoming.setVersion(version + 1);
+            evictAfterCommit(CacheConfig.UCSB_DATES);
+            entityChanged(UCSBDate.class);
+            return incoming;
+        }
 
         UCSBDate ucsbDate = ucsbDateRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
@@ -107,6 +166,62 @@ public class UCSBDatesController extends ApiController {
 
         ucsbDateRepository.save(ucsbDate);
 
+        evictAfterCommit(CacheConfig.UCSB_DATES);
+        entityChanged(UCSBDate.class);
         return ucsbDate;
     }
+
+    @Operation(summary= "Create many dates at once; ids in the request body are ignored")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @PostMapping("/bulk")
+    public Iterable<UCSBDate> postUCSBDates(
+            @RequestBody @Valid List<UCSBDate> incoming) {
+        incoming.forEach(ucsbDate -> ucsbDate.setId(0));
+
+        Iterable<UCSBDate> savedUcsbDates = ucsbDateRepository.saveAll(incoming);
+
+        evictAfterCommit(CacheConfig.UCSB_DATES);
+        entityChanged(UCSBDate.class);
+        return savedUcsbDates;
+    }
+
+    @Operation(summary= "Update many dates at once, matched by id; each must carry the version it was read at")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @PutMapping("/bulk")
+    public Iterable<UCSBDate> updateUCSBDates(
+            @RequestBody @Valid List<UCSBDate> incoming) {
+        List<Long> ids = incoming.stream().map(UCSBDate::getId).toList();
+        List<UCSBDate> ucsbDates = findAllOrThrow(ucsbDateRepository, ids, UCSBDate::getId, UCSBDate.class);
+        requireVersions(ucsbDates, incoming, UCSBDate::getVersion, UCSBDate::getId, UCSBDate.class);
+
+        for (int i = 0; i < ucsbDates.size(); i++) {
+            UCSBDate ucsbDate = ucsbDates.get(i);
+            ucsbDate.setQuarterYYYYQ(incoming.get(i).getQuarterYYYYQ());
+            ucsbDate.setName(incoming.get(i).getName());
+            ucsbDate.setLocalDateTime(incoming.get(i).getLocalDateTime());
+        }
+
+        ucsbDateRepository.saveAll(ucsbDates);
+
+        evictAfterCommit(CacheConfig.UCSB_DATES);
+        entityChanged(UCSBDate.class);
+        return ucsbDates;
+    }
+
+    @Operation(summary= "Delete many dates at once, given a list of ids")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @DeleteMapping("/bulk")
+    public Object deleteUCSBDates(
+            @RequestBody List<Long> ids) {
+        List<UCSBDate> ucsbDates = findAllOrThrow(ucsbDateRepository, ids, UCSBDate::getId, UCSBDate.class);
+
+        // one DELETE ... WHERE id IN (...), rather than one per row
+        ucsbDateRepository.deleteRows(ids);
+        evictAfterCommit(CacheConfig.UCSB_DATES);
+        entityChanged(UCSBDate.class);
+        return genericMessage("%d UCSBDates deleted".formatted(ucsbDates.size()));
+    }
 }
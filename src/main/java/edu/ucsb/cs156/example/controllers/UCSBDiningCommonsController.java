@@ -1,8 +1,11 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.config.CacheConfig;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.NearbyDiningCommons;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.DiningCommonsLocatorService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -10,40 +13,102 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 // import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.List;
+import java.util.Map;
+
+import static edu.ucsb.cs156.example.services.Transactions.afterCommit;
+
 @Tag(name = "UCSBDiningCommons")
 @RequestMapping("/api/ucsbdiningcommons")
 @RestController
 // @Slf4j
 public class UCSBDiningCommonsController extends ApiController {
 
+    public static final int DEFAULT_NEAREST_COMMONS = 5;
+    public static final int MAX_NEAREST_COMMONS = 50;
+
     @Autowired
     UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
+    @Autowired
+    DiningCommonsLocatorService diningCommonsLocatorService;
+
     @Operation(summary= "List all ucsb dining commons")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDiningCommons> allCommonss() {
-        Iterable<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findAll();
-        return commons;
+    public ResponseEntity<Iterable<UCSBDiningCommons>> allCommonss(
+            @Parameter(name="after", description="continuation token: only return commons whose code sorts after this one") @RequestParam(required = false) String after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, UCSBDiningCommons.class)) {
+            return null;
+        }
+        Pageable pageRequest = keysetPageRequest(limit);
+        List<UCSBDiningCommons> page = ucsbDiningCommonsRepository.findPageAfter(after == null ? "" : after, pageRequest);
+        return keysetPage(page, pageRequest, UCSBDiningCommons::getCode);
+    }
+
+    @Operation(summary= "List all ucsb dining commons, with only the given fields")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "fields")
+    public ResponseEntity<Iterable<Map<String, Object>>> allCommonsFields(
+            @Parameter(name="fields", description=FIELDS_DESCRIPTION) @RequestParam List<String> fields,
+            @Parameter(name="after", description="continuation token: only return commons whose code sorts after this one") @RequestParam(required = false) String after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, UCSBDiningCommons.class)) {
+            return null;
+        }
+        return fieldsPage(UCSBDiningCommons.class, fields, after, limit);
+    }
+
+    @Operation(summary= "Export all ucsb dining commons as newline-delimited JSON, streamed as they are read")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCommons() {
+        return ndjson(ucsbDiningCommonsRepository::streamAll);
+    }
+
+    @Operation(summary= "List the dining commons nearest to a location, nearest first, with their distances in meters")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/nearest")
+    public List<NearbyDiningCommons> nearestCommons(
+            @Parameter(name="lat", description="latitude in degrees") @RequestParam double lat,
+            @Parameter(name="lon", description="longitude in degrees") @RequestParam double lon,
+            @Parameter(name="k", description="number of commons (at most " + MAX_NEAREST_COMMONS + ")") @RequestParam(required = false) Integer k) {
+        int count = (k == null) ? DEFAULT_NEAREST_COMMONS : Math.max(1, Math.min(k, MAX_NEAREST_COMMONS));
+        return diningCommonsLocatorService.nearest(lat, lon, count);
     }
 
     @Operation(summary= "Get a single commons")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public UCSBDiningCommons getById(
-            @Parameter(name="code") @RequestParam String code) {
+            @Parameter(name="code") @RequestParam String code,
+            WebRequest webRequest) {
+        if (notModified(webRequest, UCSBDiningCommons.class)) {
+            return null;
+        }
         UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
 
@@ -52,6 +117,7 @@ public class UCSBDiningCommonsController extends ApiController {
 
     @Operation(summary= "Create a new commons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PostMapping("/post")
     public UCSBDiningCommons postCommons(
         @Parameter(name="code") @RequestParam String code,
@@ -75,27 +141,43 @@ public class UCSBDiningCommonsController extends ApiController {
 
         UCSBDiningCommons savedCommons = ucsbDiningCommonsRepository.save(commons);
 
+        evictAfterCommit(CacheConfig.UCSB_DINING_COMMONS);
+        entityChanged(UCSBDiningCommons.class);
+        afterCommit(diningCommonsLocatorService::rebuild);
         return savedCommons;
     }
 
     @Operation(summary= "Delete a UCSBDiningCommons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @DeleteMapping("")
     public Object deleteCommons(
             @Parameter(name="code") @RequestParam String code) {
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
-
-        ucsbDiningCommonsRepository.delete(commons);
+        requireDeleted(ucsbDiningCommonsRepository.deleteRow(code), UCSBDiningCommons.class, code);
+        evictAfterCommit(CacheConfig.UCSB_DINING_COMMONS);
+        entityChanged(UCSBDiningCommons.class);
+        afterCommit(diningCommonsLocatorService::rebuild);
         return genericMessage("UCSBDiningCommons with id %s deleted".formatted(code));
     }
 
     @Operation(summary= "Update a single commons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PutMapping("")
     public UCSBDiningCommons updateCommons(
             @Parameter(name="code") @RequestParam String code,
+            @Parameter(name="If-Match", description=IF_MATCH_DESCRIPTION) @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody @Valid UCSBDiningCommons incoming) {
+        Long version = ifMatchVersion(ifMatch, UCSBDiningCommons.class, code);
+        if (version != null) {
+            requireUpdated(ucsbDiningCommonsRepository.updateIfVersion(code, version, incoming), ucsbDiningCommonsRepository, code, UCSBDiningCommons.class);
+            incoming.setCode(code);
+            incoming.setVersion(version + 1);
+            evictAfterCommit(CacheConfig.UCSB_DINING_COMMONS);
+            entityChanged(UCSBDiningCommons.class);
+            afterCommit(diningCommonsLocatorService::rebuild);
+            return incoming;
+        }
 
         UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
@@ -110,6 +192,9 @@ public class UCSBDiningCommonsController extends ApiController {
 
         ucsbDiningCommonsRepository.save(commons);
 
+        evictAfterCommit(CacheConfig.UCSB_DINING_COMMONS);
+        entityChanged(UCSBDiningCommons.class);
+        afterCommit(diningCommonsLocatorService::rebuild);
         return commons;
     }
 }
@@ -3,6 +3,7 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.services.MenuItemLeaderboardService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,17 +14,27 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 import javax.validation.Valid;
 
@@ -36,19 +47,54 @@ public class UCSBDiningCommonsMenuItemController extends ApiController{
     @Autowired
     UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
 
+    @Autowired
+    MenuItemLeaderboardService menuItemLeaderboardService;
+
     @Operation(summary= "List all UCSB Dining Commons Menu Items")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDiningCommonsMenuItem> allUCSBDiningCommonsMenuItems() {
-        Iterable<UCSBDiningCommonsMenuItem> uCSBDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findAll();
-        return uCSBDiningCommonsMenuItem;
+    public ResponseEntity<Iterable<UCSBDiningCommonsMenuItem>> allUCSBDiningCommonsMenuItems(
+            @Parameter(name="after", description="continuation token: only return menu items whose id sorts after this one") @RequestParam(required = false) Long after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, UCSBDiningCommonsMenuItem.class)) {
+            return null;
+        }
+        Pageable pageRequest = keysetPageRequest(limit);
+        List<UCSBDiningCommonsMenuItem> page = ucsbDiningCommonsMenuItemRepository.findPageAfter(after == null ? 0L : after, pageRequest);
+        return keysetPage(page, pageRequest, UCSBDiningCommonsMenuItem::getId);
+    }
+
+    @Operation(summary= "List all UCSB Dining Commons Menu Items, with only the given fields")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "fields")
+    public ResponseEntity<Iterable<Map<String, Object>>> allUCSBDiningCommonsMenuItemsFields(
+            @Parameter(name="fields", description=FIELDS_DESCRIPTION) @RequestParam List<String> fields,
+            @Parameter(name="after", description="continuation token: only return menu items whose id sorts after this one") @RequestParam(required = false) Long after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, UCSBDiningCommonsMenuItem.class)) {
+            return null;
+        }
+        return fieldsPage(UCSBDiningCommonsMenuItem.class, fields, after, limit);
+    }
+
+    @Operation(summary= "Export all UCSB Dining Commons Menu Items as newline-delimited JSON, streamed as they are read")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUCSBDiningCommonsMenuItems() {
+        return ndjson(ucsbDiningCommonsMenuItemRepository::streamAll);
     }
 
     @Operation(summary= "Get a single UCSB Dining Commons Menu Item")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public UCSBDiningCommonsMenuItem getById(
-            @Parameter(name="id") @RequestParam Long id) {
+            @Parameter(name="id") @RequestParam Long id,
+            WebRequest webRequest) {
+                if (notModified(webRequest, UCSBDiningCommonsMenuItem.class)) {
+                    return null;
+                }
                 UCSBDiningCommonsMenuItem uCSBDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
 
@@ -72,16 +118,31 @@ public class UCSBDiningCommonsMenuItemController extends ApiController{
 
 
             UCSBDiningCommonsMenuItem savedItem = ucsbDiningCommonsMenuItemRepository.save(uCSBDiningCommonsMenuItem);
+            menuItemLeaderboardService.menuItemSaved(savedItem);
 
+            entityChanged(UCSBDiningCommonsMenuItem.class);
             return savedItem;
         }
     
     @Operation(summary= "Update a UCSB Dining Commons Menu Item")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PutMapping("")
     public UCSBDiningCommonsMenuItem updateUCSBDiningCommonsMenuItem(
         @Parameter(name="id") @RequestParam Long id,
+        @Parameter(name="If-Match", description=IF_MATCH_DESCRIPTION) @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @RequestBody @Valid UCSBDiningCommonsMenuItem incoming){
+            Long version = ifMatchVersion(ifMatch, UCSBDiningCommonsMenuItem.class, id);
+            if (version != null) {
+                requireUpdated(ucsbDiningCommonsMenuItemRepository.updateIfVersion(id, version, incoming),
+                    ucsbDiningCommonsMenuItemRepository, id, UCSBDiningCommonsMenuItem.class);
+                incoming.setId(id);
+                incoming.setVersion(version + 1);
+                menuItemLeaderboardService.menuItemSaved(incoming);
+                entityChanged(UCSBDiningCommonsMenuItem.class);
+                return incoming;
+            }
+
             UCSBDiningCommonsMenuItem uCSBDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
 
@@ -90,23 +151,81 @@ public class UCSBDiningCommonsMenuItemController extends ApiController{
             uCSBDiningCommonsMenuItem.setStation(incoming.getStation());
 
             ucsbDiningCommonsMenuItemRepository.save(uCSBDiningCommonsMenuItem);
-            
+            menuItemLeaderboardService.menuItemSaved(uCSBDiningCommonsMenuItem);
 
+            entityChanged(UCSBDiningCommonsMenuItem.class);
             return uCSBDiningCommonsMenuItem;
         }
 
     @Operation(summary= "Delete a UCSB Dining Commons Menu Item")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @DeleteMapping("")
     public Object deleteUCSBDiningCommonsMenuItem(
         @Parameter(name="id") @RequestParam Long id){
         
-            UCSBDiningCommonsMenuItem uCSBDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
-
-        ucsbDiningCommonsMenuItemRepository.delete(uCSBDiningCommonsMenuItem);
+        requireDeleted(ucsbDiningCommonsMenuItemRepository.deleteRow(id), UCSBDiningCommonsMenuItem.class, id);
+        menuItemLeaderboardService.menuItemDeleted(id);
+        entityChanged(UCSBDiningCommonsMenuItem.class);
         return genericMessage("UCSBDiningCommonsMenuItem with id %s deleted".formatted(id));
         }
-}
 
+    @Operation(summary= "Create many UCSB Dining Commons Menu Items at once; ids in the request body are ignored")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @PostMapping("/bulk")
+    public Iterable<UCSBDiningCommonsMenuItem> postUCSBDiningCommonsMenuItems(
+        @RequestBody @Valid List<UCSBDiningCommonsMenuItem> incoming) {
+
+            incoming.forEach(item -> item.setId(0));
+
+            Iterable<UCSBDiningCommonsMenuItem> savedItems = ucsbDiningCommonsMenuItemRepository.saveAll(incoming);
+            savedItems.forEach(menuItemLeaderboardService::menuItemSaved);
+
+            entityChanged(UCSBDiningCommonsMenuItem.class);
+            return savedItems;
+        }
 
+    @Operation(summary= "Update many UCSB Dining Commons Menu Items at once, matched by id; each must carry the version it was read at")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @PutMapping("/bulk")
+    public Iterable<UCSBDiningCommonsMenuItem> updateUCSBDiningCommonsMenuItems(
+        @RequestBody @Valid List<UCSBDiningCommonsMenuItem> incoming) {
+
+            List<Long> ids = incoming.stream().map(UCSBDiningCommonsMenuItem::getId).toList();
+            List<UCSBDiningCommonsMenuItem> items = findAllOrThrow(ucsbDiningCommonsMenuItemRepository, ids,
+                UCSBDiningCommonsMenuItem::getId, UCSBDiningCommonsMenuItem.class);
+            requireVersions(items, incoming, UCSBDiningCommonsMenuItem::getVersion,
+                UCSBDiningCommonsMenuItem::getId, UCSBDiningCommonsMenuItem.class);
+
+            for (int i = 0; i < items.size(); i++) {
+                UCSBDiningCommonsMenuItem item = items.get(i);
+                item.setDiningCommonsCode(incoming.get(i).getDiningCommonsCode());
+                item.setName(incoming.get(i).getName());
+                item.setStation(incoming.get(i).getStation());
+            }
+
+            ucsbDiningCommonsMenuItemRepository.saveAll(items);
+            items.forEach(menuItemLeaderboardService::menuItemSaved);
+
+            entityChanged(UCSBDiningCommonsMenuItem.class);
+            return items;
+        }
+
+    @Operation(summary= "Delete many UCSB Dining Commons Menu Items at once, given a list of ids")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
+    @DeleteMapping("/bulk")
+    public Object deleteUCSBDiningCommonsMenuItems(
+        @RequestBody List<Long> ids) {
+
+            List<UCSBDiningCommonsMenuItem> items = findAllOrThrow(ucsbDiningCommonsMenuItemRepository, ids,
+                UCSBDiningCommonsMenuItem::getId, UCSBDiningCommonsMenuItem.class);
+
+        ucsbDiningCommonsMenuItemRepository.deleteRows(ids);
+        ids.forEach(menuItemLeaderboardService::menuItemDeleted);
+        entityChanged(UCSBDiningCommonsMenuItem.class);
+        return genericMessage("%d UCSBDiningCommonsMenuItems deleted".formatted(items.size()));
+        }
+}
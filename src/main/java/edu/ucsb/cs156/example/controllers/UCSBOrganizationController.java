@@ -1,5 +1,6 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.config.CacheConfig;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
@@ -12,18 +13,29 @@ import lombok.extern.slf4j.Slf4j;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.List;
+import java.util.Map;
+
 @Tag(name = "UCSBOrganization")
 @RequestMapping("/api/UCSBOrganization")
 @RestController
@@ -37,16 +49,48 @@ public class UCSBOrganizationController extends ApiController{
     @Operation(summary = "List all ucsb organizations")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBOrganization> allUCSBOrganization() {
-        Iterable<UCSBOrganization> UCSBOrganizations = uCSBOrganizationRepository.findAll();
-        return UCSBOrganizations;
+    public ResponseEntity<Iterable<UCSBOrganization>> allUCSBOrganization(
+            @Parameter(name="after", description="continuation token: only return organizations whose orgCode sorts after this one") @RequestParam(required = false) String after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, UCSBOrganization.class)) {
+            return null;
+        }
+        Pageable pageRequest = keysetPageRequest(limit);
+        List<UCSBOrganization> page = uCSBOrganizationRepository.findPageAfter(after == null ? "" : after, pageRequest);
+        return keysetPage(page, pageRequest, UCSBOrganization::getOrgCode);
+    }
+
+    @Operation(summary= "List all ucsb organizations, with only the given fields")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "fields")
+    public ResponseEntity<Iterable<Map<String, Object>>> allUCSBOrganizationFields(
+            @Parameter(name="fields", description=FIELDS_DESCRIPTION) @RequestParam List<String> fields,
+            @Parameter(name="after", description="continuation token: only return organizations whose orgCode sorts after this one") @RequestParam(required = false) String after,
+            @Parameter(name="limit", description="page size (at most " + MAX_PAGE_SIZE + ")") @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (notModified(webRequest, UCSBOrganization.class)) {
+            return null;
+        }
+        return fieldsPage(UCSBOrganization.class, fields, after, limit);
+    }
+
+    @Operation(summary = "Export all ucsb organizations as newline-delimited JSON, streamed as they are read")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUCSBOrganizations() {
+        return ndjson(uCSBOrganizationRepository::streamAll);
     }
 
     @Operation(summary= "Get a UCSB organization by ID")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public UCSBOrganization getById(
-            @Parameter(name="orgCode") @RequestParam String orgCode) {
+            @Parameter(name="orgCode") @RequestParam String orgCode,
+            WebRequest webRequest) {
+        if (notModified(webRequest, UCSBOrganization.class)) {
+            return null;
+        }
         UCSBOrganization ucsborg = uCSBOrganizationRepository.findById(orgCode)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
 
@@ -57,6 +101,7 @@ public class UCSBOrganizationController extends ApiController{
 
     @Operation(summary = "Create a new ucsb organization")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PostMapping("/post")
     public UCSBOrganization postUCSBOrganization(
             @Parameter(name="orgCode") @RequestParam String orgCode,
@@ -73,16 +118,29 @@ public class UCSBOrganizationController extends ApiController{
         UCSBOrg.setInactive(inactive);
 
         UCSBOrganization savedorg = uCSBOrganizationRepository.save(UCSBOrg);
+        evictAfterCommit(CacheConfig.UCSB_ORGANIZATIONS);
+        entityChanged(UCSBOrganization.class);
         return savedorg;
     }
 
 
     @Operation(summary= "Update an existing ucsb organization")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @PutMapping("")
     public UCSBOrganization updateHelpRequest(
             @Parameter(name="orgCode") @RequestParam String orgCode,
+            @Parameter(name="If-Match", description=IF_MATCH_DESCRIPTION) @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody @Valid UCSBOrganization incoming) {
+        Long version = ifMatchVersion(ifMatch, UCSBOrganization.class, orgCode);
+        if (version != null) {
+            requireUpdated(uCSBOrganizationRepository.updateIfVersion(orgCode, version, incoming), uCSBOrganizationRepository, orgCode, UCSBOrganization.class);
+            incoming.setOrgCode(orgCode);
+            incoming.setVersion(version + 1);
+            evictAfterCommit(CacheConfig.UCSB_ORGANIZATIONS);
+            entityChanged(UCSBOrganization.class);
+            return incoming;
+        }
         log.info("incoming={}", incoming);
         log.info("orgCode={}", orgCode);
         UCSBOrganization ucsborg = uCSBOrganizationRepository.findById(orgCode)
@@ -95,6 +153,8 @@ public class UCSBOrganizationController extends ApiController{
 
         uCSBOrganizationRepository.save(ucsborg);
 
+        evictAfterCommit(CacheConfig.UCSB_ORGANIZATIONS);
+        entityChanged(UCSBOrganization.class);
         return ucsborg;
     }
 
@@ -102,13 +162,13 @@ public class UCSBOrganizationController extends ApiController{
 
     @Operation(summary= "Delete a ucsb organization")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @Transactional
     @DeleteMapping("")
     public Object deleteOrg(
             @Parameter(name="orgCode") @RequestParam String orgCode) {
-        UCSBOrganization Org = uCSBOrganizationRepository.findById(orgCode)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
-
-        uCSBOrganizationRepository.delete(Org);
+        requireDeleted(uCSBOrganizationRepository.deleteRow(orgCode), UCSBOrganization.class, orgCode);
+        evictAfterCommit(CacheConfig.UCSB_ORGANIZATIONS);
+        entityChanged(UCSBOrganization.class);
         return genericMessage("record %s deleted".formatted(orgCode));
     }
 
@@ -5,6 +5,7 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Version;
 import javax.persistence.GeneratedValue;
 
 import lombok.Data;
@@ -22,6 +23,9 @@ public class HelpRequest {
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private long id;
 
+  @Version
+  private long version;
+
   private String title;
   private LocalDateTime requestDateTime;
   private String requester;  
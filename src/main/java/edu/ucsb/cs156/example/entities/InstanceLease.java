@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// The one row naming the instance of the app that may run against this
+// database, until expiresAt (UTC) unless renewed; see InstanceLeaseService
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "instancelease")
+public class InstanceLease {
+  public static final int ID = 1;
+
+  @Id
+  private int id;
+
+  private String owner;
+  private LocalDateTime expiresAt;
+}
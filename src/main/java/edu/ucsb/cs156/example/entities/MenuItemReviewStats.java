@@ -0,0 +1,29 @@
+package edu.ucsb.cs156.example.entities;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// Running totals of the reviews of one menu item, kept up to date by
+// MenuItemReviewStatsService whenever a review is added, changed or removed
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "menuitemreviewstats")
+public class MenuItemReviewStats {
+
+  @Id
+  private long itemId;
+
+  private long reviewCount;
+  private long totalStars;
+
+  public Double getAverageStars() {
+    return reviewCount == 0 ? null : (double) totalStars / reviewCount;
+  }
+}
@@ -0,0 +1,39 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A change to an entity, waiting in the outbox to be published to the
+// EventBus by OutboxRelayService; the payload, if any, is JSON
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "outboxevents")
+public class OutboxEvent {
+  public static final String SAVED = "saved";
+  public static final String DELETED = "deleted";
+  public static final String REVIEW_ADDED = "reviewAdded";
+  public static final String REVIEW_REMOVED = "reviewRemoved";
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  private String aggregateType;
+  private long aggregateId;
+  private String eventType;
+  private String payload;
+  private LocalDateTime createdAt;
+  private int attempts;
+  private String lastError;
+}
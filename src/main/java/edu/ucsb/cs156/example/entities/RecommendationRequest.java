@@ -5,6 +5,7 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Version;
 import javax.persistence.GeneratedValue;
 
 import lombok.Data;
@@ -23,6 +24,9 @@ public class RecommendationRequest {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private long Id;
 
+    @Version
+    private long version;
+
     private String requesterEmail;
     private String professorEmail;
     private String explanation;
@@ -2,6 +2,7 @@ package edu.ucsb.cs156.example.entities;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Version;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,6 +17,10 @@ import lombok.Builder;
 public class UCSBDiningCommons {
   @Id
   private String code;
+
+  @Version
+  private long version;
+
   private String name;
   private boolean hasSackMeal;
   private boolean hasTakeOutMeal;
@@ -3,7 +3,9 @@ package edu.ucsb.cs156.example.entities;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Version;
 import javax.persistence.GeneratedValue;
+import javax.persistence.SequenceGenerator;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -18,9 +20,13 @@ import lombok.Builder;
 public class UCSBDiningCommonsMenuItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ucsbdiningcommonsmenuitems_seq")
+    @SequenceGenerator(name = "ucsbdiningcommonsmenuitems_seq", sequenceName = "ucsbdiningcommonsmenuitems_seq", allocationSize = 50)
     private long Id;
 
+    @Version
+    private long version;
+
     private String diningCommonsCode;
     private String name;
     private String station;
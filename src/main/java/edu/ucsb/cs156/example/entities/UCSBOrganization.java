@@ -2,6 +2,7 @@ package edu.ucsb.cs156.example.entities;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Version;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,6 +18,10 @@ import lombok.Builder;
 public class UCSBOrganization {
     @Id
     private String orgCode;
+
+    @Version
+    private long version;
+
     private String orgTranslationShort;
     private String orgTranslation;
     private boolean inactive;
@@ -0,0 +1,346 @@
+package edu.ucsb.cs156.example.filters;
+
+import edu.ucsb.cs156.example.services.FrontendAssetService;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Gzips the API responses that are big enough to gain from it, such as the
+ * JSON of the /all endpoints and the NDJSON exports, for clients that accept
+ * gzip. (Tomcat's server.compression stays off: it would also apply to the
+ * frontend, whose compressed copies are made at build time.)
+ *
+ * How big a response is only shows once it has been written, so its first
+ * minResponseSize bytes are held back. A response that ends within them,
+ * like /api/currentUser, is sent as it is; one that grows past them is
+ * compressed from then on, as it is written. Only JSON and plain text are
+ * compressed, which leaves out the change feed's event stream, whose events
+ * must reach the client as soon as they are flushed. A response that
+ * switches to non-blocking writes before it is compressed is sent as it is,
+ * through the container's own stream.
+ *
+ * A Deflater holds a few hundred KB of native memory, so they are pooled
+ * rather than made for every response.
+ */
+public class ApiCompressionFilter extends OncePerRequestFilter {
+
+  static final String GZIP = "gzip";
+
+  static final Set<String> COMPRESSIBLE = Set.of(
+      MediaType.APPLICATION_JSON_VALUE,
+      MediaType.APPLICATION_NDJSON_VALUE,
+      MediaType.APPLICATION_PROBLEM_JSON_VALUE,
+      MediaType.TEXT_PLAIN_VALUE);
+
+  final int minResponseSize;
+  final int level;
+  final BlockingQueue<Deflater> deflaters;
+
+  public ApiCompressionFilter(int minResponseSize, int level, int poolSize) {
+    this.minResponseSize = minResponseSize;
+    this.level = level;
+    this.deflaters = new ArrayBlockingQueue<>(poolSize);
+  }
+
+  // The NDJSON exports are written on another thread after the handler has
+  // returned; the gzip trailer is written on the async dispatch that follows
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    return false;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    GzipResponse gzipResponse = WebUtils.getNativeResponse(response, GzipResponse.class);
+    HttpServletResponse target = response;
+    if (gzipResponse == null) {
+      if (request.getMethod().equals("HEAD")
+          || !FrontendAssetService.accepts(request.getHeader(HttpHeaders.ACCEPT_ENCODING), GZIP)) {
+        chain.doFilter(request, response);
+        return;
+      }
+      gzipResponse = new GzipResponse(response);
+      target = gzipResponse;
+    }
+    try {
+      chain.doFilter(request, target);
+    } catch (IOException | ServletException | RuntimeException e) {
+      gzipResponse.release();
+      throw e;
+    }
+    if (!request.isAsyncStarted()) {
+      gzipResponse.finish();
+    }
+  }
+
+  Deflater borrow() {
+    Deflater deflater = deflaters.poll();
+    return (deflater != null) ? deflater : new Deflater(level, true);
+  }
+
+  void giveBack(Deflater deflater) {
+    deflater.reset();
+    if (!deflaters.offer(deflater)) {
+      deflater.end();
+    }
+  }
+
+  class GzipResponse extends HttpServletResponseWrapper {
+
+    private final ByteArrayOutputStream held = new ByteArrayOutputStream();
+    // null while the first bytes are held back, then either the response's
+    // own stream or a gzip stream over it
+    private OutputStream body;
+    private ServletOutputStream out;
+    private Deflater deflater;
+    private long contentLength = -1;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    GzipResponse(HttpServletResponse response) {
+      super(response);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+      if (outputStream == null) {
+        outputStream = new ServletOutputStream() {
+          @Override
+          public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+          }
+
+          @Override
+          public void write(byte[] b, int off, int len) throws IOException {
+            GzipResponse.this.write(b, off, len);
+          }
+
+          @Override
+          public void flush() throws IOException {
+            GzipResponse.this.flush();
+          }
+
+          @Override
+          public boolean isReady() {
+            return GzipResponse.this.isReady();
+          }
+
+          @Override
+          public void setWriteListener(WriteListener listener) {
+            GzipResponse.this.setWriteListener(listener);
+          }
+        };
+      }
+      return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      if (writer == null) {
+        writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+      }
+      return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      if (writer != null) {
+        writer.flush();
+      } else {
+        flush();
+      }
+    }
+
+    @Override
+    public void resetBuffer() {
+      held.reset();
+      super.resetBuffer();
+    }
+
+    @Override
+    public void reset() {
+      held.reset();
+      contentLength = -1;
+      super.reset();
+    }
+
+    // The length the handler gives is only passed on if the body is sent
+    // as it is
+    @Override
+    public void setContentLength(int length) {
+      setContentLengthLong(length);
+    }
+
+    @Override
+    public void setContentLengthLong(long length) {
+      if (body == null) {
+        contentLength = length;
+      } else if (deflater == null) {
+        super.setContentLengthLong(length);
+      }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+      if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+        setContentLengthLong(Long.parseLong(value));
+      } else {
+        super.setHeader(name, value);
+      }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+      if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+        setContentLengthLong(Long.parseLong(value));
+      } else {
+        super.addHeader(name, value);
+      }
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+      if (body == null && held.size() + len > minResponseSize) {
+        start(compressible());
+      }
+      (body == null ? held : body).write(b, off, len);
+    }
+
+    // Bytes held back stay held on a flush, unless the response is one that
+    // is never compressed
+    private void flush() throws IOException {
+      if (body == null && !compressible()) {
+        start(false);
+      }
+      if (body != null) {
+        body.flush();
+      }
+    }
+
+    // Bytes held back are written to memory, and gzipped ones with blocking
+    // writes, which a non-blocking writer cannot use
+    private boolean isReady() {
+      return body == null || deflater != null || out.isReady();
+    }
+
+    // What was held back is sent first, while writes still block
+    private void setWriteListener(WriteListener listener) {
+      if (deflater != null) {
+        throw new IllegalStateException("A response that is being gzipped cannot switch to non-blocking writes");
+      }
+      if (body == null) {
+        try {
+          start(false);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      out.setWriteListener(listener);
+    }
+
+    private boolean compressible() {
+      String contentType = getContentType();
+      return contentType != null
+          && COMPRESSIBLE.contains(contentType.split(";")[0].trim().toLowerCase())
+          && !containsHeader(HttpHeaders.CONTENT_ENCODING);
+    }
+
+    // Settles how the body is sent, and sends what was held back
+    private void start(boolean gzip) throws IOException {
+      out = getResponse().getOutputStream();
+      if (gzip) {
+        deflater = borrow();
+        super.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        super.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        // the compressed bytes differ from the ones the ETag was made for
+        String etag = getHeader(HttpHeaders.ETAG);
+        if (etag != null && etag.startsWith("\"")) {
+          super.setHeader(HttpHeaders.ETAG, "W/" + etag);
+        }
+        body = new GzipOutputStream(out, deflater);
+      } else {
+        if (contentLength >= 0) {
+          super.setContentLengthLong(contentLength);
+        }
+        body = out;
+      }
+      held.writeTo(body);
+      held.reset();
+    }
+
+    void finish() throws IOException {
+      if (writer != null) {
+        writer.flush();
+      }
+      if (body == null) {
+        start(false);
+      } else if (deflater != null) {
+        ((GzipOutputStream) body).finish();
+        release();
+      }
+    }
+
+    void release() {
+      if (deflater != null) {
+        giveBack(deflater);
+        deflater = null;
+      }
+    }
+  }
+
+  // java.util.zip.GZIPOutputStream always makes its own Deflater, so the gzip
+  // header and trailer (RFC 1952) are written here around a pooled one.
+  // Flushes are sync flushes, so an export still reaches the client in parts
+  static class GzipOutputStream extends DeflaterOutputStream {
+
+    private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private final CRC32 crc = new CRC32();
+
+    GzipOutputStream(OutputStream out, Deflater deflater) throws IOException {
+      super(out, deflater, 8192, true);
+      out.write(HEADER);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      super.write(b, off, len);
+      crc.update(b, off, len);
+    }
+
+    @Override
+    public void finish() throws IOException {
+      super.finish();
+      out.write(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN)
+          .putInt((int) crc.getValue())
+          .putInt((int) def.getBytesRead())
+          .array());
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class DiningCommonsReviewStats {
+  private String diningCommonsCode;
+  private long reviewCount;
+  private long totalStars;
+
+  public Double getAverageStars() {
+    return reviewCount == 0 ? null : (double) totalStars / reviewCount;
+  }
+}
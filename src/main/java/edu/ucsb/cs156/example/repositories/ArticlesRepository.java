@@ -2,9 +2,43 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Articles;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
-public interface ArticlesRepository extends CrudRepository<Articles, Long> {
-}
\ No newline at end of file
+public interface ArticlesRepository extends PagingAndSortingRepository<Articles, Long> {
+  @Query("SELECT a FROM articles a WHERE a.Id > :after ORDER BY a.Id")
+  List<Articles> findPageAfter(@Param("after") long after, Pageable pageable);
+
+  @Modifying
+  @Query("UPDATE articles a SET a.title = :#{#incoming.title}, "
+      + "a.url = :#{#incoming.url}, a.explanation = :#{#incoming.explanation}, "
+      + "a.email = :#{#incoming.email}, a.dateAdded = :#{#incoming.dateAdded}, "
+      + "a.version = a.version + 1 "
+      + "WHERE a.Id = :id AND a.version = :version")
+  int updateIfVersion(@Param("id") long id, @Param("version") long version, @Param("incoming") Articles incoming);
+
+  @Modifying
+  @Query("DELETE FROM articles a WHERE a.Id = :id")
+  int deleteRow(@Param("id") long id);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("SELECT a FROM articles a ORDER BY a.Id")
+  Stream<Articles> streamAll();
+}
@@ -2,11 +2,44 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.HelpRequest;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
-public interface HelpRequestRepository extends CrudRepository<HelpRequest, Long> {
+public interface HelpRequestRepository extends PagingAndSortingRepository<HelpRequest, Long> {
+  @Query("SELECT h FROM helprequest h WHERE h.id > :after ORDER BY h.id")
+  List<HelpRequest> findPageAfter(@Param("after") long after, Pageable pageable);
+
+  @Modifying
+  @Query("UPDATE helprequest h SET h.title = :#{#incoming.title}, "
+      + "h.requester = :#{#incoming.requester}, "
+      + "h.requestBody = :#{#incoming.requestBody}, "
+      + "h.requestDateTime = :#{#incoming.requestDateTime}, "
+      + "h.version = h.version + 1 "
+      + "WHERE h.id = :id AND h.version = :version")
+  int updateIfVersion(@Param("id") long id, @Param("version") long version, @Param("incoming") HelpRequest incoming);
+
+  @Modifying
+  @Query("DELETE FROM helprequest h WHERE h.id = :id")
+  int deleteRow(@Param("id") long id);
 
-}
\ No newline at end of file
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("SELECT h FROM helprequest h ORDER BY h.id")
+  Stream<HelpRequest> streamAll();
+}
@@ -0,0 +1,30 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.InstanceLease;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface InstanceLeaseRepository extends CrudRepository<InstanceLease, Integer> {
+  // Takes or renews the lease for owner until expiresAt, unless another
+  // owner holds it and it has not expired by now; returns 0 in that case
+  @Transactional
+  @Modifying
+  @Query("UPDATE instancelease l SET l.owner = :owner, l.expiresAt = :expiresAt "
+      + "WHERE l.id = " + InstanceLease.ID + " AND (l.owner IS NULL OR l.owner = :owner OR l.expiresAt < :now)")
+  int acquire(@Param("owner") String owner, @Param("now") LocalDateTime now,
+      @Param("expiresAt") LocalDateTime expiresAt);
+
+  @Transactional
+  @Modifying
+  @Query("UPDATE instancelease l SET l.owner = NULL, l.expiresAt = NULL "
+      + "WHERE l.id = " + InstanceLease.ID + " AND l.owner = :owner")
+  int release(@Param("owner") String owner);
+}
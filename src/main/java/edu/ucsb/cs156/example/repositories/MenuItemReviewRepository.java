@@ -2,9 +2,35 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
-public interface MenuItemReviewRepository extends CrudRepository<MenuItemReview, Long> {
-}
\ No newline at end of file
+public interface MenuItemReviewRepository extends PagingAndSortingRepository<MenuItemReview, Long> {
+  @Query("SELECT r FROM menuitemreviews r WHERE r.Id > :after ORDER BY r.Id")
+  List<MenuItemReview> findPageAfter(@Param("after") long after, Pageable pageable);
+
+  @Modifying
+  @Query("DELETE FROM menuitemreviews r WHERE r.Id = :id AND r.version = :version")
+  int deleteIfVersion(@Param("id") long id, @Param("version") long version);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("SELECT r FROM menuitemreviews r ORDER BY r.Id")
+  Stream<MenuItemReview> streamAll();
+}
@@ -0,0 +1,30 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.models.DiningCommonsReviewStats;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface MenuItemReviewStatsRepository extends CrudRepository<MenuItemReviewStats, Long> {
+  // Adjusts the totals in place, so concurrent reviews of the same item
+  // don't overwrite each other; returns 0 if the item has no row yet. The
+  // persistence context is cleared so no stale copy of the row is read back
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE menuitemreviewstats s SET s.reviewCount = s.reviewCount + :reviews, "
+      + "s.totalStars = s.totalStars + :stars WHERE s.itemId = :itemId")
+  int addToTotals(@Param("itemId") long itemId, @Param("reviews") long reviews, @Param("stars") long stars);
+
+  @Query("SELECT new edu.ucsb.cs156.example.models.DiningCommonsReviewStats("
+      + "m.diningCommonsCode, SUM(s.reviewCount), SUM(s.totalStars)) "
+      + "FROM ucsbdiningcommonsmenuitems m, menuitemreviewstats s "
+      + "WHERE s.itemId = m.Id AND m.diningCommonsCode = :diningCommonsCode "
+      + "GROUP BY m.diningCommonsCode")
+  Optional<DiningCommonsReviewStats> findByDiningCommonsCode(@Param("diningCommonsCode") String diningCommonsCode);
+}
@@ -0,0 +1,30 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.OutboxEvent;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends CrudRepository<OutboxEvent, Long> {
+  // The oldest events still to be published. Only one relay reads them: it
+  // runs on a single thread, and InstanceLeaseService keeps a second
+  // instance, whose in-memory state the events would also have to reach,
+  // from starting
+  @Query("SELECT e FROM outboxevents e WHERE e.attempts < :maxAttempts ORDER BY e.id")
+  List<OutboxEvent> findPending(@Param("maxAttempts") int maxAttempts, Pageable pageable);
+
+  @Modifying
+  @Query("DELETE FROM outboxevents e WHERE e.id IN :ids")
+  int deletePublished(@Param("ids") List<Long> ids);
+
+  @Modifying
+  @Query("UPDATE outboxevents e SET e.attempts = e.attempts + 1, e.lastError = :error WHERE e.id = :id")
+  int recordFailure(@Param("id") long id, @Param("error") String error);
+}
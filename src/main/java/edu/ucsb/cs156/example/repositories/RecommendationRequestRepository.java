@@ -2,9 +2,46 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
-public interface RecommendationRequestRepository extends CrudRepository<RecommendationRequest, Long> {
+public interface RecommendationRequestRepository extends PagingAndSortingRepository<RecommendationRequest, Long> {
+  @Query("SELECT r FROM recommendationrequests r WHERE r.Id > :after ORDER BY r.Id")
+  List<RecommendationRequest> findPageAfter(@Param("after") long after, Pageable pageable);
+
+  @Modifying
+  @Query("UPDATE recommendationrequests r SET "
+      + "r.requesterEmail = :#{#incoming.requesterEmail}, "
+      + "r.professorEmail = :#{#incoming.professorEmail}, "
+      + "r.explanation = :#{#incoming.explanation}, "
+      + "r.dateRequested = :#{#incoming.dateRequested}, "
+      + "r.dateNeeded = :#{#incoming.dateNeeded}, r.done = :#{#incoming.done}, "
+      + "r.version = r.version + 1 "
+      + "WHERE r.Id = :id AND r.version = :version")
+  int updateIfVersion(@Param("id") long id, @Param("version") long version, @Param("incoming") RecommendationRequest incoming);
+
+  @Modifying
+  @Query("DELETE FROM recommendationrequests r WHERE r.Id = :id")
+  int deleteRow(@Param("id") long id);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("SELECT r FROM recommendationrequests r ORDER BY r.Id")
+  Stream<RecommendationRequest> streamAll();
 }
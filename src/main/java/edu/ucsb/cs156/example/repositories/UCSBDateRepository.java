@@ -1,12 +1,54 @@
 package edu.ucsb.cs156.example.repositories;
 
+import edu.ucsb.cs156.example.config.CacheConfig;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 
 @Repository
-public interface UCSBDateRepository extends CrudRepository<UCSBDate, Long> {
+public interface UCSBDateRepository extends PagingAndSortingRepository<UCSBDate, Long> {
+  @Cacheable(cacheNames = CacheConfig.UCSB_DATES, key = "'quarter:' + #p0")
   Iterable<UCSBDate> findAllByQuarterYYYYQ(String quarterYYYYQ);
-}
\ No newline at end of file
+
+  @Cacheable(cacheNames = CacheConfig.UCSB_DATES, key = "'page:' + #p0 + ':' + #p1.pageSize")
+  @Query("SELECT d FROM ucsbdates d WHERE d.id > :after ORDER BY d.id")
+  List<UCSBDate> findPageAfter(@Param("after") long after, Pageable pageable);
+
+  @Modifying
+  @Query("UPDATE ucsbdates d SET d.quarterYYYYQ = :#{#incoming.quarterYYYYQ}, "
+      + "d.name = :#{#incoming.name}, "
+      + "d.localDateTime = :#{#incoming.localDateTime}, d.version = d.version + 1 "
+      + "WHERE d.id = :id AND d.version = :version")
+  int updateIfVersion(@Param("id") long id, @Param("version") long version, @Param("incoming") UCSBDate incoming);
+
+  @Modifying
+  @Query("DELETE FROM ucsbdates d WHERE d.id = :id")
+  int deleteRow(@Param("id") long id);
+
+  @Modifying
+  @Query("DELETE FROM ucsbdates d WHERE d.id IN :ids")
+  int deleteRows(@Param("ids") List<Long> ids);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("SELECT d FROM ucsbdates d ORDER BY d.id")
+  Stream<UCSBDate> streamAll();
+}
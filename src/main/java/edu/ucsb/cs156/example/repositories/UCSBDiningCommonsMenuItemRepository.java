@@ -2,9 +2,47 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
-public interface UCSBDiningCommonsMenuItemRepository extends CrudRepository<UCSBDiningCommonsMenuItem, Long> {
+public interface UCSBDiningCommonsMenuItemRepository extends PagingAndSortingRepository<UCSBDiningCommonsMenuItem, Long> {
+  @Query("SELECT m FROM ucsbdiningcommonsmenuitems m WHERE m.Id > :after ORDER BY m.Id")
+  List<UCSBDiningCommonsMenuItem> findPageAfter(@Param("after") long after, Pageable pageable);
+
+  @Modifying
+  @Query("UPDATE ucsbdiningcommonsmenuitems m SET "
+      + "m.diningCommonsCode = :#{#incoming.diningCommonsCode}, "
+      + "m.name = :#{#incoming.name}, m.station = :#{#incoming.station}, "
+      + "m.version = m.version + 1 "
+      + "WHERE m.Id = :id AND m.version = :version")
+  int updateIfVersion(@Param("id") long id, @Param("version") long version, @Param("incoming") UCSBDiningCommonsMenuItem incoming);
+
+  @Modifying
+  @Query("DELETE FROM ucsbdiningcommonsmenuitems m WHERE m.Id = :id")
+  int deleteRow(@Param("id") long id);
+
+  @Modifying
+  @Query("DELETE FROM ucsbdiningcommonsmenuitems m WHERE m.Id IN :ids")
+  int deleteRows(@Param("ids") List<Long> ids);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("SELECT m FROM ucsbdiningcommonsmenuitems m ORDER BY m.Id")
+  Stream<UCSBDiningCommonsMenuItem> streamAll();
 }
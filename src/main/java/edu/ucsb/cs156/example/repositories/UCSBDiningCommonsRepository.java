@@ -1,12 +1,53 @@
 package edu.ucsb.cs156.example.repositories;
 
+import edu.ucsb.cs156.example.config.CacheConfig;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
-public interface UCSBDiningCommonsRepository extends CrudRepository<UCSBDiningCommons, String> {
- 
-}
\ No newline at end of file
+public interface UCSBDiningCommonsRepository extends PagingAndSortingRepository<UCSBDiningCommons, String> {
+  @Cacheable(cacheNames = CacheConfig.UCSB_DINING_COMMONS, key = "'page:' + #p0 + ':' + #p1.pageSize")
+  @Query("SELECT c FROM ucsbdiningcommons c WHERE c.code > :after ORDER BY c.code")
+  List<UCSBDiningCommons> findPageAfter(@Param("after") String after, Pageable pageable);
+
+  @Modifying
+  @Query("UPDATE ucsbdiningcommons c SET c.name = :#{#incoming.name}, "
+      + "c.hasSackMeal = :#{#incoming.hasSackMeal}, "
+      + "c.hasTakeOutMeal = :#{#incoming.hasTakeOutMeal}, "
+      + "c.hasDiningCam = :#{#incoming.hasDiningCam}, "
+      + "c.latitude = :#{#incoming.latitude}, "
+      + "c.longitude = :#{#incoming.longitude}, c.version = c.version + 1 "
+      + "WHERE c.code = :id AND c.version = :version")
+  int updateIfVersion(@Param("id") String id, @Param("version") long version, @Param("incoming") UCSBDiningCommons incoming);
+
+  @Modifying
+  @Query("DELETE FROM ucsbdiningcommons c WHERE c.code = :id")
+  int deleteRow(@Param("id") String id);
+
+  // Not cached: read while rebuilding the nearest commons index, before the
+  // write that triggered it has evicted the findAll cache
+  List<UCSBDiningCommons> findByLatitudeNotNullAndLongitudeNotNull();
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("SELECT c FROM ucsbdiningcommons c ORDER BY c.code")
+  Stream<UCSBDiningCommons> streamAll();
+}
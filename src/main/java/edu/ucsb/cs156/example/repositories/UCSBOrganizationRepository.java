@@ -1,8 +1,47 @@
 package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.config.CacheConfig;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
-import org.springframework.data.repository.CrudRepository;
+
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
-public interface UCSBOrganizationRepository extends CrudRepository<UCSBOrganization, String> {
+public interface UCSBOrganizationRepository extends PagingAndSortingRepository<UCSBOrganization, String> {
+  @Cacheable(cacheNames = CacheConfig.UCSB_ORGANIZATIONS, key = "'page:' + #p0 + ':' + #p1.pageSize")
+  @Query("SELECT o FROM ucsborganization o WHERE o.orgCode > :after ORDER BY o.orgCode")
+  List<UCSBOrganization> findPageAfter(@Param("after") String after, Pageable pageable);
+
+  @Modifying
+  @Query("UPDATE ucsborganization o SET "
+      + "o.orgTranslationShort = :#{#incoming.orgTranslationShort}, "
+      + "o.orgTranslation = :#{#incoming.orgTranslation}, "
+      + "o.inactive = :#{#incoming.inactive}, o.version = o.version + 1 "
+      + "WHERE o.orgCode = :id AND o.version = :version")
+  int updateIfVersion(@Param("id") String id, @Param("version") long version, @Param("incoming") UCSBOrganization incoming);
+
+  @Modifying
+  @Query("DELETE FROM ucsborganization o WHERE o.orgCode = :id")
+  int deleteRow(@Param("id") String id);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("SELECT o FROM ucsborganization o ORDER BY o.orgCode")
+  Stream<UCSBOrganization> streamAll();
 }
@@ -0,0 +1,196 @@
+package edu.ucsb.cs156.example.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes a server-sent event to every subscriber of /api/changes/stream
+ * whenever a controller writes to a table (see ApiController.entityChanged),
+ * so clients can refetch what changed instead of polling the /all endpoints.
+ * The event carries the table's new ETag, so the refetch can be conditional.
+ *
+ * Publishing never blocks the writing request, and never touches an emitter:
+ * each subscriber has a bounded queue, drained a batch at a time by a sender
+ * task of its own. Sender threads are pooled but not capped, so a client whose
+ * socket has stalled holds up only its own thread, until the container's
+ * write timeout fails the send. A subscriber whose queue fills up is too slow
+ * to keep up and is disconnected by its sender; EventSource clients reconnect
+ * by themselves, and should refetch everything they show whenever they
+ * (re)connect, since events are not replayed.
+ */
+@Slf4j
+@Service("changeFeed")
+public class ChangeFeedService {
+
+  public record Change(String table, String etag, long lastModified) {
+  }
+
+  // Most events sent to one subscriber before its sender thread moves on
+  static final int MAX_BATCH = 16;
+
+  // Queued when a subscriber has been idle, so that proxies do not close the
+  // connection and a client that has gone away is noticed
+  static final Change HEARTBEAT = new Change("", "", 0);
+
+  private final int maxSubscribers;
+  private final int clientBufferSize;
+  private final long timeoutMillis;
+  private final ScheduledExecutorService heartbeats;
+  private final ExecutorService sender;
+  final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+  // Slots taken, reserved before a subscriber is added and released once it closes
+  private final AtomicInteger slots = new AtomicInteger();
+
+  @Autowired
+  public ChangeFeedService(
+      @Value("${app.changes.maxSubscribers:1000}") int maxSubscribers,
+      @Value("${app.changes.clientBufferSize:64}") int clientBufferSize,
+      @Value("${app.changes.timeout:PT30M}") Duration timeout,
+      @Value("${app.changes.heartbeat:PT15S}") Duration heartbeat) {
+    this(maxSubscribers, clientBufferSize, timeout, heartbeat,
+        Executors.newSingleThreadScheduledExecutor(daemonThreads("change-feed-heartbeat-")),
+        Executors.newCachedThreadPool(daemonThreads("change-feed-")));
+  }
+
+  ChangeFeedService(int maxSubscribers, int clientBufferSize, Duration timeout, Duration heartbeat,
+      ScheduledExecutorService heartbeats, ExecutorService sender) {
+    this.maxSubscribers = maxSubscribers;
+    this.clientBufferSize = clientBufferSize;
+    this.timeoutMillis = timeout.toMillis();
+    this.heartbeats = heartbeats;
+    this.sender = sender;
+    heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeat.toMillis(), heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger threads = new AtomicInteger();
+    return task -> {
+      Thread thread = new Thread(task, prefix + threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  public SseEmitter subscribe() {
+    return subscribe(new SseEmitter(timeoutMillis)).emitter;
+  }
+
+  Subscriber subscribe(SseEmitter emitter) {
+    if (slots.getAndUpdate(taken -> taken < maxSubscribers ? taken + 1 : taken) >= maxSubscribers) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many change feed subscribers");
+    }
+    Subscriber subscriber = new Subscriber(emitter);
+    subscribers.add(subscriber);
+    emitter.onCompletion(subscriber::close);
+    emitter.onTimeout(emitter::complete);
+    emitter.onError(e -> subscriber.close());
+    return subscriber;
+  }
+
+  public int subscriberCount() {
+    return subscribers.size();
+  }
+
+  // Runs after the writing transaction commits, or straight away outside one
+  @TransactionalEventListener(fallbackExecution = true)
+  public void publish(Change change) {
+    subscribers.forEach(subscriber -> subscriber.offer(change));
+  }
+
+  void heartbeat() {
+    subscribers.stream()
+        .filter(subscriber -> subscriber.pending.isEmpty())
+        .forEach(subscriber -> subscriber.offer(HEARTBEAT));
+  }
+
+  @PreDestroy
+  public void close() {
+    heartbeats.shutdownNow();
+    sender.shutdownNow();
+    subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    subscribers.clear();
+  }
+
+  final class Subscriber {
+    final SseEmitter emitter;
+    final BlockingQueue<Change> pending = new ArrayBlockingQueue<>(clientBufferSize);
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    Subscriber(SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+
+    void offer(Change change) {
+      if (!pending.offer(change)) {
+        log.warn("Disconnecting a change feed subscriber that fell {} events behind", clientBufferSize);
+        close();
+      }
+      schedule();
+    }
+
+    private void schedule() {
+      if (draining.compareAndSet(false, true)) {
+        sender.execute(this::drain);
+      }
+    }
+
+    void drain() {
+      try {
+        for (int sent = 0; sent < MAX_BATCH && !closed.get(); sent++) {
+          Change change = pending.poll();
+          if (change == null) {
+            break;
+          }
+          emitter.send(change == HEARTBEAT
+              ? SseEmitter.event().comment("heartbeat")
+              : SseEmitter.event().name("change").id(change.etag()).data(change, MediaType.APPLICATION_JSON));
+        }
+      } catch (IOException | IllegalStateException e) {
+        log.debug("Change feed subscriber went away: {}", e.toString());
+        close();
+      } finally {
+        draining.set(false);
+      }
+      if (closed.get()) {
+        // Ignored by the emitter if it has completed, or a send has failed, already
+        emitter.complete();
+      } else if (!pending.isEmpty()) {
+        schedule();
+      }
+    }
+
+    // Only marks the subscriber closed; its sender completes the emitter
+    void close() {
+      if (closed.compareAndSet(false, true)) {
+        subscribers.remove(this);
+        slots.decrementAndGet();
+      }
+      pending.clear();
+    }
+  }
+}
@@ -19,14 +19,23 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 
 @Slf4j
 @Service("currentUser")
 public class CurrentUserServiceImpl extends CurrentUserService {
+  // getUser may be called several times while handling one request; the
+  // resolved user is kept on the request so only the first call does any work
+  private static final String REQUEST_USER_ATTRIBUTE = CurrentUserServiceImpl.class.getName() + ".user";
+
   @Autowired
   private UserRepository userRepository;
 
+  @Autowired
+  private UserCacheService userCache;
+
   @Autowired
   GrantedAuthoritiesService grantedAuthoritiesService;
 
@@ -58,13 +67,24 @@ public class CurrentUserServiceImpl extends CurrentUserService {
     java.util.Map<java.lang.String,java.lang.Object> attrs = oAuthUser.getAttributes();
     log.info("attrs={}",attrs);
 
+    // Cached users have already been through the admin check below, and
+    // adminEmails only changes on restart, so a hit can be returned as is
+    User cached = userCache.getIfPresent(googleSub);
+    if (cached != null) {
+      return cached;
+    }
+
     Optional<User> ou = userRepository.findByEmail(email);
     if (ou.isPresent()) {
       User u = ou.get();
       if (adminEmails.contains(email) && !u.getAdmin()) {
         u.setAdmin(true);
         userRepository.save(u);
+        // the row has changed, so the next request reads it again
+        userCache.invalidate(googleSub);
+        return u;
       }
+      userCache.put(googleSub, u);
       return u;
     }
 
@@ -81,6 +101,7 @@ public class CurrentUserServiceImpl extends CurrentUserService {
         .admin(adminEmails.contains(email))
         .build();
     userRepository.save(u);
+    userCache.put(googleSub, u);
     return u;
   }
 
@@ -88,10 +109,20 @@ public class CurrentUserServiceImpl extends CurrentUserService {
     SecurityContext securityContext = SecurityContextHolder.getContext();
     Authentication authentication = securityContext.getAuthentication();
 
-    if (authentication instanceof OAuth2AuthenticationToken) {
+    if (!(authentication instanceof OAuth2AuthenticationToken)) {
+      return null;
+    }
+
+    RequestAttributes request = RequestContextHolder.getRequestAttributes();
+    if (request == null) {
       return getOAuth2AuthenticatedUser(securityContext, authentication);
     }
-    return null;
+    User u = (User) request.getAttribute(REQUEST_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    if (u == null) {
+      u = getOAuth2AuthenticatedUser(securityContext, authentication);
+      request.setAttribute(REQUEST_USER_ATTRIBUTE, u, RequestAttributes.SCOPE_REQUEST);
+    }
+    return u;
   }
 
   public Collection<? extends GrantedAuthority> getRoles() {
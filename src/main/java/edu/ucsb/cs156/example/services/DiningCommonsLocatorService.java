@@ -0,0 +1,172 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.NearbyDiningCommons;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * k-d tree of the dining commons' locations, for the nearest commons query.
+ * Each commons is stored as a point on the unit sphere (x, y, z), where the
+ * straight-line distance between two points orders them the same way as the
+ * great-circle distance, so the tree's Euclidean search is exact anywhere
+ * on the globe, poles and the antimeridian included.
+ *
+ * The tree is immutable and replaced as a whole whenever a commons is
+ * written; with a few dozen commons a rebuild is cheaper than keeping a
+ * mutable tree balanced.
+ */
+@Slf4j
+@Service("diningCommonsLocator")
+public class DiningCommonsLocatorService {
+
+  static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  private volatile Tree tree = new Tree(List.of());
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    tree = new Tree(ucsbDiningCommonsRepository.findByLatitudeNotNullAndLongitudeNotNull());
+    log.info("Dining commons locator loaded with {} commons", tree.commons.length);
+  }
+
+  // The k commons nearest to (latitude, longitude), nearest first
+  public List<NearbyDiningCommons> nearest(double latitude, double longitude, int k) {
+    return tree.nearest(unitVector(latitude, longitude), k);
+  }
+
+  static double[] unitVector(double latitude, double longitude) {
+    double lat = Math.toRadians(latitude);
+    double lon = Math.toRadians(longitude);
+    return new double[] { Math.cos(lat) * Math.cos(lon), Math.cos(lat) * Math.sin(lon), Math.sin(lat) };
+  }
+
+  // Great-circle distance from the length of the chord between two points
+  static double chordToMeters(double squaredChord) {
+    return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(squaredChord) / 2));
+  }
+
+  /**
+   * Balanced k-d tree stored implicitly in arrays: the node for the range
+   * [lo, hi) is at its midpoint, and splits on axis depth % 3.
+   */
+  static final class Tree {
+    final UCSBDiningCommons[] commons;
+    final double[][] points;
+
+    Tree(List<UCSBDiningCommons> all) {
+      commons = all.toArray(new UCSBDiningCommons[0]);
+      points = new double[commons.length][];
+      for (int i = 0; i < commons.length; i++) {
+        points[i] = unitVector(commons[i].getLatitude(), commons[i].getLongitude());
+      }
+      build(0, commons.length, 0);
+    }
+
+    private void build(int lo, int hi, int depth) {
+      if (hi - lo < 2) {
+        return;
+      }
+      int axis = depth % 3;
+      Integer[] order = new Integer[hi - lo];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = lo + i;
+      }
+      Arrays.sort(order, Comparator.comparingDouble(i -> points[i][axis]));
+      UCSBDiningCommons[] sortedCommons = new UCSBDiningCommons[order.length];
+      double[][] sortedPoints = new double[order.length][];
+      for (int i = 0; i < order.length; i++) {
+        sortedCommons[i] = commons[order[i]];
+        sortedPoints[i] = points[order[i]];
+      }
+      System.arraycopy(sortedCommons, 0, commons, lo, order.length);
+      System.arraycopy(sortedPoints, 0, points, lo, order.length);
+
+      int mid = (lo + hi) >>> 1;
+      build(lo, mid, depth + 1);
+      build(mid + 1, hi, depth + 1);
+    }
+
+    List<NearbyDiningCommons> nearest(double[] target, int k) {
+      if (commons.length == 0) {
+        return List.of();
+      }
+      Best best = new Best(Math.min(k, commons.length));
+      search(target, 0, commons.length, 0, best);
+      List<NearbyDiningCommons> result = new ArrayList<>(best.size);
+      for (int i = 0; i < best.size; i++) {
+        result.add(NearbyDiningCommons.builder()
+            .diningCommons(commons[best.indexes[i]])
+            .distanceMeters(chordToMeters(best.distances[i]))
+            .build());
+      }
+      return result;
+    }
+
+    private void search(double[] target, int lo, int hi, int depth, Best best) {
+      if (lo >= hi) {
+        return;
+      }
+      int mid = (lo + hi) >>> 1;
+      double[] point = points[mid];
+      double dx = target[0] - point[0];
+      double dy = target[1] - point[1];
+      double dz = target[2] - point[2];
+      best.offer(mid, dx * dx + dy * dy + dz * dz);
+
+      int axis = depth % 3;
+      double split = target[axis] - point[axis];
+      boolean left = split < 0;
+      search(target, left ? lo : mid + 1, left ? mid : hi, depth + 1, best);
+      // the far side can only hold a closer point if the splitting plane is
+      // closer than the current k-th best
+      if (split * split < best.worst()) {
+        search(target, left ? mid + 1 : lo, left ? hi : mid, depth + 1, best);
+      }
+    }
+  }
+
+  // The k closest points seen so far, sorted by squared distance
+  static final class Best {
+    final int[] indexes;
+    final double[] distances;
+    int size;
+
+    Best(int k) {
+      indexes = new int[k];
+      distances = new double[k];
+    }
+
+    double worst() {
+      return size < distances.length ? Double.POSITIVE_INFINITY : distances[size - 1];
+    }
+
+    void offer(int index, double distance) {
+      if (distance >= worst()) {
+        return;
+      }
+      int i = Math.min(size, distances.length - 1);
+      while (i > 0 && distances[i - 1] > distance) {
+        distances[i] = distances[i - 1];
+        indexes[i] = indexes[i - 1];
+        i--;
+      }
+      distances[i] = distance;
+      indexes[i] = index;
+      size = Math.min(size + 1, distances.length);
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package edu.ucsb.cs156.example.services;
+
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-table version counters behind the ETag and Last-Modified headers of the
+ * read endpoints. Controllers call bump once each write to a table commits.
+ * The counters only live in memory, so the startup time is part of
+ * every ETag; tags handed out by an earlier process never match after a restart.
+ * Writes made by another process would never bump them, so only one instance
+ * may run against a database, which InstanceLeaseService enforces.
+ */
+@Service("entityVersions")
+public class EntityVersionService {
+
+  public record Version(long startedAt, long counter, long lastModified) {
+    public String etag() {
+      return "\"%x-%d\"".formatted(startedAt, counter);
+    }
+  }
+
+  private final Clock clock;
+  private final Version initial;
+  private final Map<Class<?>, Version> versions = new ConcurrentHashMap<>();
+
+  public EntityVersionService() {
+    this(Clock.systemUTC());
+  }
+
+  public EntityVersionService(Clock clock) {
+    this.clock = clock;
+    long now = clock.millis();
+    this.initial = new Version(now, 0, now);
+  }
+
+  public Version current(Class<?> table) {
+    return versions.getOrDefault(table, initial);
+  }
+
+  public Version bump(Class<?> table) {
+    return versions.compute(table, (t, old) -> {
+      Version v = (old == null) ? initial : old;
+      return new Version(v.startedAt(), v.counter() + 1, Math.max(v.lastModified(), clock.millis()));
+    });
+  }
+}
@@ -0,0 +1,15 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.OutboxEvent;
+
+/**
+ * Where OutboxRelayService publishes the events taken from the outbox.
+ * InProcessEventBus is used unless app.outbox.bus names another
+ * implementation, such as one forwarding to a message broker.
+ *
+ * publish is called inside the relay's transaction: it should throw if the
+ * event was not delivered, so that it stays in the outbox and is retried.
+ */
+public interface EventBus {
+  void publish(OutboxEvent event);
+}
@@ -0,0 +1,103 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.errors.UnknownFieldException;
+
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.Id;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads only some of the fields of a table's rows, for the ?fields= variant
+ * of the /all endpoints: the select list of the query names just those
+ * columns, so large text columns such as Articles.explanation are neither
+ * read from the database nor serialized unless asked for.
+ *
+ * Fields are named as in the JSON of the entity (id, not Id), and each row
+ * is returned as a map in the order they were given, always starting with
+ * the row's key, which the clients need to page and to act on a row.
+ */
+@Service("fieldProjections")
+public class FieldProjectionService {
+
+  public record Table(String entityName, String key, Map<String, String> attributes) {
+  }
+
+  private final EntityManager entityManager;
+  private final Map<Class<?>, Table> tables = new ConcurrentHashMap<>();
+
+  public FieldProjectionService(EntityManager entityManager) {
+    this.entityManager = entityManager;
+  }
+
+  // JSON property name of each persistent field, as Lombok's getters and
+  // Jackson name it, mapped to the entity attribute
+  public Table table(Class<?> type) {
+    return tables.computeIfAbsent(type, t -> {
+      Map<String, String> attributes = new LinkedHashMap<>();
+      String key = null;
+      for (Field field : t.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers())) {
+          String property = StringUtils.uncapitalize(field.getName());
+          attributes.put(property, field.getName());
+          if (field.isAnnotationPresent(Id.class)) {
+            key = property;
+          }
+        }
+      }
+      return new Table(t.getAnnotation(Entity.class).name(), key, attributes);
+    });
+  }
+
+  // The key and the given fields of the rows whose key sorts after `after`
+  // (of every row when it is null), in key order, at most maxRows of them
+  public List<Map<String, Object>> select(Class<?> type, List<String> fields, Object after, int maxRows) {
+    Table table = table(type);
+    List<String> properties = new ArrayList<>(List.of(table.key()));
+    for (String field : fields) {
+      String property = field.trim();
+      if (!table.attributes().containsKey(property)) {
+        throw new UnknownFieldException(type, property);
+      }
+      if (!properties.contains(property)) {
+        properties.add(property);
+      }
+    }
+
+    List<String> selectList = new ArrayList<>();
+    for (String property : properties) {
+      selectList.add("t." + table.attributes().get(property));
+    }
+    String key = "t." + table.attributes().get(table.key());
+    TypedQuery<Tuple> query = entityManager.createQuery(
+        "SELECT " + String.join(", ", selectList) + " FROM " + table.entityName() + " t"
+            + (after == null ? "" : " WHERE " + key + " > :after")
+            + " ORDER BY " + key, Tuple.class);
+    if (after != null) {
+      query.setParameter("after", after);
+    }
+    query.setMaxResults(maxRows);
+
+    List<Map<String, Object>> rows = new ArrayList<>();
+    for (Tuple tuple : query.getResultList()) {
+      Map<String, Object> row = new LinkedHashMap<>();
+      for (int i = 0; i < properties.size(); i++) {
+        row.put(properties.get(i), tuple.get(i));
+      }
+      rows.add(row);
+    }
+    return rows;
+  }
+}
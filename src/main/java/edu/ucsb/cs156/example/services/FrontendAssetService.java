@@ -0,0 +1,214 @@
+package edu.ucsb.cs156.example.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.catalina.Globals;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.HttpRequestHandler;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the production frontend (the React build, packaged under
+ * classpath:/public/) from a route table built once at startup, instead of
+ * Spring's resource handler and a forward to /index.html per page load.
+ *
+ * The build is copied out of the jar into a temporary directory so Tomcat
+ * can send large files with sendfile, straight from the page cache to the
+ * socket. The build step writes .br and .gz copies of the compressible
+ * files (frontend/scripts/precompress.js), which are sent instead to
+ * browsers that accept them. Files with a content hash in their name never
+ * change, so browsers may cache them for a year without asking again;
+ * everything else, index.html included, is revalidated with its ETag.
+ */
+@Slf4j
+@Profile("!development")
+@Service("frontendAssets")
+public class FrontendAssetService {
+
+  static final String INDEX = "/index.html";
+  static final String CACHE_IMMUTABLE = "public, max-age=31536000, immutable";
+  static final String CACHE_REVALIDATE = "no-cache";
+
+  // Below Tomcat's own sendfile threshold a plain write is cheaper
+  static final long SENDFILE_MIN_BYTES = 48 * 1024;
+
+  // Precompressed copies in order of preference, and their file suffixes
+  static final List<String> ENCODINGS = List.of("br", "gzip");
+  static final Map<String, String> SUFFIXES = Map.of("br", ".br", "gzip", ".gz");
+  static final String IDENTITY = "identity";
+
+  // e.g. static/js/main.1a2b3c4d.js, static/media/logo.6ce24c58023cc2f8fd88.svg
+  private static final Pattern CONTENT_HASH = Pattern.compile("\\.[0-9a-f]{8,}\\.");
+
+  public record Representation(Path file, long length, String etag) {
+  }
+
+  public record Asset(MediaType contentType, boolean immutable, Map<String, Representation> representations) {
+  }
+
+  final Path directory;
+  final Map<String, Asset> routes;
+
+  public FrontendAssetService(@Value("${app.frontend.location:classpath:/public/}") String location) throws IOException {
+    this.directory = Files.createTempDirectory("frontend-assets");
+    this.routes = load(location);
+    log.info("Serving {} frontend assets from {}", routes.size(), location);
+  }
+
+  private Map<String, Asset> load(String location) throws IOException {
+    PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+    List<String> paths = new ArrayList<>();
+    Resource root = resolver.getResource(location);
+    if (root.exists()) {
+      String rootUrl = root.getURL().toString();
+      for (Resource resource : resolver.getResources(location + "**")) {
+        if (resource.isReadable()) {
+          String path = resource.getURL().toString().substring(rootUrl.length());
+          Path file = directory.resolve(path);
+          Files.createDirectories(file.getParent());
+          try (InputStream in = resource.getInputStream()) {
+            Files.copy(in, file);
+          }
+          paths.add(path);
+        }
+      }
+    }
+
+    Map<String, Asset> assets = new HashMap<>();
+    for (String path : paths) {
+      if (SUFFIXES.values().stream().noneMatch(path::endsWith)) {
+        assets.put("/" + path, asset(path));
+      }
+    }
+    if (assets.containsKey(INDEX)) {
+      assets.put("/", assets.get(INDEX));
+    }
+    return Map.copyOf(assets);
+  }
+
+  private Asset asset(String path) throws IOException {
+    Path file = directory.resolve(path);
+    String etag = DigestUtils.md5DigestAsHex(Files.readAllBytes(file));
+    Map<String, Representation> representations = new LinkedHashMap<>();
+    for (String encoding : ENCODINGS) {
+      Path encoded = directory.resolve(path + SUFFIXES.get(encoding));
+      if (Files.exists(encoded)) {
+        representations.put(encoding, new Representation(encoded, Files.size(encoded), "\"" + etag + "-" + encoding + "\""));
+      }
+    }
+    representations.put(IDENTITY, new Representation(file, Files.size(file), "\"" + etag + "\""));
+    MediaType contentType = MediaTypeFactory.getMediaType(file.getFileName().toString())
+        .orElse(MediaType.APPLICATION_OCTET_STREAM);
+    return new Asset(contentType, CONTENT_HASH.matcher(file.getFileName().toString()).find(), representations);
+  }
+
+  // A handler per asset, for FrontendConfig's URL mapping
+  public Map<String, HttpRequestHandler> handlers() {
+    Map<String, HttpRequestHandler> handlers = new HashMap<>();
+    routes.forEach((path, asset) -> handlers.put(path, (request, response) -> serve(asset, request, response)));
+    return handlers;
+  }
+
+  // The page for any route of the single-page app; the app's router takes it from there
+  public void serveIndex(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Asset index = routes.get(INDEX);
+    if (index == null) {
+      response.sendError(HttpStatus.NOT_FOUND.value());
+      return;
+    }
+    serve(index, request, response);
+  }
+
+  void serve(Asset asset, HttpServletRequest request, HttpServletResponse response) throws IOException {
+    boolean head = request.getMethod().equals("HEAD");
+    if (!head && !request.getMethod().equals("GET")) {
+      response.setHeader(HttpHeaders.ALLOW, "GET, HEAD");
+      response.sendError(HttpStatus.METHOD_NOT_ALLOWED.value());
+      return;
+    }
+
+    String encoding = negotiate(asset, request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    Representation representation = asset.representations().get(encoding);
+    response.setHeader(HttpHeaders.CACHE_CONTROL, asset.immutable() ? CACHE_IMMUTABLE : CACHE_REVALIDATE);
+    if (asset.representations().size() > 1) {
+      response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+    if (new ServletWebRequest(request, response).checkNotModified(representation.etag())) {
+      return;
+    }
+
+    response.setContentType(asset.contentType().toString());
+    if (!encoding.equals(IDENTITY)) {
+      response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+    }
+    response.setContentLengthLong(representation.length());
+    if (head) {
+      return;
+    }
+    if (representation.length() >= SENDFILE_MIN_BYTES
+        && Boolean.TRUE.equals(request.getAttribute(Globals.SENDFILE_SUPPORTED_ATTR))) {
+      // Tomcat writes the file itself once the request has been handled
+      request.setAttribute(Globals.SENDFILE_FILENAME_ATTR, representation.file().toAbsolutePath().toString());
+      request.setAttribute(Globals.SENDFILE_FILE_START_ATTR, 0L);
+      request.setAttribute(Globals.SENDFILE_FILE_END_ATTR, representation.length());
+    } else {
+      Files.copy(representation.file(), response.getOutputStream());
+    }
+  }
+
+  // The most preferred precompressed copy the client accepts, else the file itself
+  static String negotiate(Asset asset, String acceptEncoding) {
+    for (String encoding : ENCODINGS) {
+      if (asset.representations().containsKey(encoding) && accepts(acceptEncoding, encoding)) {
+        return encoding;
+      }
+    }
+    return IDENTITY;
+  }
+
+  // Whether an Accept-Encoding header allows a content coding; also used by
+  // ApiCompressionFilter
+  public static boolean accepts(String acceptEncoding, String encoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String part : acceptEncoding.split(",")) {
+      String[] params = part.split(";");
+      String name = params[0].trim();
+      if (name.equalsIgnoreCase(encoding) || name.equals("*")) {
+        return !(params.length > 1 && params[1].trim().matches("q=0(\\.0*)?"));
+      }
+    }
+    return false;
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    FileSystemUtils.deleteRecursively(directory);
+  }
+}
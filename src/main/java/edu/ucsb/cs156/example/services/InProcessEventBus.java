@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.OutboxEvent;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+/**
+ * Delivers outbox events to the {@code @EventListener} methods of this
+ * application, on the relay's thread and in its transaction, so that
+ * database work done by a listener commits together with the removal of
+ * the event from the outbox.
+ */
+@Service("inProcessEventBus")
+@ConditionalOnProperty(name = "app.outbox.bus", havingValue = "in-process", matchIfMissing = true)
+public class InProcessEventBus implements EventBus {
+
+  @Autowired
+  ApplicationEventPublisher eventPublisher;
+
+  @Override
+  public void publish(OutboxEvent event) {
+    eventPublisher.publishEvent(event);
+  }
+}
@@ -0,0 +1,103 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.InstanceLease;
+import edu.ucsb.cs156.example.repositories.InstanceLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Makes sure only one instance of the app runs against a database. The ETags
+ * (EntityVersionService), the leaderboard and the search index live in the
+ * memory of the process, and only that process's own writes and outbox
+ * events keep them current; an instance that missed another's writes would
+ * answer 304 and search with stale data.
+ *
+ * The lease row is taken while the application context starts, which fails
+ * if another instance holds it, and renewed every third of leaseDuration.
+ * It is released on shutdown; a process that dies without shutting down
+ * holds it until it expires. An instance that finds its lease taken over,
+ * after failing to renew it for a whole leaseDuration, shuts itself down.
+ */
+@Slf4j
+@Service("instanceLease")
+public class InstanceLeaseService {
+
+  @Autowired
+  InstanceLeaseRepository instanceLeaseRepository;
+
+  @Autowired
+  ConfigurableApplicationContext context;
+
+  private final Duration leaseDuration;
+  private final Clock clock;
+  private final ScheduledExecutorService renewer;
+  private final String owner;
+
+  @Autowired
+  public InstanceLeaseService(@Value("${app.instanceLease.duration:PT30S}") Duration leaseDuration) {
+    this(leaseDuration, Clock.systemUTC(), Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "instance-lease");
+      thread.setDaemon(true);
+      return thread;
+    }), ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID());
+  }
+
+  InstanceLeaseService(Duration leaseDuration, Clock clock, ScheduledExecutorService renewer, String owner) {
+    this.leaseDuration = leaseDuration;
+    this.clock = clock;
+    this.renewer = renewer;
+    this.owner = owner;
+  }
+
+  @PostConstruct
+  public void acquire() {
+    if (!renew()) {
+      String holder = instanceLeaseRepository.findById(InstanceLease.ID)
+          .map(lease -> "it is held by %s until %s UTC".formatted(lease.getOwner(), lease.getExpiresAt()))
+          .orElse("its row is missing");
+      throw new IllegalStateException(
+          "Only one instance of the app may run against this database, and %s".formatted(holder));
+    }
+    log.info("Holding the instance lease as {}", owner);
+    long period = leaseDuration.toMillis() / 3;
+    renewer.scheduleAtFixedRate(this::renewOrStop, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void release() {
+    renewer.shutdown();
+    instanceLeaseRepository.release(owner);
+  }
+
+  boolean renew() {
+    LocalDateTime now = LocalDateTime.now(clock);
+    return instanceLeaseRepository.acquire(owner, now, now.plus(leaseDuration)) == 1;
+  }
+
+  void renewOrStop() {
+    try {
+      if (!renew()) {
+        log.error("Another instance has taken over the instance lease; shutting down");
+        context.close();
+      }
+    } catch (RuntimeException e) {
+      log.warn("Could not renew the instance lease; retrying", e);
+    }
+  }
+}
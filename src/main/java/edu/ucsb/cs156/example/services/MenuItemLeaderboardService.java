@@ -0,0 +1,152 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.TopMenuItem;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewStatsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+import static edu.ucsb.cs156.example.services.Transactions.afterCommit;
+
+/**
+ * In-memory copy of every menu item with its review totals, grouped by
+ * dining commons, for the top-rated leaderboard. It is loaded from the
+ * database when the app starts and then kept current by the menu item and
+ * review write paths, so a leaderboard query never touches the database:
+ * it keeps the best n items of one commons in a bounded heap.
+ *
+ * Updates made inside a transaction are applied once it commits, so a
+ * rolled back write never shows up here. Review totals arrive through the
+ * outbox relay, which only starts once the leaderboard is loaded. The index
+ * is per process; InstanceLeaseService keeps the app to a single one.
+ */
+@Slf4j
+@Service("menuItemLeaderboard")
+public class MenuItemLeaderboardService {
+
+  // Best first: higher average, then more reviews, then lower id
+  static final Comparator<Entry> RANKING = Comparator
+      .comparingDouble(Entry::averageStars).reversed()
+      .thenComparing(Comparator.comparingLong(Entry::reviewCount).reversed())
+      .thenComparingLong(Entry::itemId);
+
+  record Entry(long itemId, String diningCommonsCode, String name, String station,
+      long reviewCount, long totalStars) {
+
+    double averageStars() {
+      return (double) totalStars / reviewCount;
+    }
+
+    Entry withMenuItem(UCSBDiningCommonsMenuItem item) {
+      return new Entry(itemId, item.getDiningCommonsCode(), item.getName(), item.getStation(), reviewCount, totalStars);
+    }
+
+    Entry withReviews(long reviews, long stars) {
+      return new Entry(itemId, diningCommonsCode, name, station, reviewCount + reviews, totalStars + stars);
+    }
+
+    TopMenuItem toTopMenuItem() {
+      UCSBDiningCommonsMenuItem menuItem = UCSBDiningCommonsMenuItem.builder()
+          .Id(itemId).diningCommonsCode(diningCommonsCode).name(name).station(station).build();
+      return TopMenuItem.builder().menuItem(menuItem).reviewCount(reviewCount).averageStars(averageStars()).build();
+    }
+  }
+
+  @Autowired
+  UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+  @Autowired
+  MenuItemReviewStatsRepository menuItemReviewStatsRepository;
+
+  private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+  private final Map<String, Map<Long, Entry>> entriesByDiningCommons = new ConcurrentHashMap<>();
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(OutboxRelayService.LOAD_ORDER)
+  public void rebuild() {
+    entries.clear();
+    entriesByDiningCommons.clear();
+    for (UCSBDiningCommonsMenuItem item : ucsbDiningCommonsMenuItemRepository.findAll()) {
+      apply(item.getId(), entry -> entry.withMenuItem(item));
+    }
+    for (MenuItemReviewStats stats : menuItemReviewStatsRepository.findAll()) {
+      apply(stats.getItemId(), entry -> entry.withReviews(stats.getReviewCount(), stats.getTotalStars()));
+    }
+    log.info("Menu item leaderboard loaded with {} menu items", entries.size());
+  }
+
+  public void menuItemSaved(UCSBDiningCommonsMenuItem item) {
+    UCSBDiningCommonsMenuItem copy = UCSBDiningCommonsMenuItem.builder()
+        .Id(item.getId()).diningCommonsCode(item.getDiningCommonsCode()).name(item.getName()).station(item.getStation())
+        .build();
+    afterCommit(() -> apply(copy.getId(), entry -> entry.withMenuItem(copy)));
+  }
+
+  public void menuItemDeleted(long itemId) {
+    afterCommit(() -> entries.computeIfPresent(itemId, (id, entry) -> {
+      unlist(entry);
+      return null;
+    }));
+  }
+
+  public void reviewsChanged(long itemId, long reviews, long stars) {
+    afterCommit(() -> apply(itemId, entry -> entry.withReviews(reviews, stars)));
+  }
+
+  // The n best rated menu items of a dining commons, or of all of them when
+  // diningCommonsCode is null; items without reviews are left out
+  public List<TopMenuItem> top(String diningCommonsCode, int n) {
+    Collection<Entry> candidates = (diningCommonsCode == null)
+        ? entries.values()
+        : entriesByDiningCommons.getOrDefault(diningCommonsCode, Map.of()).values();
+
+    PriorityQueue<Entry> best = new PriorityQueue<>(n + 1, RANKING.reversed());
+    for (Entry entry : candidates) {
+      if (entry.reviewCount() > 0 && entry.diningCommonsCode() != null) {
+        best.add(entry);
+        if (best.size() > n) {
+          best.poll();
+        }
+      }
+    }
+    List<Entry> ranked = new ArrayList<>(best);
+    ranked.sort(RANKING);
+    return ranked.stream().map(Entry::toTopMenuItem).toList();
+  }
+
+  private void apply(long itemId, UnaryOperator<Entry> change) {
+    entries.compute(itemId, (id, entry) -> {
+      Entry updated = change.apply(entry == null ? new Entry(id, null, null, null, 0, 0) : entry);
+      if (entry != null) {
+        unlist(entry);
+      }
+      if (updated.diningCommonsCode() != null) {
+        entriesByDiningCommons.computeIfAbsent(updated.diningCommonsCode(), code -> new ConcurrentHashMap<>())
+            .put(id, updated);
+      }
+      return updated;
+    });
+  }
+
+  private void unlist(Entry entry) {
+    if (entry.diningCommonsCode() != null) {
+      entriesByDiningCommons.get(entry.diningCommonsCode()).remove(entry.itemId());
+    }
+  }
+}
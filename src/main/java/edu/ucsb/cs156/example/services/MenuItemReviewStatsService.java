@@ -0,0 +1,87 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.entities.OutboxEvent;
+import edu.ucsb.cs156.example.models.DiningCommonsReviewStats;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewStatsRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Keeps the per-item review count and star total in menuitemreviewstats in
+ * step with the menuitemreviews table, so that average ratings are read
+ * from one row instead of by scanning every review. MenuItemReviewController
+ * records each review write in the outbox, and OutboxRelayService applies
+ * them here one at a time, so two first reviews of an item never race to
+ * insert its row.
+ */
+@Service("menuItemReviewStats")
+public class MenuItemReviewStatsService {
+
+  // Payload of the reviewAdded and reviewRemoved outbox events
+  public record Review(Long itemId, int stars) {
+  }
+
+  @Autowired
+  MenuItemReviewStatsRepository menuItemReviewStatsRepository;
+
+  @Autowired
+  MenuItemLeaderboardService menuItemLeaderboardService;
+
+  @Autowired
+  ObjectMapper objectMapper;
+
+  @EventListener
+  public void outboxEvent(OutboxEvent event) throws JsonProcessingException {
+    if (!MenuItemReview.class.getSimpleName().equals(event.getAggregateType())) {
+      return;
+    }
+    Review review = objectMapper.readValue(event.getPayload(), Review.class);
+    if (OutboxEvent.REVIEW_ADDED.equals(event.getEventType())) {
+      reviewAdded(review.itemId(), review.stars());
+    } else if (OutboxEvent.REVIEW_REMOVED.equals(event.getEventType())) {
+      reviewRemoved(review.itemId(), review.stars());
+    }
+  }
+
+  @Transactional
+  public void reviewAdded(Long itemId, int stars) {
+    if (itemId == null) {
+      return;
+    }
+    if (menuItemReviewStatsRepository.addToTotals(itemId, 1, stars) == 0) {
+      menuItemReviewStatsRepository.save(MenuItemReviewStats.builder()
+          .itemId(itemId)
+          .reviewCount(1)
+          .totalStars(stars)
+          .build());
+    }
+    menuItemLeaderboardService.reviewsChanged(itemId, 1, stars);
+  }
+
+  @Transactional
+  public void reviewRemoved(Long itemId, int stars) {
+    if (itemId == null) {
+      return;
+    }
+    menuItemReviewStatsRepository.addToTotals(itemId, -1, -stars);
+    menuItemLeaderboardService.reviewsChanged(itemId, -1, -stars);
+  }
+
+  public MenuItemReviewStats statsForMenuItem(long itemId) {
+    return menuItemReviewStatsRepository.findById(itemId)
+        .orElseGet(() -> MenuItemReviewStats.builder().itemId(itemId).build());
+  }
+
+  public DiningCommonsReviewStats statsForDiningCommons(String diningCommonsCode) {
+    return menuItemReviewStatsRepository.findByDiningCommonsCode(diningCommonsCode)
+        .orElseGet(() -> DiningCommonsReviewStats.builder().diningCommonsCode(diningCommonsCode).build());
+  }
+}
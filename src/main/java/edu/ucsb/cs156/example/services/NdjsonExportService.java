@@ -0,0 +1,73 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.persistence.EntityManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes the rows of a repository stream as newline-delimited JSON while they
+ * are being read, so that exporting a table never holds more than one row
+ * (plus the JDBC fetch buffer) in memory.
+ */
+@Service("ndjsonExport")
+public class NdjsonExportService {
+
+  private final ObjectMapper mapper;
+  private final PlatformTransactionManager transactionManager;
+  private final EntityManager entityManager;
+
+  public NdjsonExportService(ObjectMapper mapper, PlatformTransactionManager transactionManager,
+      EntityManager entityManager) {
+    this.mapper = mapper;
+    this.transactionManager = transactionManager;
+    this.entityManager = entityManager;
+  }
+
+  // The body is written on an async thread after the controller method has
+  // returned, so the stream gets its own read-only transaction there.
+  public <T> StreamingResponseBody export(Supplier<Stream<T>> rows) {
+    return out -> {
+      TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+      transaction.setReadOnly(true);
+      transaction.executeWithoutResult(status -> write(rows, out));
+    };
+  }
+
+  private <T> void write(Supplier<Stream<T>> rows, OutputStream out) {
+    // rows are flushed to the response when the generator's buffer fills up,
+    // rather than one write per row
+    ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    try (Stream<T> stream = rows.get();
+        JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+      generator.setRootValueSeparator(null);
+
+      Iterator<T> iterator = stream.iterator();
+      while (iterator.hasNext()) {
+        T row = iterator.next();
+        writer.writeValue(generator, row);
+        generator.writeRaw('\n');
+        // keep the persistence context from growing with the export
+        entityManager.detach(row);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,179 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.OutboxEvent;
+import edu.ucsb.cs156.example.repositories.OutboxEventRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes the events in the outbox (see OutboxService) to the EventBus, a
+ * batch at a time, oldest first, and deletes them in the same transaction.
+ * It runs on a single background thread, woken after every transaction that
+ * records events and otherwise every pollInterval, which also picks up
+ * events left behind by a crash or a failed attempt. Since events are
+ * applied one at a time, listeners need not guard against each other.
+ *
+ * There is one relay, as InstanceLeaseService allows only one instance:
+ * the listeners keep in-memory state (the leaderboard, the search index)
+ * that every event has to reach, so events are not shared out between
+ * relays. Listeners finish their work before publish returns.
+ *
+ * Delivery is at least once: an event whose listeners succeeded but whose
+ * transaction failed to commit is published again. An event that keeps
+ * failing is retried on later polls, and after maxAttempts is left in the
+ * outbox with its last error instead of holding up the events behind it.
+ */
+@Slf4j
+@Service("outboxRelay")
+public class OutboxRelayService {
+
+  // Order of the ApplicationReadyEvent listeners that load in-memory state
+  // from the tables the relayed events change (the leaderboard, the search
+  // index). The relay starts after them, so that no event is applied while
+  // they read, and then counted twice or lost
+  public static final int LOAD_ORDER = 0;
+
+  static final int MAX_ERROR_LENGTH = 1000;
+  static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  @Autowired
+  OutboxEventRepository outboxEventRepository;
+
+  @Autowired
+  EventBus eventBus;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  private final int batchSize;
+  private final int maxAttempts;
+  private final long pollMillis;
+  private final ScheduledExecutorService relay;
+  private final AtomicBoolean woken = new AtomicBoolean();
+  private volatile boolean started;
+
+  @Autowired
+  public OutboxRelayService(
+      @Value("${app.outbox.batchSize:100}") int batchSize,
+      @Value("${app.outbox.maxAttempts:10}") int maxAttempts,
+      @Value("${app.outbox.pollInterval:PT10S}") Duration pollInterval) {
+    this(batchSize, maxAttempts, pollInterval, Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "outbox-relay");
+      thread.setDaemon(true);
+      return thread;
+    }));
+  }
+
+  OutboxRelayService(int batchSize, int maxAttempts, Duration pollInterval, ScheduledExecutorService relay) {
+    this.batchSize = batchSize;
+    this.maxAttempts = maxAttempts;
+    this.pollMillis = pollInterval.toMillis();
+    this.relay = relay;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(LOAD_ORDER + 1)
+  public void start() {
+    started = true;
+    relay.scheduleWithFixedDelay(this::drain, 0, pollMillis, TimeUnit.MILLISECONDS);
+  }
+
+  // Wakes coming in while the relay is already queued to run are merged;
+  // until it starts, events are left for its first poll
+  public void wake() {
+    if (!started || !woken.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      relay.execute(() -> {
+        woken.set(false);
+        drain();
+      });
+    } catch (RejectedExecutionException e) {
+      log.debug("Outbox relay is shut down; events are published on the next start");
+    }
+  }
+
+  // Stops the relay as soon as shutdown begins, while the beans its
+  // listeners use still exist; a batch in progress is given time to finish,
+  // and whatever is left in the outbox is published on the next start
+  @EventListener(ContextClosedEvent.class)
+  public void close() throws InterruptedException {
+    relay.shutdown();
+    relay.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  void drain() {
+    try {
+      while (relayBatch() == batchSize) {
+        // more events are waiting
+      }
+    } catch (RuntimeException e) {
+      // e.g. the database is unreachable; the next poll tries again
+      log.error("Outbox relay failed", e);
+    }
+  }
+
+  // Publishes and deletes up to batchSize events in one transaction, and
+  // returns how many. If any of them fails the transaction is rolled back,
+  // and the batch is published again one event per transaction, so that only
+  // the failing events are counted as failed; 0 is then returned, leaving
+  // the rest of the outbox to the next poll.
+  int relayBatch() {
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    try {
+      return transaction.execute(status -> publish(pending()));
+    } catch (RuntimeException e) {
+      log.warn("Publishing a batch of outbox events failed, retrying them one at a time: {}", e.toString());
+    }
+    for (OutboxEvent event : transaction.execute(status -> pending())) {
+      try {
+        transaction.execute(status -> publish(List.of(event)));
+      } catch (RuntimeException e) {
+        transaction.executeWithoutResult(status -> outboxEventRepository.recordFailure(event.getId(), describe(e)));
+        if (event.getAttempts() + 1 >= maxAttempts) {
+          log.error("Giving up on outbox event {} after {} attempts", event.getId(), maxAttempts, e);
+        } else {
+          log.warn("Publishing outbox event {} failed: {}", event.getId(), e.toString());
+        }
+      }
+    }
+    return 0;
+  }
+
+  private List<OutboxEvent> pending() {
+    return outboxEventRepository.findPending(maxAttempts, PageRequest.of(0, batchSize));
+  }
+
+  private int publish(List<OutboxEvent> events) {
+    if (events.isEmpty()) {
+      return 0;
+    }
+    events.forEach(eventBus::publish);
+    outboxEventRepository.deletePublished(events.stream().map(OutboxEvent::getId).toList());
+    return events.size();
+  }
+
+  static String describe(RuntimeException e) {
+    String error = e.toString();
+    return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+  }
+}
@@ -0,0 +1,66 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.OutboxEvent;
+import edu.ucsb.cs156.example.repositories.OutboxEventRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+
+import static edu.ucsb.cs156.example.services.Transactions.afterCommit;
+
+/**
+ * Transactional outbox: controllers record an event here in the same
+ * transaction as the entity change it describes, so the event is stored if
+ * and only if the change commits. Side effects such as review statistics
+ * and the search index are then applied by OutboxRelayService, off the
+ * request path; the relay is woken as soon as the transaction commits.
+ */
+@Service("outbox")
+public class OutboxService {
+
+  @Autowired
+  OutboxEventRepository outboxEventRepository;
+
+  @Autowired
+  OutboxRelayService outboxRelayService;
+
+  @Autowired
+  ObjectMapper objectMapper;
+
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void record(Class<?> aggregateType, long aggregateId, String eventType) {
+    record(aggregateType, aggregateId, eventType, null);
+  }
+
+  // The payload, if not null, is stored as JSON
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void record(Class<?> aggregateType, long aggregateId, String eventType, Object payload) {
+    outboxEventRepository.save(OutboxEvent.builder()
+        .aggregateType(aggregateType.getSimpleName())
+        .aggregateId(aggregateId)
+        .eventType(eventType)
+        .payload(toJson(payload))
+        .createdAt(LocalDateTime.now())
+        .build());
+    afterCommit(outboxRelayService::wake);
+  }
+
+  private String toJson(Object payload) {
+    if (payload == null) {
+      return null;
+    }
+    try {
+      return objectMapper.writeValueAsString(payload);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
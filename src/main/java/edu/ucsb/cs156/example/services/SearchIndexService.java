@@ -0,0 +1,205 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.OutboxEvent;
+import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import javax.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Full-text index of article titles and explanations and of help request
+ * titles and bodies, for the /search endpoints. The index lives in a Lucene
+ * directory on local disk that is memory-mapped, so it does not take up
+ * heap, and is rebuilt from the database when the app starts.
+ *
+ * Every write is recorded in the outbox by its controller and reaches the
+ * index through outboxEvent. The index is updated on the outbox relay's
+ * thread, before the relay deletes the event, so requests do not wait for
+ * Lucene, and an update that fails leaves its event in the outbox to be
+ * retried. Each update reopens the searcher from the writer (near-real-time),
+ * so a change is searchable moments after the request that made it, without
+ * a commit.
+ */
+@Slf4j
+@Service("searchIndex")
+public class SearchIndexService {
+
+  public static final int DEFAULT_RESULTS = 20;
+  public static final int MAX_RESULTS = 100;
+
+  // A title match counts for more than a match in the body
+  private static final Map<String, Float> FIELD_WEIGHTS = Map.of("title", 2.0f, "body", 1.0f);
+
+  interface IndexUpdate {
+    void apply(IndexWriter writer) throws IOException;
+  }
+
+  @Autowired
+  ArticlesRepository articlesRepository;
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  final Path indexPath;
+  private final boolean temporary;
+  private final Analyzer analyzer = new StandardAnalyzer();
+  private final Directory directory;
+  private final IndexWriter writer;
+  private final SearcherManager searcherManager;
+
+  // Without app.search.indexDirectory the index goes in a fresh temporary
+  // directory, which is deleted on shutdown
+  public SearchIndexService(@Value("${app.search.indexDirectory:}") String indexDirectory) throws IOException {
+    this.temporary = indexDirectory.isBlank();
+    this.indexPath = temporary ? Files.createTempDirectory("search-index") : Path.of(indexDirectory);
+    this.directory = new MMapDirectory(indexPath);
+    this.writer = new IndexWriter(directory,
+        new IndexWriterConfig(analyzer).setOpenMode(IndexWriterConfig.OpenMode.CREATE));
+    this.searcherManager = new SearcherManager(writer, null);
+  }
+
+  // Runs on the startup thread, and has finished before the outbox relay
+  // starts sending updates
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(OutboxRelayService.LOAD_ORDER)
+  public void rebuild() throws IOException {
+    apply(writer -> {
+      writer.deleteAll();
+      for (Articles article : articlesRepository.findAll()) {
+        writer.addDocument(document(Articles.class, article.getId(), article.getTitle(), article.getExplanation()));
+      }
+      for (HelpRequest helpRequest : helpRequestRepository.findAll()) {
+        writer.addDocument(document(HelpRequest.class, helpRequest.getId(), helpRequest.getTitle(),
+            helpRequest.getRequestBody()));
+      }
+      writer.commit();
+      log.info("Search index rebuilt with {} documents", writer.getDocStats().numDocs);
+    });
+  }
+
+  // The row is read back rather than taken from the event, so the index ends
+  // up matching the database even if events are replayed
+  @EventListener
+  public void outboxEvent(OutboxEvent event) {
+    long id = event.getAggregateId();
+    if (Articles.class.getSimpleName().equals(event.getAggregateType())) {
+      articlesRepository.findById(id).ifPresentOrElse(
+          article -> indexed(Articles.class, id, article.getTitle(), article.getExplanation()),
+          () -> removed(Articles.class, id));
+    } else if (HelpRequest.class.getSimpleName().equals(event.getAggregateType())) {
+      helpRequestRepository.findById(id).ifPresentOrElse(
+          helpRequest -> indexed(HelpRequest.class, id, helpRequest.getTitle(), helpRequest.getRequestBody()),
+          () -> removed(HelpRequest.class, id));
+    }
+  }
+
+  public void indexed(Class<?> type, long id, String title, String body) {
+    Document document = document(type, id, title, body);
+    update(writer -> writer.updateDocument(new Term("key", key(type, id)), document));
+  }
+
+  public void removed(Class<?> type, long id) {
+    update(writer -> writer.deleteDocuments(new Term("key", key(type, id))));
+  }
+
+  // Ids of the rows of the given type that best match the query, best first;
+  // the query is in Lucene's simple syntax ("quoted phrases", -exclusions,
+  // prefix*), and never fails to parse
+  public List<Long> search(Class<?> type, String query, int limit) throws IOException {
+    SimpleQueryParser parser = new SimpleQueryParser(analyzer, FIELD_WEIGHTS);
+    parser.setDefaultOperator(BooleanClause.Occur.MUST);
+    BooleanQuery typedQuery = new BooleanQuery.Builder()
+        .add(new TermQuery(new Term("type", type.getSimpleName())), BooleanClause.Occur.FILTER)
+        .add(parser.parse(query), BooleanClause.Occur.MUST)
+        .build();
+
+    IndexSearcher searcher = searcherManager.acquire();
+    try {
+      List<Long> ids = new ArrayList<>();
+      for (ScoreDoc hit : searcher.search(typedQuery, limit).scoreDocs) {
+        ids.add(searcher.storedFields().document(hit.doc).getField("id").numericValue().longValue());
+      }
+      return ids;
+    } finally {
+      searcherManager.release(searcher);
+    }
+  }
+
+  // Applies the update on the calling thread; a failure is thrown to the
+  // outbox relay, which keeps the event and counts the attempt
+  void update(IndexUpdate update) {
+    try {
+      apply(update);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private synchronized void apply(IndexUpdate update) throws IOException {
+    update.apply(writer);
+    searcherManager.maybeRefresh();
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    searcherManager.close();
+    writer.close();
+    directory.close();
+    if (temporary) {
+      FileSystemUtils.deleteRecursively(indexPath);
+    }
+  }
+
+  private static String key(Class<?> type, long id) {
+    return type.getSimpleName() + ":" + id;
+  }
+
+  // One document per row, keyed by type and id (e.g. "Articles:12")
+  private static Document document(Class<?> type, long id, String title, String body) {
+    Document document = new Document();
+    document.add(new StringField("key", key(type, id), Field.Store.NO));
+    document.add(new StringField("type", type.getSimpleName(), Field.Store.NO));
+    document.add(new StoredField("id", id));
+    document.add(new TextField("title", title == null ? "" : title, Field.Store.NO));
+    document.add(new TextField("body", body == null ? "" : body, Field.Store.NO));
+    return document;
+  }
+}
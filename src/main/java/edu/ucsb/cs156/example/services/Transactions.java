@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Hooks into the current transaction, for the controllers and the services
+ * that keep in-memory state (caches, the leaderboard, ETags) in step with
+ * the database.
+ */
+public final class Transactions {
+
+  private Transactions() {
+  }
+
+  // Runs update once the current transaction commits, or straight away
+  // outside one; for work that must not see, or act on, a write that may
+  // yet be rolled back. Updates registered in the same transaction run in
+  // the order they were registered
+  public static void afterCommit(Runnable update) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          update.run();
+        }
+      });
+    } else {
+      update.run();
+    }
+  }
+}
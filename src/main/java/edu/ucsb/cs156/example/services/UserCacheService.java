@@ -0,0 +1,58 @@
+package edu.ucsb.cs156.example.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import edu.ucsb.cs156.example.entities.User;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Bounded cache of the users table, keyed by Google sub, so that resolving
+ * the caller of an API request does not need a query once they have logged in.
+ * Anything in the app that changes a user's row must call invalidate, so an
+ * active user is read again only once an hour: entries are dropped that long
+ * after they were read from the table, however often they are used, so that
+ * a change made to the table from outside the app (such as making someone an
+ * admin by hand) still takes effect within that time.
+ */
+@Slf4j
+@Service("userCache")
+public class UserCacheService {
+
+  private final Cache<String, User> usersByGoogleSub;
+
+  @Autowired
+  public UserCacheService(
+      @Value("${app.userCache.maximumSize:10000}") long maximumSize,
+      @Value("${app.userCache.expireAfterWrite:PT1H}") Duration expireAfterWrite) {
+    this(maximumSize, expireAfterWrite, Ticker.systemTicker());
+  }
+
+  UserCacheService(long maximumSize, Duration expireAfterWrite, Ticker ticker) {
+    this.usersByGoogleSub = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(expireAfterWrite)
+        .ticker(ticker)
+        .build();
+  }
+
+  public User getIfPresent(String googleSub) {
+    return usersByGoogleSub.getIfPresent(googleSub);
+  }
+
+  public void put(String googleSub, User user) {
+    usersByGoogleSub.put(googleSub, user);
+  }
+
+  public void invalidate(String googleSub) {
+    log.info("invalidating cached user for googleSub={}", googleSub);
+    usersByGoogleSub.invalidate(googleSub);
+  }
+}
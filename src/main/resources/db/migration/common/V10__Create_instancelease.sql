@@ -0,0 +1,12 @@
+-- Single-instance lease (see InstanceLeaseService): the running instance
+-- holds the one row and keeps renewing it, and another instance started on
+-- the same database refuses to start until the lease is released or expires
+
+CREATE TABLE instancelease (
+  id INTEGER NOT NULL,
+  owner VARCHAR(255),
+  expires_at TIMESTAMP,
+  PRIMARY KEY (id)
+);
+
+INSERT INTO instancelease (id) VALUES (1);
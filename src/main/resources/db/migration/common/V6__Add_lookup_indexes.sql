@@ -0,0 +1,11 @@
+-- Indexes for the columns rows are looked up by, other than primary keys:
+-- users by email on every login (findByEmail expects at most one match),
+-- dates by quarter, reviews by menu item, and menu items by dining commons
+
+CREATE UNIQUE INDEX users_email_idx ON users (email);
+
+CREATE INDEX ucsbdates_quarteryyyyq_idx ON ucsbdates (quarteryyyyq);
+
+CREATE INDEX menuitemreviews_item_id_idx ON menuitemreviews (item_id);
+
+CREATE INDEX ucsbdiningcommonsmenuitems_dining_commons_code_idx ON ucsbdiningcommonsmenuitems (dining_commons_code);
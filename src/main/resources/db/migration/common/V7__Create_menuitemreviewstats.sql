@@ -0,0 +1,15 @@
+-- Per-item review totals (see MenuItemReviewStats), filled in from the
+-- reviews already in the database
+
+CREATE TABLE menuitemreviewstats (
+  item_id BIGINT NOT NULL,
+  review_count BIGINT NOT NULL,
+  total_stars BIGINT NOT NULL,
+  PRIMARY KEY (item_id)
+);
+
+INSERT INTO menuitemreviewstats (item_id, review_count, total_stars)
+  SELECT item_id, COUNT(*), SUM(stars)
+  FROM menuitemreviews
+  WHERE item_id IS NOT NULL
+  GROUP BY item_id;
@@ -0,0 +1,16 @@
+-- Transactional outbox (see OutboxService): a row is written in the same
+-- transaction as the entity change it describes, and deleted once the
+-- relay has published it; rows that failed maxAttempts times are kept,
+-- with the last error, for someone to look at
+
+CREATE TABLE outboxevents (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+  aggregate_type VARCHAR(255) NOT NULL,
+  aggregate_id BIGINT NOT NULL,
+  event_type VARCHAR(255) NOT NULL,
+  payload VARCHAR(4000),
+  created_at TIMESTAMP NOT NULL,
+  attempts INTEGER NOT NULL,
+  last_error VARCHAR(1000),
+  PRIMARY KEY (id)
+);
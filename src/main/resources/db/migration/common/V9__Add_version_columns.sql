@@ -0,0 +1,11 @@
+-- Optimistic locking (@Version): every update of a row increments its
+-- version, and a PUT with If-Match only applies to the version it names
+
+ALTER TABLE articles ADD version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE helprequest ADD version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE menuitemreviews ADD version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE recommendationrequests ADD version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE ucsbdates ADD version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE ucsbdiningcommons ADD version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE ucsbdiningcommonsmenuitems ADD version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE ucsborganization ADD version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,92 @@
+-- Schema as it stood before migrations were managed by Flyway, when Hibernate's
+-- ddl-auto created the tables; databases from that time are baselined at
+-- version 4 instead of running V1 through V4
+
+CREATE TABLE articles (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+  date_added TIMESTAMP,
+  email VARCHAR(255),
+  explanation VARCHAR(255),
+  title VARCHAR(255),
+  url VARCHAR(255),
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE helprequest (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+  request_body VARCHAR(255),
+  request_date_time TIMESTAMP,
+  requester VARCHAR(255),
+  title VARCHAR(255),
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE menuitemreviews (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+  comments VARCHAR(255),
+  date_reviewed TIMESTAMP,
+  item_id BIGINT,
+  reviewer_email VARCHAR(255),
+  stars INTEGER NOT NULL,
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE recommendationrequests (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+  date_needed TIMESTAMP,
+  date_requested TIMESTAMP,
+  done BOOLEAN NOT NULL,
+  explanation VARCHAR(255),
+  professor_email VARCHAR(255),
+  requester_email VARCHAR(255),
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE ucsbdates (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+  local_date_time TIMESTAMP,
+  name VARCHAR(255),
+  quarteryyyyq VARCHAR(255),
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE ucsbdiningcommons (
+  code VARCHAR(255) NOT NULL,
+  has_dining_cam BOOLEAN NOT NULL,
+  has_sack_meal BOOLEAN NOT NULL,
+  has_take_out_meal BOOLEAN NOT NULL,
+  latitude DOUBLE,
+  longitude DOUBLE,
+  name VARCHAR(255),
+  PRIMARY KEY (code)
+);
+
+CREATE TABLE ucsbdiningcommonsmenuitems (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+  dining_commons_code VARCHAR(255),
+  name VARCHAR(255),
+  station VARCHAR(255),
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE ucsborganization (
+  org_code VARCHAR(255) NOT NULL,
+  inactive BOOLEAN NOT NULL,
+  org_translation VARCHAR(255),
+  org_translation_short VARCHAR(255),
+  PRIMARY KEY (org_code)
+);
+
+CREATE TABLE users (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+  email VARCHAR(255),
+  email_verified BOOLEAN NOT NULL,
+  family_name VARCHAR(255),
+  full_name VARCHAR(255),
+  given_name VARCHAR(255),
+  google_sub VARCHAR(255),
+  hosted_domain VARCHAR(255),
+  locale VARCHAR(255),
+  picture_url VARCHAR(255),
+  PRIMARY KEY (id)
+);
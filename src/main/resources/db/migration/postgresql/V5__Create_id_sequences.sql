@@ -0,0 +1,10 @@
+-- Pooled sequences for the tables written by the /bulk endpoints, so that
+-- Hibernate can batch their INSERTs. Hibernate's pooled optimizer treats each
+-- value it draws as the top of a block of 50 ids, so the first value must be
+-- at least 50 above the largest id already in use.
+
+CREATE SEQUENCE ucsbdates_seq INCREMENT BY 50;
+SELECT setval('ucsbdates_seq', COALESCE(MAX(id), 0) + 50, false) FROM ucsbdates;
+
+CREATE SEQUENCE ucsbdiningcommonsmenuitems_seq INCREMENT BY 50;
+SELECT setval('ucsbdiningcommonsmenuitems_seq', COALESCE(MAX(id), 0) + 50, false) FROM ucsbdiningcommonsmenuitems;
@@ -0,0 +1,138 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import edu.ucsb.cs156.example.ExampleApplication;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+
+/**
+ * The whole application on an in-memory database, to check that the
+ * reference data list pages are answered from the cache until a write to
+ * their table evicts it. The spies count the calls that reach the
+ * repositories, behind the caching proxy.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:cacheconfigtests;DB_CLOSE_DELAY=-1",
+    "spring.h2.console.enabled=false"
+})
+@AutoConfigureMockMvc
+@WithMockUser(roles = { "ADMIN", "USER" })
+class CacheConfigTests {
+
+  // ExampleApplication's component scan would also find the test doubles
+  // under testconfig, and the load test's beans when that profile is on
+  @SpringBootConfiguration
+  @EnableAutoConfiguration
+  @AutoConfigurationPackage(basePackageClasses = ExampleApplication.class)
+  @ComponentScan(basePackageClasses = ExampleApplication.class,
+      excludeFilters = @ComponentScan.Filter(type = FilterType.REGEX, pattern = {
+          "edu\\.ucsb\\.cs156\\.example\\.ExampleApplication",
+          "edu\\.ucsb\\.cs156\\.example\\.(testconfig|loadtest)\\..*"
+      }))
+  static class Application {
+  }
+
+  @Autowired
+  MockMvc mockMvc;
+
+  @Autowired
+  CacheManager cacheManager;
+
+  @SpyBean
+  UCSBDateRepository ucsbDateRepository;
+
+  @SpyBean
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @SpyBean
+  UCSBOrganizationRepository ucsbOrganizationRepository;
+
+  @BeforeEach
+  void clearCaches() {
+    cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+  }
+
+  private void getAll(String path) throws Exception {
+    mockMvc.perform(get(path)).andExpect(status().isOk());
+  }
+
+  @Test
+  void dates_are_read_once_until_a_date_is_posted() throws Exception {
+    getAll("/api/ucsbdates/all");
+    getAll("/api/ucsbdates/all");
+    verify(ucsbDateRepository, times(1)).findPageAfter(anyLong(), any());
+
+    mockMvc.perform(post("/api/ucsbdates/post").with(csrf())
+        .param("quarterYYYYQ", "20224").param("name", "cache test").param("localDateTime", "2022-10-01T00:00:00"))
+        .andExpect(status().isOk());
+    getAll("/api/ucsbdates/all");
+    getAll("/api/ucsbdates/all");
+    verify(ucsbDateRepository, times(2)).findPageAfter(anyLong(), any());
+  }
+
+  @Test
+  void commons_are_read_once_until_a_commons_is_updated() throws Exception {
+    mockMvc.perform(post("/api/ucsbdiningcommons/post").with(csrf())
+        .param("code", "cachetest").param("name", "Cache test").param("hasSackMeal", "true")
+        .param("hasTakeOutMeal", "true").param("hasDiningCam", "false")
+        .param("latitude", "34.41").param("longitude", "-119.84"))
+        .andExpect(status().isOk());
+    getAll("/api/ucsbdiningcommons/all");
+    getAll("/api/ucsbdiningcommons/all");
+    verify(ucsbDiningCommonsRepository, times(1)).findPageAfter(anyString(), any());
+
+    mockMvc.perform(put("/api/ucsbdiningcommons?code=cachetest").with(csrf())
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"name\":\"Renamed\",\"hasSackMeal\":false,\"hasTakeOutMeal\":true,"
+            + "\"hasDiningCam\":false,\"latitude\":34.41,\"longitude\":-119.84}"))
+        .andExpect(status().isOk());
+    getAll("/api/ucsbdiningcommons/all");
+    getAll("/api/ucsbdiningcommons/all");
+    verify(ucsbDiningCommonsRepository, times(2)).findPageAfter(anyString(), any());
+  }
+
+  @Test
+  void organizations_are_read_once_until_an_organization_is_deleted() throws Exception {
+    mockMvc.perform(post("/api/UCSBOrganization/post").with(csrf())
+        .param("orgCode", "CACHETEST").param("orgTranslationShort", "CACHE TEST")
+        .param("orgTranslation", "Cache Test").param("inactive", "false"))
+        .andExpect(status().isOk());
+    getAll("/api/UCSBOrganization/all");
+    getAll("/api/UCSBOrganization/all");
+    verify(ucsbOrganizationRepository, times(1)).findPageAfter(anyString(), any());
+
+    mockMvc.perform(delete("/api/UCSBOrganization?orgCode=CACHETEST").with(csrf()))
+        .andExpect(status().isOk());
+    getAll("/api/UCSBOrganization/all");
+    getAll("/api/UCSBOrganization/all");
+    verify(ucsbOrganizationRepository, times(2)).findPageAfter(anyString(), any());
+  }
+}
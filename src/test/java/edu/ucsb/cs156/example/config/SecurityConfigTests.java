@@ -0,0 +1,63 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * The whole application, with metrics export on, to check who may read the
+ * actuator endpoints: Prometheus with the scrape credential, admins with
+ * their login.
+ */
+@SpringBootTest(classes = CacheConfigTests.Application.class, properties = {
+    "spring.datasource.url=jdbc:h2:mem:securityconfigtests;DB_CLOSE_DELAY=-1",
+    "spring.h2.console.enabled=false",
+    "app.metrics.scrapeUsername=scraper",
+    "app.metrics.scrapePassword=scrape-secret"
+})
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+class SecurityConfigTests {
+
+  @Autowired
+  MockMvc mockMvc;
+
+  @Test
+  void prometheus_can_scrape_with_the_scrape_credential() throws Exception {
+    mockMvc.perform(get("/actuator/prometheus").with(httpBasic("scraper", "scrape-secret")))
+        .andExpect(status().isOk());
+  }
+
+  @Test
+  void the_scrape_endpoint_refuses_anonymous_requests() throws Exception {
+    mockMvc.perform(get("/actuator/prometheus"))
+        .andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  void the_scrape_endpoint_refuses_a_wrong_password() throws Exception {
+    mockMvc.perform(get("/actuator/prometheus").with(httpBasic("scraper", "guess")))
+        .andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  void the_scrape_credential_does_not_open_the_other_actuator_endpoints() throws Exception {
+    mockMvc.perform(get("/actuator/metrics").with(httpBasic("scraper", "scrape-secret")))
+        .andExpect(status().isForbidden());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  void admins_can_read_the_other_actuator_endpoints() throws Exception {
+    mockMvc.perform(get("/actuator/metrics"))
+        .andExpect(status().isOk());
+  }
+}
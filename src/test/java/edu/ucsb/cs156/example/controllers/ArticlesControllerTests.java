@@ -2,12 +2,18 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import edu.ucsb.cs156.example.services.OutboxService;
+import edu.ucsb.cs156.example.services.SearchIndexService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.OutboxEvent;
 import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.errors.UnknownFieldException;
+import edu.ucsb.cs156.example.services.FieldProjectionService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 
@@ -15,9 +21,13 @@ import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -26,13 +36,19 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 
 @WebMvcTest(controllers = ArticlesController.class)
 @Import(TestConfig.class)
@@ -44,6 +60,15 @@ public class ArticlesControllerTests extends ControllerTestCase{
     @MockBean
     UserRepository userRepository;
 
+    @MockBean
+    SearchIndexService searchIndexService;
+
+    @MockBean
+    OutboxService outboxService;
+
+    @MockBean
+    FieldProjectionService fieldProjectionService;
+
     @Test
     public void logged_out_users_cannot_get_all() throws Exception {
         mockMvc.perform(get("/api/articles/all"))
@@ -171,13 +196,13 @@ public class ArticlesControllerTests extends ControllerTestCase{
         ArrayList<Articles> expectedArticles = new ArrayList<>();
         expectedArticles.addAll(Arrays.asList(article1, article2));
 
-        when(articlesRepository.findAll()).thenReturn(expectedArticles);
+        when(articlesRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(expectedArticles);
 
         MvcResult response = mockMvc.perform(get("/api/articles/all"))
             .andExpect(status().isOk())
             .andReturn();
 
-        verify(articlesRepository, times(1)).findAll();
+        verify(articlesRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
         String expectedJSON = mapper.writeValueAsString(expectedArticles);
         String responseJSON = response.getResponse().getContentAsString();
         assertEquals(expectedJSON, responseJSON);
@@ -202,6 +227,7 @@ public class ArticlesControllerTests extends ControllerTestCase{
         MvcResult response = mockMvc.perform(post("/api/articles/post?title=testarticle1&url=url1.test&explanation=testexplanation1&email=tesmail1@ucsb.edu&dateAdded=2022-01-03T00:00:00").with(csrf())).andExpect(status().isOk()).andReturn();
 
         verify(articlesRepository, times(1)).save(article1);
+        verify(outboxService, times(1)).record(Articles.class, 0L, OutboxEvent.SAVED);
         String expectedJSON = mapper.writeValueAsString(article1);
         String responseJSON = response.getResponse().getContentAsString();
         assertEquals(expectedJSON, responseJSON);
@@ -244,6 +270,7 @@ public class ArticlesControllerTests extends ControllerTestCase{
         
         verify(articlesRepository, times(1)).findById(eq(1L));
         verify(articlesRepository, times(1)).save(articleEdited);
+        verify(outboxService, times(1)).record(Articles.class, 1L, OutboxEvent.SAVED);
         String responseString = response.getResponse().getContentAsString();
         assertEquals(requestBody, responseString);
     }
@@ -281,25 +308,16 @@ public class ArticlesControllerTests extends ControllerTestCase{
     @WithMockUser(roles = { "ADMIN", "USER" })
     @Test
     public void admin_can_delete_a_article() throws Exception{
-        LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
-
-        Articles article1 = Articles.builder()
-        .title("test article 1")
-        .url("url1.test")
-        .explanation("test explanation 1")
-        .email("tesmail1@ucsb.edu")
-        .dateAdded(ldt1)
-        .build();
-
-        when(articlesRepository.findById(eq(1L))).thenReturn(Optional.of(article1));
+        when(articlesRepository.deleteRow(eq(1L))).thenReturn(1);
 
         MvcResult response = mockMvc.perform(
             delete("/api/articles?id=1")
             .with(csrf()))
             .andExpect(status().isOk()).andReturn();
 
-        verify(articlesRepository, times(1)).findById(eq(1L));
-        verify(articlesRepository, times(1)).delete(any());
+        verify(articlesRepository, times(1)).deleteRow(eq(1L));
+        verify(articlesRepository, never()).findById(any());
+        verify(outboxService, times(1)).record(Articles.class, 1L, OutboxEvent.DELETED);
 
         Map<String, Object> json = responseToJson(response);
         assertEquals("Article with id 1 deleted", json.get("message"));
@@ -309,15 +327,427 @@ public class ArticlesControllerTests extends ControllerTestCase{
     @Test
     public void admin_tries_to_delete_non_existant_article_and_gets_right_error_message() throws Exception{
 
-        when(articlesRepository.findById(eq(1L))).thenReturn(Optional.empty());
+        when(articlesRepository.deleteRow(eq(1L))).thenReturn(0);
 
         MvcResult response = mockMvc.perform(
             delete("/api/articles?id=1")
             .with(csrf()))
             .andExpect(status().isNotFound()).andReturn();
 
-        verify(articlesRepository, times(1)).findById(1L);
+        verify(articlesRepository, times(1)).deleteRow(1L);
         Map<String, Object> json = responseToJson(response);
         assertEquals("Articles with id 1 not found", json.get("message"));
     }
-}
\ No newline at end of file
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_first_page_of_articles() throws Exception {
+
+        // arrange
+
+        Articles first = Articles.builder()
+            .Id(1L)
+            .title("article 1")
+            .url("url1.test")
+            .explanation("explanation 1")
+            .email("test1@ucsb.edu")
+            .dateAdded(LocalDateTime.parse("2022-01-01T00:00:00"))
+            .build();
+        Articles second = Articles.builder()
+            .Id(2L)
+            .title("article 2")
+            .url("url2.test")
+            .explanation("explanation 2")
+            .email("test2@ucsb.edu")
+            .dateAdded(LocalDateTime.parse("2022-01-02T00:00:00"))
+            .build();
+        Articles third = Articles.builder()
+            .Id(3L)
+            .title("article 3")
+            .url("url3.test")
+            .explanation("explanation 3")
+            .email("test3@ucsb.edu")
+            .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+            .build();
+
+        when(articlesRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, 3))))
+            .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/articles/all?limit=2"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "2"))
+            .andReturn();
+
+        // assert
+
+        verify(articlesRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, 3)));
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(first, second));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_last_page_of_articles() throws Exception {
+
+        // arrange
+
+        Articles third = Articles.builder()
+            .Id(3L)
+            .title("article 3")
+            .url("url3.test")
+            .explanation("explanation 3")
+            .email("test3@ucsb.edu")
+            .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+            .build();
+
+        when(articlesRepository.findPageAfter(eq(2L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1))))
+            .thenReturn(new ArrayList<>(Arrays.asList(third)));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/articles/all?after=2"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+            .andReturn();
+
+        // assert
+
+        verify(articlesRepository, times(1)).findPageAfter(eq(2L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(third));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_export_all_articles_as_ndjson() throws Exception {
+
+        // arrange
+
+        Articles first = Articles.builder()
+            .Id(1L)
+            .title("article 1")
+            .url("url1.test")
+            .explanation("explanation 1")
+            .email("test1@ucsb.edu")
+            .dateAdded(LocalDateTime.parse("2022-01-01T00:00:00"))
+            .build();
+        Articles second = Articles.builder()
+            .Id(2L)
+            .title("article 2")
+            .url("url2.test")
+            .explanation("explanation 2")
+            .email("test2@ucsb.edu")
+            .dateAdded(LocalDateTime.parse("2022-01-02T00:00:00"))
+            .build();
+
+        when(articlesRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/articles/all").accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        mockMvc.perform(asyncDispatch(response))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON));
+
+        // assert
+
+        verify(articlesRepository, times(1)).streamAll();
+        String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedNdjson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_304_for_all_articles_when_etag_matches() throws Exception {
+
+        // arrange
+
+        Articles first = Articles.builder()
+            .Id(1L)
+            .title("article 1")
+            .url("url1.test")
+            .explanation("explanation 1")
+            .email("test1@ucsb.edu")
+            .dateAdded(LocalDateTime.parse("2022-01-01T00:00:00"))
+            .build();
+
+        when(articlesRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+        // act
+
+        MvcResult response = mockMvc.perform(get("/api/articles/all"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn();
+        String etag = response.getResponse().getHeader("ETag");
+
+        MvcResult notModified = mockMvc.perform(get("/api/articles/all").header("If-None-Match", etag))
+            .andExpect(status().isNotModified())
+            .andReturn();
+
+        // assert
+
+        verify(articlesRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+        assertEquals("", notModified.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void the_etag_only_changes_once_a_write_commits() throws Exception {
+
+        // arrange
+
+        when(articlesRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(new ArrayList<>());
+        when(articlesRepository.deleteRow(eq(1L))).thenReturn(1);
+        String etag = mockMvc.perform(get("/api/articles/all")).andReturn().getResponse().getHeader("ETag");
+
+        // act and assert
+
+        // a delete whose transaction is rolled back
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            mockMvc.perform(delete("/api/articles?id=1").with(csrf())).andExpect(status().isOk());
+            mockMvc.perform(get("/api/articles/all").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        mockMvc.perform(get("/api/articles/all").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+
+        // the same delete, committed
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            mockMvc.perform(delete("/api/articles?id=1").with(csrf())).andExpect(status().isOk());
+            TransactionSynchronizationUtils.triggerAfterCommit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        mockMvc.perform(get("/api/articles/all").header("If-None-Match", etag))
+            .andExpect(status().isOk());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_304_for_single_articles_when_etag_matches() throws Exception {
+
+        // arrange
+
+        Articles first = Articles.builder()
+            .Id(1L)
+            .title("article 1")
+            .url("url1.test")
+            .explanation("explanation 1")
+            .email("test1@ucsb.edu")
+            .dateAdded(LocalDateTime.parse("2022-01-01T00:00:00"))
+            .build();
+
+        when(articlesRepository.findById(eq(1L))).thenReturn(Optional.of(first));
+
+        // act
+
+        MvcResult response = mockMvc.perform(get("/api/articles?id=1"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn();
+        String etag = response.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/articles?id=1").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+
+        // assert
+
+        verify(articlesRepository, times(1)).findById(eq(1L));
+    }
+
+    @Test
+    public void logged_out_users_cannot_search() throws Exception {
+        mockMvc.perform(get("/api/articles/search?q=test"))
+            .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_search_articles() throws Exception {
+        // arrange
+        Articles first = Articles.builder().Id(1L).title("test article 1").explanation("test explanation 1").build();
+        Articles second = Articles.builder().Id(2L).title("test article 2").explanation("test explanation 2").build();
+
+        when(searchIndexService.search(Articles.class, "test", 2)).thenReturn(List.of(2L, 3L, 1L));
+        when(articlesRepository.findAllById(List.of(2L, 3L, 1L))).thenReturn(List.of(first, second));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/articles/search?q=test&limit=2"))
+            .andExpect(status().isOk()).andReturn();
+
+        // assert: results keep the index's order, and rows deleted since are skipped
+        verify(searchIndexService, times(1)).search(Articles.class, "test", 2);
+        String expectedJson = mapper.writeValueAsString(List.of(second, first));
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void search_limit_defaults_and_is_kept_within_bounds() throws Exception {
+        when(searchIndexService.search(eq(Articles.class), eq("test"), anyInt())).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/articles/search?q=test")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/articles/search?q=test&limit=100000")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/articles/search?q=test&limit=0")).andExpect(status().isOk());
+
+        verify(searchIndexService, times(1)).search(Articles.class, "test", SearchIndexService.DEFAULT_RESULTS);
+        verify(searchIndexService, times(1)).search(Articles.class, "test", SearchIndexService.MAX_RESULTS);
+        verify(searchIndexService, times(1)).search(Articles.class, "test", 1);
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_edit_an_article_with_if_match() throws Exception {
+        Articles edited = Articles.builder()
+                .title("test article 2")
+                .url("url2.test")
+                .explanation("test explanation 2")
+                .email("tesmail2@ucsb.edu")
+                .dateAdded(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build();
+
+        String requestBody = mapper.writeValueAsString(edited);
+        when(articlesRepository.updateIfVersion(eq(1L), eq(3L), any())).thenReturn(1);
+
+        MvcResult response = mockMvc.perform(
+                put("/api/articles?id=1")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(requestBody)
+                        .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // one conditional UPDATE, without reading the row first
+        verify(articlesRepository, never()).findById(any());
+        verify(articlesRepository, never()).save(any());
+        verify(outboxService, times(1)).record(Articles.class, 1L, OutboxEvent.SAVED);
+        Articles expected = Articles.builder()
+                .title("test article 2")
+                .url("url2.test")
+                .explanation("test explanation 2")
+                .email("tesmail2@ucsb.edu")
+                .dateAdded(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .Id(1L)
+                .version(4L)
+                .build();
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_cannot_edit_an_article_with_a_stale_if_match() throws Exception {
+        Articles edited = Articles.builder()
+                .title("test article 2")
+                .url("url2.test")
+                .explanation("test explanation 2")
+                .email("tesmail2@ucsb.edu")
+                .dateAdded(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build();
+
+        when(articlesRepository.updateIfVersion(eq(1L), eq(3L), any())).thenReturn(0);
+        when(articlesRepository.existsById(eq(1L))).thenReturn(true);
+
+        MvcResult response = mockMvc.perform(
+                put("/api/articles?id=1")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(mapper.writeValueAsString(edited))
+                        .with(csrf()))
+                .andExpect(status().isPreconditionFailed()).andReturn();
+
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("PreconditionFailedException", json.get("type"));
+        assertEquals("Articles with id 1 has been changed since it was read", json.get("message"));
+        verify(outboxService, never()).record(Articles.class, 1L, OutboxEvent.SAVED);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_only_some_fields_of_all_articles() throws Exception {
+
+        // arrange
+
+        List<Map<String, Object>> rows = List.of(Map.of("id", 1L, "title", "article 1"));
+        when(fieldProjectionService.select(eq(Articles.class), eq(List.of("title")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1)))
+            .thenReturn(rows);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/articles/all?fields=title"))
+            .andExpect(status().isOk())
+            .andReturn();
+        String etag = response.getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/articles/all?fields=title").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+
+        // assert
+
+        verify(articlesRepository, never()).findAll();
+        verify(fieldProjectionService, times(1)).select(eq(Articles.class), eq(List.of("title")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1));
+        String expectedJson = mapper.writeValueAsString(rows);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_a_page_of_some_fields_of_articles() throws Exception {
+
+        // arrange
+
+        List<Map<String, Object>> rows = List.of(
+            Map.of("id", 1L, "title", "article 1"),
+            Map.of("id", 2L, "title", "article 2"),
+            Map.of("id", 3L, "title", "article 3"));
+        when(fieldProjectionService.select(eq(Articles.class), eq(List.of("id", "title")), isNull(), eq(3)))
+            .thenReturn(rows);
+        when(fieldProjectionService.table(Articles.class))
+            .thenReturn(new FieldProjectionService.Table("articles", "id", Map.of()));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/articles/all?fields=id,title&limit=2"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "2"))
+            .andReturn();
+
+        // assert
+
+        verify(articlesRepository, never()).findPageAfter(anyLong(), any());
+        String expectedJson = mapper.writeValueAsString(rows.subList(0, 2));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_400_for_a_field_articles_do_not_have() throws Exception {
+
+        // arrange
+
+        when(fieldProjectionService.select(eq(Articles.class), eq(List.of("body")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1)))
+            .thenThrow(new UnknownFieldException(Articles.class, "body"));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/articles/all?fields=body"))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+        // assert
+
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("UnknownFieldException", json.get("type"));
+        assertEquals("Articles has no field body", json.get("message"));
+    }
+}
@@ -0,0 +1,110 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.ChangeFeedService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import java.io.IOException;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@WebMvcTest(controllers = ChangesController.class)
+@Import({ TestConfig.class, ChangeFeedService.class })
+public class ChangesControllerTests extends ControllerTestCase {
+
+    @MockBean
+    UserRepository userRepository;
+
+    @Autowired
+    ChangeFeedService changeFeedService;
+
+    private MvcResult subscribe() throws Exception {
+        return mockMvc.perform(get("/api/changes/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    }
+
+    private static MockAsyncContext asyncContext(MvcResult result) {
+        return (MockAsyncContext) result.getRequest().getAsyncContext();
+    }
+
+    private static String waitForContent(MvcResult result, String expected) throws Exception {
+        for (int i = 0; i < 500; i++) {
+            String content = result.getResponse().getContentAsString();
+            if (content.contains(expected)) {
+                return content;
+            }
+            Thread.sleep(10);
+        }
+        return result.getResponse().getContentAsString();
+    }
+
+    @Test
+    public void logged_out_users_cannot_subscribe() throws Exception {
+        mockMvc.perform(get("/api/changes/stream"))
+            .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void subscribers_get_an_event_for_each_change() throws Exception {
+        // arrange
+        MvcResult result = subscribe();
+        ChangeFeedService.Change change = new ChangeFeedService.Change("HelpRequest", "\"abc-1\"", 1234L);
+
+        // act
+        changeFeedService.publish(change);
+
+        // assert
+        String expected = "event:change\nid:\"abc-1\"\ndata:" + mapper.writeValueAsString(change) + "\n\n";
+        assertEquals(expected, waitForContent(result, expected));
+        assertEquals("text/event-stream", result.getResponse().getContentType());
+        asyncContext(result).complete();
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void subscribers_are_removed_when_the_stream_ends() throws Exception {
+        int before = changeFeedService.subscriberCount();
+        MvcResult result = subscribe();
+        assertEquals(before + 1, changeFeedService.subscriberCount());
+
+        asyncContext(result).complete();
+
+        assertEquals(before, changeFeedService.subscriberCount());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void subscribers_are_removed_when_the_stream_times_out_or_fails() throws Exception {
+        int before = changeFeedService.subscriberCount();
+        MvcResult timedOut = subscribe();
+        MvcResult failed = subscribe();
+
+        for (AsyncListener listener : asyncContext(timedOut).getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext(timedOut)));
+        }
+        for (AsyncListener listener : asyncContext(failed).getListeners()) {
+            listener.onError(new AsyncEvent(asyncContext(failed), new IOException("Broken pipe")));
+        }
+        asyncContext(timedOut).complete();
+
+        assertEquals(before, changeFeedService.subscriberCount());
+    }
+}
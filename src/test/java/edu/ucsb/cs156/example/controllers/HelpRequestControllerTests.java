@@ -2,22 +2,32 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.services.OutboxService;
+import edu.ucsb.cs156.example.services.ChangeFeedService;
+import edu.ucsb.cs156.example.services.SearchIndexService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.OutboxEvent;
 import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.services.FieldProjectionService;
 // import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.test.web.servlet.MvcResult;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -27,17 +37,23 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 // import static org.mockito.ArgumentMatchers.refEq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 
 @WebMvcTest(controllers = HelpRequestController.class)
 @Import(TestConfig.class)
+@RecordApplicationEvents
 public class HelpRequestControllerTests extends ControllerTestCase{
 
     @MockBean
@@ -46,6 +62,18 @@ public class HelpRequestControllerTests extends ControllerTestCase{
     @MockBean
     UserRepository userRepository;
 
+    @MockBean
+    SearchIndexService searchIndexService;
+
+    @MockBean
+    OutboxService outboxService;
+
+    @MockBean
+    FieldProjectionService fieldProjectionService;
+
+    @Autowired
+    ApplicationEvents applicationEvents;
+
     @Test
     public void logged_out_users_cannot_get_all() throws Exception {
         mockMvc.perform(get("/api/helprequest/all"))
@@ -157,13 +185,13 @@ public class HelpRequestControllerTests extends ControllerTestCase{
         ArrayList<HelpRequest> expectedHelpRequest = new ArrayList<>();
         expectedHelpRequest.addAll(Arrays.asList(request1, request2));
 
-        when(requestRepository.findAll()).thenReturn(expectedHelpRequest);
+        when(requestRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(expectedHelpRequest);
 
         MvcResult response = mockMvc.perform(get("/api/helprequest/all"))
             .andExpect(status().isOk())
             .andReturn();
 
-        verify(requestRepository, times(1)).findAll();
+        verify(requestRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
         String expectedJSON = mapper.writeValueAsString(expectedHelpRequest);
         String responseJSON = response.getResponse().getContentAsString();
         assertEquals(expectedJSON, responseJSON);
@@ -187,6 +215,9 @@ public class HelpRequestControllerTests extends ControllerTestCase{
         MvcResult response = mockMvc.perform(post("/api/helprequest/post?title=testrequest1&requester=someuser&requestBody=testbody1&requestDateTime=2022-01-03T00:00:00").with(csrf())).andExpect(status().isOk()).andReturn();
 
         verify(requestRepository, times(1)).save(request1);
+        verify(outboxService, times(1)).record(HelpRequest.class, 0L, OutboxEvent.SAVED);
+        assertEquals(List.of("HelpRequest"),
+            applicationEvents.stream(ChangeFeedService.Change.class).map(ChangeFeedService.Change::table).toList());
         String expectedJSON = mapper.writeValueAsString(request1);
         String responseJSON = response.getResponse().getContentAsString();
         assertEquals(expectedJSON, responseJSON);
@@ -195,18 +226,9 @@ public class HelpRequestControllerTests extends ControllerTestCase{
     @WithMockUser(roles = { "ADMIN", "USER" })
     @Test
     public void admin_can_delete_a_request() throws Exception {
-    
         //arrange
-        LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
 
-        HelpRequest request1 = HelpRequest.builder()
-        .title("test request 1")
-        .requester("someuser")
-        .requestBody("test body 1")
-        .requestDateTime(ldt1)
-        .build();
-
-        when(requestRepository.findById(eq(1L))).thenReturn(Optional.of(request1));
+        when(requestRepository.deleteRow(eq(1L))).thenReturn(1);
 
         // act
         MvcResult response = mockMvc.perform(
@@ -215,8 +237,9 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                         .andExpect(status().isOk()).andReturn();
 
         // assert
-        verify(requestRepository, times(1)).findById(1L);
-        verify(requestRepository, times(1)).delete(any());
+        verify(requestRepository, times(1)).deleteRow(1L);
+        verify(requestRepository, never()).findById(any());
+        verify(outboxService, times(1)).record(HelpRequest.class, 1L, OutboxEvent.DELETED);
 
         Map<String, Object> json = responseToJson(response);
         assertEquals("HelpRequest with id 1 deleted", json.get("message"));
@@ -228,7 +251,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                     throws Exception {
         // arrange
 
-        when(requestRepository.findById(eq(123L))).thenReturn(Optional.empty());
+        when(requestRepository.deleteRow(eq(123L))).thenReturn(0);
 
         // act
         MvcResult response = mockMvc.perform(
@@ -237,7 +260,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                         .andExpect(status().isNotFound()).andReturn();
 
         // assert
-        verify(requestRepository, times(1)).findById(123L);
+        verify(requestRepository, times(1)).deleteRow(123L);
         Map<String, Object> json = responseToJson(response);
         assertEquals("HelpRequest with id 123 not found", json.get("message"));
     }
@@ -277,6 +300,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
         
         verify(requestRepository, times(1)).findById(eq(1L));
         verify(requestRepository, times(1)).save(requestEdited);
+        verify(outboxService, times(1)).record(HelpRequest.class, 1L, OutboxEvent.SAVED);
         String responseString = response.getResponse().getContentAsString();
         assertEquals(requestBody, responseString);
     }
@@ -309,4 +333,342 @@ public class HelpRequestControllerTests extends ControllerTestCase{
         Map<String, Object> json = responseToJson(response);
         assertEquals("HelpRequest with id 1 not found", json.get("message"));
     }
-}
\ No newline at end of file
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_first_page_of_help_requests() throws Exception {
+
+        // arrange
+
+        HelpRequest first = HelpRequest.builder()
+            .id(1L)
+            .title("request 1")
+            .requester("user1")
+            .requestBody("body 1")
+            .requestDateTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+            .build();
+        HelpRequest second = HelpRequest.builder()
+            .id(2L)
+            .title("request 2")
+            .requester("user2")
+            .requestBody("body 2")
+            .requestDateTime(LocalDateTime.parse("2022-01-02T00:00:00"))
+            .build();
+        HelpRequest third = HelpRequest.builder()
+            .id(3L)
+            .title("request 3")
+            .requester("user3")
+            .requestBody("body 3")
+            .requestDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+            .build();
+
+        when(requestRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, 3))))
+            .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequest/all?limit=2"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "2"))
+            .andReturn();
+
+        // assert
+
+        verify(requestRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, 3)));
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(first, second));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_last_page_of_help_requests() throws Exception {
+
+        // arrange
+
+        HelpRequest third = HelpRequest.builder()
+            .id(3L)
+            .title("request 3")
+            .requester("user3")
+            .requestBody("body 3")
+            .requestDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+            .build();
+
+        when(requestRepository.findPageAfter(eq(2L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1))))
+            .thenReturn(new ArrayList<>(Arrays.asList(third)));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequest/all?after=2"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+            .andReturn();
+
+        // assert
+
+        verify(requestRepository, times(1)).findPageAfter(eq(2L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(third));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_export_all_help_requests_as_ndjson() throws Exception {
+
+        // arrange
+
+        HelpRequest first = HelpRequest.builder()
+            .id(1L)
+            .title("request 1")
+            .requester("user1")
+            .requestBody("body 1")
+            .requestDateTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+            .build();
+        HelpRequest second = HelpRequest.builder()
+            .id(2L)
+            .title("request 2")
+            .requester("user2")
+            .requestBody("body 2")
+            .requestDateTime(LocalDateTime.parse("2022-01-02T00:00:00"))
+            .build();
+
+        when(requestRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequest/all").accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        mockMvc.perform(asyncDispatch(response))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON));
+
+        // assert
+
+        verify(requestRepository, times(1)).streamAll();
+        String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedNdjson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_304_for_all_help_requests_when_etag_matches() throws Exception {
+
+        // arrange
+
+        HelpRequest first = HelpRequest.builder()
+            .id(1L)
+            .title("request 1")
+            .requester("user1")
+            .requestBody("body 1")
+            .requestDateTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+            .build();
+
+        when(requestRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+        // act
+
+        MvcResult response = mockMvc.perform(get("/api/helprequest/all"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn();
+        String etag = response.getResponse().getHeader("ETag");
+
+        MvcResult notModified = mockMvc.perform(get("/api/helprequest/all").header("If-None-Match", etag))
+            .andExpect(status().isNotModified())
+            .andReturn();
+
+        // assert
+
+        verify(requestRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+        assertEquals("", notModified.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_304_for_single_help_requests_when_etag_matches() throws Exception {
+
+        // arrange
+
+        HelpRequest first = HelpRequest.builder()
+            .id(1L)
+            .title("request 1")
+            .requester("user1")
+            .requestBody("body 1")
+            .requestDateTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+            .build();
+
+        when(requestRepository.findById(eq(1L))).thenReturn(Optional.of(first));
+
+        // act
+
+        MvcResult response = mockMvc.perform(get("/api/helprequest?id=1"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn();
+        String etag = response.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/helprequest?id=1").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+
+        // assert
+
+        verify(requestRepository, times(1)).findById(eq(1L));
+    }
+
+    @Test
+    public void logged_out_users_cannot_search() throws Exception {
+        mockMvc.perform(get("/api/helprequest/search?q=test"))
+            .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_search_help_requests() throws Exception {
+        // arrange
+        HelpRequest first = HelpRequest.builder().id(1L).title("test request 1").requestBody("test body 1").build();
+        HelpRequest second = HelpRequest.builder().id(2L).title("test request 2").requestBody("test body 2").build();
+
+        when(searchIndexService.search(HelpRequest.class, "test", 2)).thenReturn(List.of(2L, 3L, 1L));
+        when(requestRepository.findAllById(List.of(2L, 3L, 1L))).thenReturn(List.of(first, second));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequest/search?q=test&limit=2"))
+            .andExpect(status().isOk()).andReturn();
+
+        // assert: results keep the index's order, and rows deleted since are skipped
+        verify(searchIndexService, times(1)).search(HelpRequest.class, "test", 2);
+        String expectedJson = mapper.writeValueAsString(List.of(second, first));
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void search_limit_defaults_and_is_kept_within_bounds() throws Exception {
+        when(searchIndexService.search(eq(HelpRequest.class), eq("test"), anyInt())).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/helprequest/search?q=test")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/helprequest/search?q=test&limit=100000")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/helprequest/search?q=test&limit=0")).andExpect(status().isOk());
+
+        verify(searchIndexService, times(1)).search(HelpRequest.class, "test", SearchIndexService.DEFAULT_RESULTS);
+        verify(searchIndexService, times(1)).search(HelpRequest.class, "test", SearchIndexService.MAX_RESULTS);
+        verify(searchIndexService, times(1)).search(HelpRequest.class, "test", 1);
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_edit_a_request_with_if_match() throws Exception {
+        HelpRequest edited = HelpRequest.builder()
+                .title("test request 2")
+                .requester("userb")
+                .requestBody("test body 2")
+                .requestDateTime(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build();
+
+        String requestBody = mapper.writeValueAsString(edited);
+        when(requestRepository.updateIfVersion(eq(1L), eq(3L), any())).thenReturn(1);
+
+        MvcResult response = mockMvc.perform(
+                put("/api/helprequest?id=1")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(requestBody)
+                        .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // one conditional UPDATE, without reading the row first
+        verify(requestRepository, never()).findById(any());
+        verify(requestRepository, never()).save(any());
+        verify(outboxService, times(1)).record(HelpRequest.class, 1L, OutboxEvent.SAVED);
+        HelpRequest expected = HelpRequest.builder()
+                .title("test request 2")
+                .requester("userb")
+                .requestBody("test body 2")
+                .requestDateTime(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .id(1L)
+                .version(4L)
+                .build();
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_cannot_edit_a_request_with_a_stale_if_match() throws Exception {
+        HelpRequest edited = HelpRequest.builder()
+                .title("test request 2")
+                .requester("userb")
+                .requestBody("test body 2")
+                .requestDateTime(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build();
+
+        when(requestRepository.updateIfVersion(eq(1L), eq(3L), any())).thenReturn(0);
+        when(requestRepository.existsById(eq(1L))).thenReturn(true);
+
+        MvcResult response = mockMvc.perform(
+                put("/api/helprequest?id=1")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(mapper.writeValueAsString(edited))
+                        .with(csrf()))
+                .andExpect(status().isPreconditionFailed()).andReturn();
+
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("PreconditionFailedException", json.get("type"));
+        assertEquals("HelpRequest with id 1 has been changed since it was read", json.get("message"));
+        verify(outboxService, never()).record(HelpRequest.class, 1L, OutboxEvent.SAVED);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_only_some_fields_of_all_help_requests() throws Exception {
+
+        // arrange
+
+        List<Map<String, Object>> rows = List.of(Map.of("id", 1L, "title", "help 1"));
+        when(fieldProjectionService.select(eq(HelpRequest.class), eq(List.of("title")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1)))
+            .thenReturn(rows);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequest/all?fields=title"))
+            .andExpect(status().isOk())
+            .andReturn();
+        String etag = response.getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/helprequest/all?fields=title").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+
+        // assert
+
+        verify(requestRepository, never()).findAll();
+        verify(fieldProjectionService, times(1)).select(eq(HelpRequest.class), eq(List.of("title")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1));
+        String expectedJson = mapper.writeValueAsString(rows);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_some_fields_of_the_help_requests_after_a_cursor() throws Exception {
+
+        // arrange
+
+        List<Map<String, Object>> rows = List.of(Map.of("id", 3L, "title", "help 3"));
+        when(fieldProjectionService.select(eq(HelpRequest.class), eq(List.of("title")), eq(2L), eq(ApiController.MAX_PAGE_SIZE + 1)))
+            .thenReturn(rows);
+        when(fieldProjectionService.table(HelpRequest.class))
+            .thenReturn(new FieldProjectionService.Table("helprequest", "id", Map.of()));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequest/all?fields=title&after=2"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+            .andReturn();
+
+        // assert
+
+        String expectedJson = mapper.writeValueAsString(rows);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+}
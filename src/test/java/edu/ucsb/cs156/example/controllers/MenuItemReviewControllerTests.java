@@ -3,19 +3,29 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 // import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.services.MenuItemLeaderboardService;
+import edu.ucsb.cs156.example.services.MenuItemReviewStatsService;
+import edu.ucsb.cs156.example.services.OutboxService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 // import lombok.With;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.OutboxEvent;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.models.DiningCommonsReviewStats;
+import edu.ucsb.cs156.example.models.TopMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.services.FieldProjectionService;
 
 import java.util.ArrayList;
-// import java.util.Arrays;
+import java.util.Arrays;
 import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -27,15 +37,21 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import java.util.List;
+import java.util.stream.Stream;
 // import java.util.ResourceBundle.Control;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 // import static org.mockito.ArgumentMatchers.refEq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 
 @WebMvcTest(controllers = MenuItemReviewController.class)
 @Import(TestConfig.class)
@@ -47,6 +63,18 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        MenuItemReviewStatsService menuItemReviewStatsService;
+
+        @MockBean
+        OutboxService outboxService;
+
+        @MockBean
+        MenuItemLeaderboardService menuItemLeaderboardService;
+
+        @MockBean
+        FieldProjectionService fieldProjectionService;
+
         @Test
         public void logged_out_users_cannot_get_all_menu_item_reviews() throws Exception {
             mockMvc.perform(get("/api/menuitemreview/all"))
@@ -98,14 +126,14 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                 reviews.add(review1);
                 reviews.add(review2);
 
-            when(menuItemReviewRepository.findAll()).thenReturn(reviews);
+            when(menuItemReviewRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(reviews);
 
             // act
             MvcResult response = mockMvc.perform(get("/api/menuitemreview/all"))
                 .andExpect(status().isOk()).andReturn();
 
             // assert
-            verify(menuItemReviewRepository, times(1)).findAll();
+            verify(menuItemReviewRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
             String expectedJson = mapper.writeValueAsString(reviews);
             String responseString = response.getResponse().getContentAsString();
             assertEquals(expectedJson, responseString);
@@ -133,6 +161,8 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
             // assert
             verify(menuItemReviewRepository, times(1)).save(menuItemReview);
+            verify(outboxService, times(1)).record(MenuItemReview.class, 0L, OutboxEvent.REVIEW_ADDED,
+                new MenuItemReviewStatsService.Review(1L, 5));
             String expectedJson = mapper.writeValueAsString(menuItemReview);
             String responseString = response.getResponse().getContentAsString();
             assertEquals(expectedJson, responseString);
@@ -223,6 +253,10 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
             // assert
             verify(menuItemReviewRepository, times(1)).findById(1L);
             verify(menuItemReviewRepository, times(1)).save(menuItemReview2);
+            verify(outboxService, times(1)).record(MenuItemReview.class, 1L, OutboxEvent.REVIEW_REMOVED,
+                new MenuItemReviewStatsService.Review(1L, 5));
+            verify(outboxService, times(1)).record(MenuItemReview.class, 1L, OutboxEvent.REVIEW_ADDED,
+                new MenuItemReviewStatsService.Review(2L, 4));
             String responseString = response.getResponse().getContentAsString();
             assertEquals(requestBody, responseString);
         }
@@ -267,9 +301,11 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                 .stars(5)
                 .dateReviewed(LocalDateTime.of(2021, 5, 1, 12, 0, 0))
                 .comments("This is a test")
+                .version(3)
                 .build();
 
             when(menuItemReviewRepository.findById(eq(1L))).thenReturn(Optional.of(menuItemReview));
+            when(menuItemReviewRepository.deleteIfVersion(1L, 3L)).thenReturn(1);
 
             // act
             MvcResult response = mockMvc.perform(
@@ -279,12 +315,55 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
             // assert
             verify(menuItemReviewRepository, times(1)).findById(1L);
-            verify(menuItemReviewRepository, times(1)).delete(any());
+            verify(menuItemReviewRepository, times(1)).deleteIfVersion(1L, 3L);
+            verify(menuItemReviewRepository, never()).existsById(any());
+            verify(outboxService, times(1)).record(MenuItemReview.class, 1L, OutboxEvent.REVIEW_REMOVED,
+                new MenuItemReviewStatsService.Review(1L, 5));
 
             Map<String, Object> json = responseToJson(response);
             assertEquals("MenuItemReview with id 1 deleted", json.get("message"));
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_delete_of_a_review_deleted_meanwhile_records_nothing() throws Exception {
+            // arrange
+            MenuItemReview menuItemReview = MenuItemReview.builder().itemId(1L).stars(5).version(3).build();
+            when(menuItemReviewRepository.findById(eq(1L))).thenReturn(Optional.of(menuItemReview));
+            when(menuItemReviewRepository.deleteIfVersion(1L, 3L)).thenReturn(0);
+            when(menuItemReviewRepository.existsById(1L)).thenReturn(false);
+
+            // act
+            MvcResult response = mockMvc.perform(
+                delete("/api/menuitemreview?id=1")
+                    .with(csrf()))
+                .andExpect(status().isNotFound()).andReturn();
+
+            // assert
+            verify(outboxService, never()).record(any(), anyLong(), any(), any());
+            Map<String, Object> json = responseToJson(response);
+            assertEquals("MenuItemReview with id 1 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_delete_of_a_review_changed_meanwhile_gets_a_conflict() throws Exception {
+            // arrange
+            MenuItemReview menuItemReview = MenuItemReview.builder().itemId(1L).stars(5).version(3).build();
+            when(menuItemReviewRepository.findById(eq(1L))).thenReturn(Optional.of(menuItemReview));
+            when(menuItemReviewRepository.deleteIfVersion(1L, 3L)).thenReturn(0);
+            when(menuItemReviewRepository.existsById(1L)).thenReturn(true);
+
+            // act
+            mockMvc.perform(
+                delete("/api/menuitemreview?id=1")
+                    .with(csrf()))
+                .andExpect(status().isConflict());
+
+            // assert
+            verify(outboxService, never()).record(any(), anyLong(), any(), any());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_tries_to_delete_non_existant_menuitemreview() throws Exception {
@@ -302,4 +381,369 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
             Map<String, Object> json = responseToJson(response);
             assertEquals("MenuItemReview with id 1 not found", json.get("message"));
         }
-}
\ No newline at end of file
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_first_page_of_menu_item_reviews() throws Exception {
+
+            // arrange
+
+            MenuItemReview first = MenuItemReview.builder()
+                .Id(1L)
+                .itemId(1L)
+                .reviewerEmail("test1@ucsb.edu")
+                .stars(1)
+                .dateReviewed(LocalDateTime.of(2021, 5, 1, 12, 0, 0))
+                .comments("review 1")
+                .build();
+            MenuItemReview second = MenuItemReview.builder()
+                .Id(2L)
+                .itemId(2L)
+                .reviewerEmail("test2@ucsb.edu")
+                .stars(2)
+                .dateReviewed(LocalDateTime.of(2021, 5, 2, 12, 0, 0))
+                .comments("review 2")
+                .build();
+            MenuItemReview third = MenuItemReview.builder()
+                .Id(3L)
+                .itemId(3L)
+                .reviewerEmail("test3@ucsb.edu")
+                .stars(3)
+                .dateReviewed(LocalDateTime.of(2021, 5, 3, 12, 0, 0))
+                .comments("review 3")
+                .build();
+
+            when(menuItemReviewRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, 3))))
+                .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+            // act
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/all?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "2"))
+                .andReturn();
+
+            // assert
+
+            verify(menuItemReviewRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, 3)));
+            String expectedJson = mapper.writeValueAsString(Arrays.asList(first, second));
+            String responseString = response.getResponse().getContentAsString();
+            assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_last_page_of_menu_item_reviews() throws Exception {
+
+            // arrange
+
+            MenuItemReview third = MenuItemReview.builder()
+                .Id(3L)
+                .itemId(3L)
+                .reviewerEmail("test3@ucsb.edu")
+                .stars(3)
+                .dateReviewed(LocalDateTime.of(2021, 5, 3, 12, 0, 0))
+                .comments("review 3")
+                .build();
+
+            when(menuItemReviewRepository.findPageAfter(eq(2L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1))))
+                .thenReturn(new ArrayList<>(Arrays.asList(third)));
+
+            // act
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/all?after=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+            // assert
+
+            verify(menuItemReviewRepository, times(1)).findPageAfter(eq(2L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+            String expectedJson = mapper.writeValueAsString(Arrays.asList(third));
+            String responseString = response.getResponse().getContentAsString();
+            assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_all_menu_item_reviews_as_ndjson() throws Exception {
+
+            // arrange
+
+            MenuItemReview first = MenuItemReview.builder()
+                .Id(1L)
+                .itemId(1L)
+                .reviewerEmail("test1@ucsb.edu")
+                .stars(1)
+                .dateReviewed(LocalDateTime.of(2021, 5, 1, 12, 0, 0))
+                .comments("review 1")
+                .build();
+            MenuItemReview second = MenuItemReview.builder()
+                .Id(2L)
+                .itemId(2L)
+                .reviewerEmail("test2@ucsb.edu")
+                .stars(2)
+                .dateReviewed(LocalDateTime.of(2021, 5, 2, 12, 0, 0))
+                .comments("review 2")
+                .build();
+
+            when(menuItemReviewRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+            // act
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/all").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+            mockMvc.perform(asyncDispatch(response))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON));
+
+            // assert
+
+            verify(menuItemReviewRepository, times(1)).streamAll();
+            String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+            String responseString = response.getResponse().getContentAsString();
+            assertEquals(expectedNdjson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_304_for_all_menu_item_reviews_when_etag_matches() throws Exception {
+
+            // arrange
+
+            MenuItemReview first = MenuItemReview.builder()
+                .Id(1L)
+                .itemId(1L)
+                .reviewerEmail("test1@ucsb.edu")
+                .stars(1)
+                .dateReviewed(LocalDateTime.of(2021, 5, 1, 12, 0, 0))
+                .comments("review 1")
+                .build();
+
+            when(menuItemReviewRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+            // act
+
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/all"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn();
+            String etag = response.getResponse().getHeader("ETag");
+
+            MvcResult notModified = mockMvc.perform(get("/api/menuitemreview/all").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andReturn();
+
+            // assert
+
+            verify(menuItemReviewRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+            assertEquals("", notModified.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_304_for_single_menu_item_reviews_when_etag_matches() throws Exception {
+
+            // arrange
+
+            MenuItemReview first = MenuItemReview.builder()
+                .Id(1L)
+                .itemId(1L)
+                .reviewerEmail("test1@ucsb.edu")
+                .stars(1)
+                .dateReviewed(LocalDateTime.of(2021, 5, 1, 12, 0, 0))
+                .comments("review 1")
+                .build();
+
+            when(menuItemReviewRepository.findById(eq(1L))).thenReturn(Optional.of(first));
+
+            // act
+
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview?id=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn();
+            String etag = response.getResponse().getHeader("ETag");
+
+            mockMvc.perform(get("/api/menuitemreview?id=1").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+            // assert
+
+            verify(menuItemReviewRepository, times(1)).findById(eq(1L));
+        }
+
+        @Test
+        public void logged_out_users_cannot_get_menu_item_stats() throws Exception {
+            mockMvc.perform(get("/api/menuitemreview/stats?itemId=1"))
+                .andExpect(status().isForbidden());
+        }
+
+        @WithMockUser(roles = {"USER"})
+        @Test
+        public void logged_in_user_can_get_stats_for_a_menu_item() throws Exception {
+            // arrange
+            MenuItemReviewStats stats = MenuItemReviewStats.builder()
+                .itemId(1L)
+                .reviewCount(4)
+                .totalStars(14)
+                .build();
+
+            when(menuItemReviewStatsService.statsForMenuItem(1L)).thenReturn(stats);
+
+            // act
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/stats?itemId=1"))
+                .andExpect(status().isOk()).andReturn();
+
+            // assert
+            verify(menuItemReviewStatsService, times(1)).statsForMenuItem(1L);
+            Map<String, Object> json = responseToJson(response);
+            assertEquals(4, json.get("reviewCount"));
+            assertEquals(3.5, json.get("averageStars"));
+        }
+
+        @WithMockUser(roles = {"USER"})
+        @Test
+        public void logged_in_user_can_get_stats_for_a_dining_commons() throws Exception {
+            // arrange
+            DiningCommonsReviewStats stats = DiningCommonsReviewStats.builder()
+                .diningCommonsCode("ortega")
+                .reviewCount(3)
+                .totalStars(12)
+                .build();
+
+            when(menuItemReviewStatsService.statsForDiningCommons("ortega")).thenReturn(stats);
+
+            // act
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/stats/diningcommons?diningCommonsCode=ortega"))
+                .andExpect(status().isOk()).andReturn();
+
+            // assert
+            verify(menuItemReviewStatsService, times(1)).statsForDiningCommons("ortega");
+            String expectedJson = mapper.writeValueAsString(stats);
+            String responseString = response.getResponse().getContentAsString();
+            assertEquals(expectedJson, responseString);
+        }
+
+        @Test
+        public void logged_out_users_cannot_get_top_menu_items() throws Exception {
+            mockMvc.perform(get("/api/menuitemreview/top"))
+                .andExpect(status().isForbidden());
+        }
+
+        @WithMockUser(roles = {"USER"})
+        @Test
+        public void logged_in_user_can_get_top_menu_items_of_a_dining_commons() throws Exception {
+            // arrange
+            UCSBDiningCommonsMenuItem menuItem = UCSBDiningCommonsMenuItem.builder()
+                .Id(7L)
+                .diningCommonsCode("ortega")
+                .name("Pizza")
+                .station("Pizza")
+                .build();
+            ArrayList<TopMenuItem> top = new ArrayList<>();
+            top.add(TopMenuItem.builder().menuItem(menuItem).reviewCount(2).averageStars(4.5).build());
+
+            when(menuItemLeaderboardService.top("ortega", 3)).thenReturn(top);
+
+            // act
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/top?diningCommonsCode=ortega&n=3"))
+                .andExpect(status().isOk()).andReturn();
+
+            // assert
+            verify(menuItemLeaderboardService, times(1)).top("ortega", 3);
+            String expectedJson = mapper.writeValueAsString(top);
+            String responseString = response.getResponse().getContentAsString();
+            assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = {"USER"})
+        @Test
+        public void top_menu_items_defaults_to_ten_of_all_dining_commons() throws Exception {
+            mockMvc.perform(get("/api/menuitemreview/top"))
+                .andExpect(status().isOk());
+
+            verify(menuItemLeaderboardService, times(1)).top(null, MenuItemReviewController.DEFAULT_TOP_MENU_ITEMS);
+        }
+
+        @WithMockUser(roles = {"USER"})
+        @Test
+        public void top_menu_items_count_is_kept_within_bounds() throws Exception {
+            mockMvc.perform(get("/api/menuitemreview/top?n=100000"))
+                .andExpect(status().isOk());
+            mockMvc.perform(get("/api/menuitemreview/top?n=0"))
+                .andExpect(status().isOk());
+
+            verify(menuItemLeaderboardService, times(1)).top(null, MenuItemReviewController.MAX_TOP_MENU_ITEMS);
+            verify(menuItemLeaderboardService, times(1)).top(null, 1);
+        }
+
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_menuitemreview_with_a_matching_if_match() throws Exception {
+            MenuItemReview existing = MenuItemReview.builder().Id(1L).itemId(1L).stars(5).version(3L).build();
+            MenuItemReview edited = MenuItemReview.builder().itemId(2L).stars(4).build();
+            when(menuItemReviewRepository.findById(eq(1L))).thenReturn(Optional.of(existing));
+
+            mockMvc.perform(
+                put("/api/menuitemreview?id=1")
+                    .header("If-Match", "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+                .andExpect(status().isOk());
+
+            verify(menuItemReviewRepository, times(1)).save(existing);
+            verify(outboxService, times(1)).record(MenuItemReview.class, 1L, OutboxEvent.REVIEW_ADDED,
+                new MenuItemReviewStatsService.Review(2L, 4));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_menuitemreview_with_a_stale_if_match() throws Exception {
+            MenuItemReview existing = MenuItemReview.builder().Id(1L).itemId(1L).stars(5).version(4L).build();
+            MenuItemReview edited = MenuItemReview.builder().itemId(2L).stars(4).build();
+            when(menuItemReviewRepository.findById(eq(1L))).thenReturn(Optional.of(existing));
+
+            MvcResult response = mockMvc.perform(
+                put("/api/menuitemreview?id=1")
+                    .header("If-Match", "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+                .andExpect(status().isPreconditionFailed()).andReturn();
+
+            verify(menuItemReviewRepository, never()).save(any());
+            verify(outboxService, never()).record(any(), anyLong(), any(), any());
+            Map<String, Object> json = responseToJson(response);
+            assertEquals("MenuItemReview with id 1 has been changed since it was read", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_only_some_fields_of_all_menu_item_reviews() throws Exception {
+
+            // arrange
+
+            List<Map<String, Object>> rows = List.of(Map.of("id", 1L, "stars", 5));
+            when(fieldProjectionService.select(eq(MenuItemReview.class), eq(List.of("stars")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1)))
+                .thenReturn(rows);
+
+            // act
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/all?fields=stars"))
+                .andExpect(status().isOk())
+                .andReturn();
+            String etag = response.getResponse().getHeader("ETag");
+            mockMvc.perform(get("/api/menuitemreview/all?fields=stars").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+            // assert
+
+            verify(menuItemReviewRepository, never()).findAll();
+            verify(fieldProjectionService, times(1)).select(eq(MenuItemReview.class), eq(List.of("stars")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1));
+            String expectedJson = mapper.writeValueAsString(rows);
+            String responseString = response.getResponse().getContentAsString();
+            assertEquals(expectedJson, responseString);
+        }
+}
@@ -3,18 +3,27 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.OutboxEvent;
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
 import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+import edu.ucsb.cs156.example.services.ChangeFeedService;
+import edu.ucsb.cs156.example.services.OutboxService;
+import edu.ucsb.cs156.example.services.FieldProjectionService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.test.web.servlet.MvcResult;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -24,24 +33,38 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 
 @WebMvcTest(RecommendationRequestController.class)
 @Import(TestConfig.class)
+@RecordApplicationEvents
 public class RecomendationRequestControllerTests extends ControllerTestCase{
     
     @MockBean
     RecommendationRequestRepository recommendationRequestRepository;
 
+    @MockBean
+    OutboxService outboxService;
+
     @MockBean
     UserRepository userRepository;
 
+    @MockBean
+    FieldProjectionService fieldProjectionService;
+
+    @Autowired
+    ApplicationEvents applicationEvents;
+
     // Tests for GET
     @Test
     public void logged_out_users_cannot_get_all() throws Exception {
@@ -86,7 +109,7 @@ public class RecomendationRequestControllerTests extends ControllerTestCase{
                 ArrayList<RecommendationRequest> reqs = new ArrayList<>();
                 reqs.addAll(Arrays.asList(req1, req2));
 
-                when(recommendationRequestRepository.findAll()).thenReturn(reqs);
+                when(recommendationRequestRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(reqs);
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/recommendationrequest/all"))
@@ -94,7 +117,7 @@ public class RecomendationRequestControllerTests extends ControllerTestCase{
 
                 // assert
 
-                verify(recommendationRequestRepository, times(1)).findAll();
+                verify(recommendationRequestRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
                 String expectedJson = mapper.writeValueAsString(reqs);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -194,6 +217,9 @@ public class RecomendationRequestControllerTests extends ControllerTestCase{
                         .andReturn();
 
         verify(recommendationRequestRepository, times(1)).save(req);
+        verify(outboxService, times(1)).record(RecommendationRequest.class, 0L, OutboxEvent.SAVED);
+        assertEquals(List.of("RecommendationRequest"),
+            applicationEvents.stream(ChangeFeedService.Change.class).map(ChangeFeedService.Change::table).toList());
         String expectedJson = mapper.writeValueAsString(req);
         String responseString = response.getResponse().getContentAsString();
 
@@ -243,6 +269,7 @@ public class RecomendationRequestControllerTests extends ControllerTestCase{
         
             verify(recommendationRequestRepository, times(1)).findById(57L);
             verify(recommendationRequestRepository, times(1)).save(Ereq); // should be saved with correct user
+            verify(outboxService, times(1)).record(RecommendationRequest.class, 57L, OutboxEvent.SAVED);
             String responseString = response.getResponse().getContentAsString();
             assertEquals(requestBody, responseString);
 
@@ -289,28 +316,15 @@ public class RecomendationRequestControllerTests extends ControllerTestCase{
     @WithMockUser(roles = { "ADMIN", "USER" })
     @Test
     public void admin_can_delete_a_date() throws Exception {
+        when(recommendationRequestRepository.deleteRow(eq(15L))).thenReturn(1);
 
-        LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
-        LocalDateTime ldt2 = LocalDateTime.parse("2022-02-03T00:00:00");
-
-        RecommendationRequest req = RecommendationRequest.builder()
-                        .requesterEmail("test1@")
-                        .professorEmail("test2@")
-                        .explanation("testexplanation")
-                        .dateRequested(ldt1)
-                        .dateNeeded(ldt2)
-                        .done(false)
-                        .build();
-
-        when(recommendationRequestRepository.findById(eq(15L))).thenReturn(Optional.of(req));
-
-            
         MvcResult response = mockMvc.perform(delete("/api/recommendationrequest?id=15")
                                                 .with(csrf()))
                                 .andExpect(status().isOk()).andReturn();
 
-        verify(recommendationRequestRepository, times(1)).findById(15L);
-        verify(recommendationRequestRepository, times(1)).delete(any());
+        verify(recommendationRequestRepository, times(1)).deleteRow(15L);
+        verify(recommendationRequestRepository, never()).findById(any());
+        verify(outboxService, times(1)).record(RecommendationRequest.class, 15L, OutboxEvent.DELETED);
 
         Map<String, Object> json = responseToJson(response);
         assertEquals("RecommendationRequest with id 15 deleted", json.get("message"));
@@ -321,7 +335,7 @@ public class RecomendationRequestControllerTests extends ControllerTestCase{
         @Test
         public void admin_tries_to_delete_non_existant_ucsbdate_and_gets_right_error_message() throws Exception {
 
-            when(recommendationRequestRepository.findById(eq(15L))).thenReturn(Optional.empty());
+            when(recommendationRequestRepository.deleteRow(eq(15L))).thenReturn(0);
 
             
             MvcResult response = mockMvc.perform(
@@ -330,7 +344,7 @@ public class RecomendationRequestControllerTests extends ControllerTestCase{
                             .andExpect(status().isNotFound()).andReturn();
 
             
-            verify(recommendationRequestRepository, times(1)).findById(15L);
+            verify(recommendationRequestRepository, times(1)).deleteRow(15L);
             Map<String, Object> json = responseToJson(response);
             assertEquals("RecommendationRequest with id 15 not found", json.get("message"));
 
@@ -339,4 +353,298 @@ public class RecomendationRequestControllerTests extends ControllerTestCase{
 
         }
 
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_first_page_of_recommendation_requests() throws Exception {
+
+        // arrange
+
+        RecommendationRequest first = RecommendationRequest.builder()
+                .Id(1L)
+                .requesterEmail("student1@ucsb.edu")
+                .professorEmail("prof1@ucsb.edu")
+                .explanation("explanation 1")
+                .dateRequested(LocalDateTime.parse("2022-01-01T00:00:00"))
+                .dateNeeded(LocalDateTime.parse("2022-02-01T00:00:00"))
+                .done(false)
+                .build();
+        RecommendationRequest second = RecommendationRequest.builder()
+                .Id(2L)
+                .requesterEmail("student2@ucsb.edu")
+                .professorEmail("prof2@ucsb.edu")
+                .explanation("explanation 2")
+                .dateRequested(LocalDateTime.parse("2022-01-02T00:00:00"))
+                .dateNeeded(LocalDateTime.parse("2022-02-02T00:00:00"))
+                .done(false)
+                .build();
+        RecommendationRequest third = RecommendationRequest.builder()
+                .Id(3L)
+                .requesterEmail("student3@ucsb.edu")
+                .professorEmail("prof3@ucsb.edu")
+                .explanation("explanation 3")
+                .dateRequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .dateNeeded(LocalDateTime.parse("2022-02-03T00:00:00"))
+                .done(false)
+                .build();
+
+        when(recommendationRequestRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, 3))))
+                .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequest/all?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "2"))
+                .andReturn();
+
+        // assert
+
+        verify(recommendationRequestRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, 3)));
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(first, second));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_last_page_of_recommendation_requests() throws Exception {
+
+        // arrange
+
+        RecommendationRequest third = RecommendationRequest.builder()
+                .Id(3L)
+                .requesterEmail("student3@ucsb.edu")
+                .professorEmail("prof3@ucsb.edu")
+                .explanation("explanation 3")
+                .dateRequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .dateNeeded(LocalDateTime.parse("2022-02-03T00:00:00"))
+                .done(false)
+                .build();
+
+        when(recommendationRequestRepository.findPageAfter(eq(2L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1))))
+                .thenReturn(new ArrayList<>(Arrays.asList(third)));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequest/all?after=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+        // assert
+
+        verify(recommendationRequestRepository, times(1)).findPageAfter(eq(2L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(third));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_export_all_recommendation_requests_as_ndjson() throws Exception {
+
+        // arrange
+
+        RecommendationRequest first = RecommendationRequest.builder()
+                .Id(1L)
+                .requesterEmail("student1@ucsb.edu")
+                .professorEmail("prof1@ucsb.edu")
+                .explanation("explanation 1")
+                .dateRequested(LocalDateTime.parse("2022-01-01T00:00:00"))
+                .dateNeeded(LocalDateTime.parse("2022-02-01T00:00:00"))
+                .done(false)
+                .build();
+        RecommendationRequest second = RecommendationRequest.builder()
+                .Id(2L)
+                .requesterEmail("student2@ucsb.edu")
+                .professorEmail("prof2@ucsb.edu")
+                .explanation("explanation 2")
+                .dateRequested(LocalDateTime.parse("2022-01-02T00:00:00"))
+                .dateNeeded(LocalDateTime.parse("2022-02-02T00:00:00"))
+                .done(false)
+                .build();
+
+        when(recommendationRequestRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequest/all").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(response))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON));
+
+        // assert
+
+        verify(recommendationRequestRepository, times(1)).streamAll();
+        String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedNdjson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_304_for_all_recommendation_requests_when_etag_matches() throws Exception {
+
+        // arrange
+
+        RecommendationRequest first = RecommendationRequest.builder()
+                .Id(1L)
+                .requesterEmail("student1@ucsb.edu")
+                .professorEmail("prof1@ucsb.edu")
+                .explanation("explanation 1")
+                .dateRequested(LocalDateTime.parse("2022-01-01T00:00:00"))
+                .dateNeeded(LocalDateTime.parse("2022-02-01T00:00:00"))
+                .done(false)
+                .build();
+
+        when(recommendationRequestRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+        // act
+
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequest/all"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn();
+        String etag = response.getResponse().getHeader("ETag");
+
+        MvcResult notModified = mockMvc.perform(get("/api/recommendationrequest/all").header("If-None-Match", etag))
+            .andExpect(status().isNotModified())
+            .andReturn();
+
+        // assert
+
+        verify(recommendationRequestRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+        assertEquals("", notModified.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_304_for_single_recommendation_requests_when_etag_matches() throws Exception {
+
+        // arrange
+
+        RecommendationRequest first = RecommendationRequest.builder()
+                .Id(1L)
+                .requesterEmail("student1@ucsb.edu")
+                .professorEmail("prof1@ucsb.edu")
+                .explanation("explanation 1")
+                .dateRequested(LocalDateTime.parse("2022-01-01T00:00:00"))
+                .dateNeeded(LocalDateTime.parse("2022-02-01T00:00:00"))
+                .done(false)
+                .build();
+
+        when(recommendationRequestRepository.findById(eq(1L))).thenReturn(Optional.of(first));
+
+        // act
+
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequest?id=1"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn();
+        String etag = response.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/recommendationrequest?id=1").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+
+        // assert
+
+        verify(recommendationRequestRepository, times(1)).findById(eq(1L));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_edit_a_recommendation_request_with_if_match() throws Exception {
+        RecommendationRequest edited = RecommendationRequest.builder()
+                .requesterEmail("Etest1@")
+                .professorEmail("Etest2@")
+                .explanation("Etestexplanation")
+                .dateRequested(LocalDateTime.parse("2023-01-03T00:00:00"))
+                .dateNeeded(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .done(true)
+                .build();
+
+        String requestBody = mapper.writeValueAsString(edited);
+        when(recommendationRequestRepository.updateIfVersion(eq(57L), eq(3L), any())).thenReturn(1);
+
+        MvcResult response = mockMvc.perform(
+                put("/api/recommendationrequest?id=57")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(requestBody)
+                        .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // one conditional UPDATE, without reading the row first
+        verify(recommendationRequestRepository, never()).findById(any());
+        verify(recommendationRequestRepository, never()).save(any());
+        verify(outboxService, times(1)).record(RecommendationRequest.class, 57L, OutboxEvent.SAVED);
+        RecommendationRequest expected = RecommendationRequest.builder()
+                .requesterEmail("Etest1@")
+                .professorEmail("Etest2@")
+                .explanation("Etestexplanation")
+                .dateRequested(LocalDateTime.parse("2023-01-03T00:00:00"))
+                .dateNeeded(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .done(true)
+                .Id(57L)
+                .version(4L)
+                .build();
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_cannot_edit_a_recommendation_request_with_a_stale_if_match() throws Exception {
+        RecommendationRequest edited = RecommendationRequest.builder()
+                .requesterEmail("Etest1@")
+                .professorEmail("Etest2@")
+                .explanation("Etestexplanation")
+                .dateRequested(LocalDateTime.parse("2023-01-03T00:00:00"))
+                .dateNeeded(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .done(true)
+                .build();
+
+        when(recommendationRequestRepository.updateIfVersion(eq(57L), eq(3L), any())).thenReturn(0);
+        when(recommendationRequestRepository.existsById(eq(57L))).thenReturn(true);
+
+        MvcResult response = mockMvc.perform(
+                put("/api/recommendationrequest?id=57")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(mapper.writeValueAsString(edited))
+                        .with(csrf()))
+                .andExpect(status().isPreconditionFailed()).andReturn();
+
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("PreconditionFailedException", json.get("type"));
+        assertEquals("RecommendationRequest with id 57 has been changed since it was read", json.get("message"));
+        verify(outboxService, never()).record(RecommendationRequest.class, 57L, OutboxEvent.SAVED);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_only_some_fields_of_all_recommendation_requests() throws Exception {
+
+                // arrange
+
+                List<Map<String, Object>> rows = List.of(Map.of("id", 1L, "professorEmail", "prof@ucsb.edu"));
+                when(fieldProjectionService.select(eq(RecommendationRequest.class), eq(List.of("professorEmail")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1)))
+                                .thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/recommendationrequest/all?fields=professorEmail"))
+                                .andExpect(status().isOk())
+                                .andReturn();
+                String etag = response.getResponse().getHeader("ETag");
+                mockMvc.perform(get("/api/recommendationrequest/all?fields=professorEmail").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified());
+
+                // assert
+
+                verify(recommendationRequestRepository, never()).findAll();
+                verify(fieldProjectionService, times(1)).select(eq(RecommendationRequest.class), eq(List.of("professorEmail")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1));
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+    }
 }
@@ -3,19 +3,29 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.config.CacheConfig;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.FieldProjectionService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultMatcher;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -24,13 +34,21 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import java.util.List;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 
 @WebMvcTest(controllers = UCSBDatesController.class)
 @Import(TestConfig.class)
@@ -42,6 +60,12 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        FieldProjectionService fieldProjectionService;
+
+        @Autowired
+        CacheManager cacheManager;
+
         // Authorization tests for /api/ucsbdates/admin/all
 
         @Test
@@ -152,7 +176,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 ArrayList<UCSBDate> expectedDates = new ArrayList<>();
                 expectedDates.addAll(Arrays.asList(ucsbDate1, ucsbDate2));
 
-                when(ucsbDateRepository.findAll()).thenReturn(expectedDates);
+                when(ucsbDateRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(expectedDates);
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/ucsbdates/all"))
@@ -160,7 +184,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
                 // assert
 
-                verify(ucsbDateRepository, times(1)).findAll();
+                verify(ucsbDateRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
                 String expectedJson = mapper.writeValueAsString(expectedDates);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -196,18 +220,44 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
-        public void admin_can_delete_a_date() throws Exception {
+        public void the_cached_dates_are_only_evicted_once_a_post_commits() throws Exception {
                 // arrange
 
-                LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
-
                 UCSBDate ucsbDate1 = UCSBDate.builder()
                                 .name("firstDayOfClasses")
                                 .quarterYYYYQ("20222")
-                                .localDateTime(ldt1)
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
                                 .build();
 
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.of(ucsbDate1));
+                when(ucsbDateRepository.save(eq(ucsbDate1))).thenReturn(ucsbDate1);
+                Cache cache = cacheManager.getCache(CacheConfig.UCSB_DATES);
+                cache.put("page:0:1001", List.of());
+
+                // act and assert
+                TransactionSynchronizationManager.initSynchronization();
+                try {
+                        mockMvc.perform(
+                                        post("/api/ucsbdates/post?name=firstDayOfClasses&quarterYYYYQ=20222&localDateTime=2022-01-03T00:00:00")
+                                                        .with(csrf()))
+                                        .andExpect(status().isOk());
+                        assertNotNull(cache.get("page:0:1001"));
+
+                        TransactionSynchronizationUtils.triggerAfterCommit();
+                        assertNull(cache.get("page:0:1001"));
+                } finally {
+                        TransactionSynchronizationManager.clearSynchronization();
+                }
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_delete_a_date() throws Exception {
+                // arrange
+
+                LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
+
+
+                when(ucsbDateRepository.deleteRow(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -216,8 +266,8 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
-                verify(ucsbDateRepository, times(1)).delete(any());
+                verify(ucsbDateRepository, times(1)).deleteRow(15L);
+                verify(ucsbDateRepository, never()).findById(any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 deleted", json.get("message"));
@@ -229,7 +279,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(ucsbDateRepository.deleteRow(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -238,7 +288,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
+                verify(ucsbDateRepository, times(1)).deleteRow(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 not found", json.get("message"));
         }
@@ -315,4 +365,569 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDate with id 67 not found", json.get("message"));
 
         }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_first_page_of_ucsbdates() throws Exception {
+
+                // arrange
+
+                UCSBDate first = UCSBDate.builder()
+                                .id(1L)
+                                .name("date1")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+                                .build();
+                UCSBDate second = UCSBDate.builder()
+                                .id(2L)
+                                .name("date2")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-02T00:00:00"))
+                                .build();
+                UCSBDate third = UCSBDate.builder()
+                                .id(3L)
+                                .name("date3")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all?limit=2"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "2"))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, 3)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(first, second));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_last_page_of_ucsbdates() throws Exception {
+
+                // arrange
+
+                UCSBDate third = UCSBDate.builder()
+                                .id(3L)
+                                .name("date3")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.findPageAfter(eq(2L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(third)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all?after=2"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findPageAfter(eq(2L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(third));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void page_size_is_capped_at_max_page_size() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/all?limit=5000"))
+                                .andExpect(status().isOk());
+
+                verify(ucsbDateRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void page_size_is_at_least_one() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/all?limit=0"))
+                                .andExpect(status().isOk());
+
+                verify(ucsbDateRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, 2)));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_all_ucsbdates_as_ndjson() throws Exception {
+
+                // arrange
+
+                UCSBDate first = UCSBDate.builder()
+                                .id(1L)
+                                .name("date1")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+                                .build();
+                UCSBDate second = UCSBDate.builder()
+                                .id(2L)
+                                .name("date2")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-02T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                mockMvc.perform(asyncDispatch(response))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON));
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).streamAll();
+                String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedNdjson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_304_for_all_ucsbdates_when_etag_matches() throws Exception {
+
+                // arrange
+
+                UCSBDate first = UCSBDate.builder()
+                                .id(1L)
+                                .name("date1")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+                // act
+
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().exists("ETag"))
+                    .andReturn();
+                String etag = response.getResponse().getHeader("ETag");
+
+                MvcResult notModified = mockMvc.perform(get("/api/ucsbdates/all").header("If-None-Match", etag))
+                    .andExpect(status().isNotModified())
+                    .andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+                assertEquals("", notModified.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_304_for_single_ucsbdates_when_etag_matches() throws Exception {
+
+                // arrange
+
+                UCSBDate first = UCSBDate.builder()
+                                .id(1L)
+                                .name("date1")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.findById(eq(1L))).thenReturn(Optional.of(first));
+
+                // act
+
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates?id=1"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().exists("ETag"))
+                    .andReturn();
+                String etag = response.getResponse().getHeader("ETag");
+
+                mockMvc.perform(get("/api/ucsbdates?id=1").header("If-None-Match", etag))
+                    .andExpect(status().isNotModified());
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findById(eq(1L));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk_ucsbdates() throws Exception {
+                mockMvc.perform(post("/api/ucsbdates/bulk").contentType(MediaType.APPLICATION_JSON).content("[]").with(csrf()))
+                    .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_bulk_ucsbdates() throws Exception {
+
+                // arrange
+
+                UCSBDate first = UCSBDate.builder()
+                                .id(1L)
+                                .name("date1")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+                                .build();
+                UCSBDate second = UCSBDate.builder()
+                                .id(2L)
+                                .name("date2")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-02T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(Arrays.asList(first, second));
+                first.setId(0L);
+                second.setId(0L);
+
+                when(ucsbDateRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+                // act
+
+                MvcResult response = mockMvc.perform(
+                    post("/api/ucsbdates/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(requestBody)
+                        .with(csrf()))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).saveAll(eq(Arrays.asList(first, second)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(first, second));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_put_bulk_ucsbdates() throws Exception {
+
+                // arrange
+
+                UCSBDate firstOrig = UCSBDate.builder()
+                                .id(3L)
+                                .name("date3")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+                firstOrig.setId(1L);
+                UCSBDate secondOrig = UCSBDate.builder()
+                                .id(4L)
+                                .name("date4")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-04T00:00:00"))
+                                .build();
+                secondOrig.setId(2L);
+
+                UCSBDate firstEdited = UCSBDate.builder()
+                                .id(1L)
+                                .name("date1")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+                                .build();
+                UCSBDate secondEdited = UCSBDate.builder()
+                                .id(2L)
+                                .name("date2")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-02T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(Arrays.asList(firstEdited, secondEdited));
+
+                when(ucsbDateRepository.findAllById(eq(Arrays.asList(1L, 2L)))).thenReturn(Arrays.asList(secondOrig, firstOrig));
+
+                // act
+
+                MvcResult response = mockMvc.perform(
+                    put("/api/ucsbdates/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(requestBody)
+                        .with(csrf()))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).saveAll(eq(Arrays.asList(firstEdited, secondEdited)));
+                assertEquals(requestBody, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_put_bulk_ucsbdates_when_one_has_changed_since_it_was_read() throws Exception {
+
+                // arrange
+
+                UCSBDate firstOrig = UCSBDate.builder().id(1L).name("date3").quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00")).version(1L).build();
+                UCSBDate secondOrig = UCSBDate.builder().id(2L).name("date4").quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-04T00:00:00")).version(2L).build();
+
+                UCSBDate firstEdited = UCSBDate.builder().id(1L).name("date1").quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-01T00:00:00")).version(1L).build();
+                UCSBDate secondEdited = UCSBDate.builder().id(2L).name("date2").quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-02T00:00:00")).version(1L).build();
+
+                when(ucsbDateRepository.findAllById(eq(Arrays.asList(1L, 2L)))).thenReturn(Arrays.asList(secondOrig, firstOrig));
+
+                // act
+
+                MvcResult response = mockMvc.perform(
+                    put("/api/ucsbdates/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(mapper.writeValueAsString(Arrays.asList(firstEdited, secondEdited)))
+                        .with(csrf()))
+                    .andExpect(status().isPreconditionFailed())
+                    .andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDate with id 2 has been changed since it was read", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_put_bulk_ucsbdates_when_one_does_not_exist() throws Exception {
+
+                // arrange
+
+                UCSBDate first = UCSBDate.builder()
+                                .id(1L)
+                                .name("date1")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+                                .build();
+                UCSBDate second = UCSBDate.builder()
+                                .id(2L)
+                                .name("date2")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-02T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(Arrays.asList(first, second));
+
+                when(ucsbDateRepository.findAllById(eq(Arrays.asList(1L, 2L)))).thenReturn(Arrays.asList(first));
+
+                // act
+
+                MvcResult response = mockMvc.perform(
+                    put("/api/ucsbdates/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(requestBody)
+                        .with(csrf()))
+                    .andExpect(status().isNotFound())
+                    .andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, never()).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDate with id 2 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_bulk_ucsbdates() throws Exception {
+
+                // arrange
+
+                UCSBDate first = UCSBDate.builder()
+                                .id(1L)
+                                .name("date1")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+                                .build();
+                UCSBDate second = UCSBDate.builder()
+                                .id(2L)
+                                .name("date2")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-02T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.findAllById(eq(Arrays.asList(1L, 2L)))).thenReturn(Arrays.asList(first, second));
+
+                // act
+
+                MvcResult response = mockMvc.perform(
+                    delete("/api/ucsbdates/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1,2]")
+                        .with(csrf()))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).deleteRows(eq(Arrays.asList(1L, 2L)));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 UCSBDates deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_delete_bulk_ucsbdates_when_one_does_not_exist() throws Exception {
+
+                // arrange
+
+                when(ucsbDateRepository.findAllById(eq(Arrays.asList(1L, 2L)))).thenReturn(new ArrayList<>());
+
+                // act
+
+                MvcResult response = mockMvc.perform(
+                    delete("/api/ucsbdates/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1,2]")
+                        .with(csrf()))
+                    .andExpect(status().isNotFound())
+                    .andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, never()).deleteRows(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDate with id 1 not found", json.get("message"));
+        }
+
+
+        private UCSBDate editedDate() {
+                return UCSBDate.builder()
+                                .name("firstDayOfFestivus")
+                                .quarterYYYYQ("20232")
+                                .localDateTime(LocalDateTime.parse("2023-01-03T00:00:00"))
+                                .build();
+        }
+
+        private MvcResult putDate(String ifMatch, ResultMatcher expectedStatus) throws Exception {
+                return mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .header("If-Match", ifMatch)
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(editedDate()))
+                                                .with(csrf()))
+                                .andExpect(expectedStatus).andReturn();
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_ucsbdate_with_if_match() throws Exception {
+                when(ucsbDateRepository.updateIfVersion(eq(67L), eq(3L), any())).thenReturn(1);
+
+                MvcResult response = putDate("\"3\"", status().isOk());
+
+                // one conditional UPDATE, without reading the row first
+                verify(ucsbDateRepository, times(1)).updateIfVersion(eq(67L), eq(3L), any());
+                verify(ucsbDateRepository, never()).findById(any());
+                verify(ucsbDateRepository, never()).save(any());
+                UCSBDate expected = editedDate();
+                expected.setId(67L);
+                expected.setVersion(4L);
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_ucsbdate_with_a_stale_if_match() throws Exception {
+                when(ucsbDateRepository.updateIfVersion(eq(67L), eq(3L), any())).thenReturn(0);
+                when(ucsbDateRepository.existsById(eq(67L))).thenReturn(true);
+
+                MvcResult response = putDate("W/\"3\"", status().isPreconditionFailed());
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("PreconditionFailedException", json.get("type"));
+                assertEquals("UCSBDate with id 67 has been changed since it was read", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void if_match_on_a_ucsbdate_that_does_not_exist_is_not_found() throws Exception {
+                when(ucsbDateRepository.updateIfVersion(eq(67L), eq(3L), any())).thenReturn(0);
+                when(ucsbDateRepository.existsById(eq(67L))).thenReturn(false);
+
+                MvcResult response = putDate("\"3\"", status().isNotFound());
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDate with id 67 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_if_match_that_is_not_a_version_never_matches() throws Exception {
+                MvcResult response = putDate("\"1-1\"", status().isPreconditionFailed());
+
+                verify(ucsbDateRepository, never()).updateIfVersion(anyLong(), anyLong(), any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("PreconditionFailedException", json.get("type"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void if_match_star_edits_whatever_version_is_current() throws Exception {
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(UCSBDate.builder().id(67L).version(9L).build()));
+
+                putDate("*", status().isOk());
+
+                verify(ucsbDateRepository, never()).updateIfVersion(anyLong(), anyLong(), any());
+                verify(ucsbDateRepository, times(1)).save(any());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_edit_that_loses_a_race_with_another_is_a_conflict() throws Exception {
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(UCSBDate.builder().id(67L).build()));
+                when(ucsbDateRepository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(UCSBDate.class, 67L));
+
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(editedDate()))
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("ObjectOptimisticLockingFailureException", json.get("type"));
+                assertEquals("The row was changed by another request; read it again and retry", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_only_some_fields_of_all_ucsb_dates() throws Exception {
+
+                // arrange
+
+                List<Map<String, Object>> rows = List.of(Map.of("id", 1L, "name", "noon on January 2nd"));
+                when(fieldProjectionService.select(eq(UCSBDate.class), eq(List.of("name")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1)))
+                                .thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all?fields=name"))
+                                .andExpect(status().isOk())
+                                .andReturn();
+                String etag = response.getResponse().getHeader("ETag");
+                mockMvc.perform(get("/api/ucsbdates/all?fields=name").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified());
+
+                // assert
+
+                verify(ucsbDateRepository, never()).findAll();
+                verify(fieldProjectionService, times(1)).select(eq(UCSBDate.class), eq(List.of("name")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1));
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
 }
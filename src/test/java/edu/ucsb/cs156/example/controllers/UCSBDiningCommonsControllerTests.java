@@ -4,31 +4,43 @@ import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.NearbyDiningCommons;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.DiningCommonsLocatorService;
+import edu.ucsb.cs156.example.services.FieldProjectionService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 
 @WebMvcTest(controllers = UCSBDiningCommonsController.class)
 @Import(TestConfig.class)
@@ -40,6 +52,12 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        DiningCommonsLocatorService diningCommonsLocatorService;
+
+        @MockBean
+        FieldProjectionService fieldProjectionService;
+
         // Authorization tests for /api/ucsbdiningcommons/admin/all
 
         @Test
@@ -158,7 +176,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 ArrayList<UCSBDiningCommons> expectedCommons = new ArrayList<>();
                 expectedCommons.addAll(Arrays.asList(carrillo, dlg));
 
-                when(ucsbDiningCommonsRepository.findAll()).thenReturn(expectedCommons);
+                when(ucsbDiningCommonsRepository.findPageAfter(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(expectedCommons);
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all"))
@@ -166,7 +184,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 // assert
 
-                verify(ucsbDiningCommonsRepository, times(1)).findAll();
+                verify(ucsbDiningCommonsRepository, times(1)).findPageAfter(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
                 String expectedJson = mapper.writeValueAsString(expectedCommons);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -197,6 +215,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(ucsbDiningCommonsRepository, times(1)).save(ortega);
+                verify(diningCommonsLocatorService, times(1)).rebuild();
                 String expectedJson = mapper.writeValueAsString(ortega);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -204,20 +223,31 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
-        public void admin_can_delete_a_date() throws Exception {
+        public void the_locator_is_only_rebuilt_once_a_delete_commits() throws Exception {
                 // arrange
 
-                UCSBDiningCommons portola = UCSBDiningCommons.builder()
-                                .name("Portola")
-                                .code("portola")
-                                .hasSackMeal(true)
-                                .hasTakeOutMeal(true)
-                                .hasDiningCam(true)
-                                .latitude(34.417723)
-                                .longitude(-119.867427)
-                                .build();
+                when(ucsbDiningCommonsRepository.deleteRow(eq("portola"))).thenReturn(1);
+
+                // act and assert
+                TransactionSynchronizationManager.initSynchronization();
+                try {
+                        mockMvc.perform(delete("/api/ucsbdiningcommons?code=portola").with(csrf()))
+                                        .andExpect(status().isOk());
+                        verify(diningCommonsLocatorService, never()).rebuild();
+
+                        TransactionSynchronizationUtils.triggerAfterCommit();
+                        verify(diningCommonsLocatorService, times(1)).rebuild();
+                } finally {
+                        TransactionSynchronizationManager.clearSynchronization();
+                }
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_delete_a_date() throws Exception {
+                // arrange
 
-                when(ucsbDiningCommonsRepository.findById(eq("portola"))).thenReturn(Optional.of(portola));
+                when(ucsbDiningCommonsRepository.deleteRow(eq("portola"))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -226,8 +256,9 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("portola");
-                verify(ucsbDiningCommonsRepository, times(1)).delete(any());
+                verify(ucsbDiningCommonsRepository, times(1)).deleteRow("portola");
+                verify(ucsbDiningCommonsRepository, never()).findById(any());
+                verify(diningCommonsLocatorService, times(1)).rebuild();
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id portola deleted", json.get("message"));
@@ -239,7 +270,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsRepository.deleteRow(eq("munger-hall"))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -248,7 +279,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+                verify(ucsbDiningCommonsRepository, times(1)).deleteRow("munger-hall");
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
         }
@@ -294,6 +325,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 // assert
                 verify(ucsbDiningCommonsRepository, times(1)).findById("carrillo");
                 verify(ucsbDiningCommonsRepository, times(1)).save(carrilloEdited); // should be saved with updated info
+                verify(diningCommonsLocatorService, times(1)).rebuild();
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -332,4 +364,386 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
 
         }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_first_page_of_ucsbdiningcommons() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons first = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.41)
+                                .longitude(-119.85)
+                                .build();
+                UCSBDiningCommons second = UCSBDiningCommons.builder()
+                                .code("de-la-guerra")
+                                .name("De La Guerra")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.41)
+                                .longitude(-119.85)
+                                .build();
+                UCSBDiningCommons third = UCSBDiningCommons.builder()
+                                .code("ortega")
+                                .name("Ortega")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.41)
+                                .longitude(-119.85)
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findPageAfter(eq(""), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all?limit=2"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "de-la-guerra"))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findPageAfter(eq(""), eq(PageRequest.of(0, 3)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(first, second));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_last_page_of_ucsbdiningcommons() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons third = UCSBDiningCommons.builder()
+                                .code("ortega")
+                                .name("Ortega")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.41)
+                                .longitude(-119.85)
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findPageAfter(eq("de-la-guerra"), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(third)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all?after=de-la-guerra"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findPageAfter(eq("de-la-guerra"), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(third));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_all_ucsbdiningcommons_as_ndjson() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons first = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.41)
+                                .longitude(-119.85)
+                                .build();
+                UCSBDiningCommons second = UCSBDiningCommons.builder()
+                                .code("de-la-guerra")
+                                .name("De La Guerra")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.41)
+                                .longitude(-119.85)
+                                .build();
+
+                when(ucsbDiningCommonsRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                mockMvc.perform(asyncDispatch(response))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON));
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).streamAll();
+                String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedNdjson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_304_for_all_ucsbdiningcommons_when_etag_matches() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons first = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.41)
+                                .longitude(-119.85)
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findPageAfter(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+                // act
+
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().exists("ETag"))
+                    .andReturn();
+                String etag = response.getResponse().getHeader("ETag");
+
+                MvcResult notModified = mockMvc.perform(get("/api/ucsbdiningcommons/all").header("If-None-Match", etag))
+                    .andExpect(status().isNotModified())
+                    .andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findPageAfter(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+                assertEquals("", notModified.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_304_for_single_ucsbdiningcommons_when_etag_matches() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons first = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.41)
+                                .longitude(-119.85)
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(first));
+
+                // act
+
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons?code=carrillo"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().exists("ETag"))
+                    .andReturn();
+                String etag = response.getResponse().getHeader("ETag");
+
+                mockMvc.perform(get("/api/ucsbdiningcommons?code=carrillo").header("If-None-Match", etag))
+                    .andExpect(status().isNotModified());
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findById(eq("carrillo"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void etag_for_all_commons_changes_after_a_post() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons ortega = UCSBDiningCommons.builder()
+                                .code("ortega")
+                                .name("Ortega")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.41)
+                                .longitude(-119.85)
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findPageAfter(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(new ArrayList<>());
+                when(ucsbDiningCommonsRepository.save(eq(ortega))).thenReturn(ortega);
+
+                String etag = mockMvc.perform(get("/api/ucsbdiningcommons/all"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader("ETag");
+
+                // act
+
+                mockMvc.perform(
+                    post("/api/ucsbdiningcommons/post?name=Ortega&code=ortega&hasSackMeal=false&hasTakeOutMeal=false&hasDiningCam=true&latitude=34.41&longitude=-119.85")
+                        .with(csrf()))
+                    .andExpect(status().isOk());
+
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all").header("If-None-Match", etag))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(2)).findPageAfter(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+                assertNotEquals(etag, response.getResponse().getHeader("ETag"));
+        }
+
+        @Test
+        public void logged_out_users_cannot_get_nearest_commons() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.41&lon=-119.85"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_nearest_commons() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons carrillo = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+                List<NearbyDiningCommons> nearest = List.of(
+                                NearbyDiningCommons.builder().diningCommons(carrillo).distanceMeters(12.5).build());
+
+                when(diningCommonsLocatorService.nearest(34.41, -119.85, 3)).thenReturn(nearest);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.41&lon=-119.85&k=3"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(diningCommonsLocatorService, times(1)).nearest(34.41, -119.85, 3);
+                String expectedJson = mapper.writeValueAsString(nearest);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void nearest_commons_count_defaults_and_is_kept_within_bounds() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=0&lon=0")).andExpect(status().isOk());
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=0&lon=0&k=100000")).andExpect(status().isOk());
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=0&lon=0&k=0")).andExpect(status().isOk());
+
+                verify(diningCommonsLocatorService, times(1)).nearest(0, 0, UCSBDiningCommonsController.DEFAULT_NEAREST_COMMONS);
+                verify(diningCommonsLocatorService, times(1)).nearest(0, 0, UCSBDiningCommonsController.MAX_NEAREST_COMMONS);
+                verify(diningCommonsLocatorService, times(1)).nearest(0, 0, 1);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_commons_with_if_match() throws Exception {
+                UCSBDiningCommons edited = UCSBDiningCommons.builder()
+                                .name("Carrillo Dining Hall")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409954)
+                                .longitude(-119.85278)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+                when(ucsbDiningCommonsRepository.updateIfVersion(eq("carrillo"), eq(3L), any())).thenReturn(1);
+
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommons?code=carrillo")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // one conditional UPDATE, without reading the row first
+                verify(ucsbDiningCommonsRepository, never()).findById(any());
+                verify(ucsbDiningCommonsRepository, never()).save(any());
+                verify(diningCommonsLocatorService, times(1)).rebuild();
+                UCSBDiningCommons expected = UCSBDiningCommons.builder()
+                                .name("Carrillo Dining Hall")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409954)
+                                .longitude(-119.85278)
+                                .code("carrillo")
+                                .version(4L)
+                                .build();
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_commons_with_a_stale_if_match() throws Exception {
+                UCSBDiningCommons edited = UCSBDiningCommons.builder()
+                                .name("Carrillo Dining Hall")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409954)
+                                .longitude(-119.85278)
+                                .build();
+
+                when(ucsbDiningCommonsRepository.updateIfVersion(eq("carrillo"), eq(3L), any())).thenReturn(0);
+                when(ucsbDiningCommonsRepository.existsById(eq("carrillo"))).thenReturn(true);
+
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommons?code=carrillo")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed()).andReturn();
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("PreconditionFailedException", json.get("type"));
+                assertEquals("UCSBDiningCommons with id carrillo has been changed since it was read", json.get("message"));
+                verify(diningCommonsLocatorService, never()).rebuild();
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_only_some_fields_of_all_ucsb_dining_commons() throws Exception {
+
+                // arrange
+
+                List<Map<String, Object>> rows = List.of(Map.of("code", "carrillo", "name", "Carrillo"));
+                when(fieldProjectionService.select(eq(UCSBDiningCommons.class), eq(List.of("name")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1)))
+                                .thenReturn(rows);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all?fields=name"))
+                                .andExpect(status().isOk())
+                                .andReturn();
+                String etag = response.getResponse().getHeader("ETag");
+                mockMvc.perform(get("/api/ucsbdiningcommons/all?fields=name").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified());
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, never()).findAll();
+                verify(fieldProjectionService, times(1)).select(eq(UCSBDiningCommons.class), eq(List.of("name")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1));
+                String expectedJson = mapper.writeValueAsString(rows);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
 }
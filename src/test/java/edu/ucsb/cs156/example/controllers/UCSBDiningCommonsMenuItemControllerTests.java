@@ -2,9 +2,11 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.services.MenuItemLeaderboardService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.services.FieldProjectionService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -15,6 +17,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -26,13 +29,18 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import java.util.List;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 
 @WebMvcTest(controllers = UCSBDiningCommonsMenuItemController.class)
 @Import(TestConfig.class)
@@ -44,6 +52,12 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
     @MockBean
     UserRepository UserRepository;
 
+    @MockBean
+    MenuItemLeaderboardService menuItemLeaderboardService;
+
+    @MockBean
+    FieldProjectionService fieldProjectionService;
+
     @Test
     public void logged_out_users_cannot_get_all() throws Exception {
         mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all"))
@@ -158,13 +172,13 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         ArrayList<UCSBDiningCommonsMenuItem> expectedReviews = new ArrayList<>();
         expectedReviews.addAll(Arrays.asList(uCSBDiningCommonsMenuItem1, uCSBDiningCommonsMenuItem2));
 
-        when(ucsbDiningCommonsMenuItemRepository.findAll()).thenReturn(expectedReviews);
+        when(ucsbDiningCommonsMenuItemRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(expectedReviews);
 
         MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all"))
             .andExpect(status().isOk())
             .andReturn();
 
-        verify(ucsbDiningCommonsMenuItemRepository, times(1)).findAll();
+        verify(ucsbDiningCommonsMenuItemRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
         String expectedJSON = mapper.writeValueAsString(expectedReviews);
         String responseJSON = response.getResponse().getContentAsString();
         assertEquals(expectedJSON, responseJSON);
@@ -184,6 +198,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         MvcResult response = mockMvc.perform(post("/api/UCSBDiningCommonsMenuItem/post?diningCommonsCode=Carrillo&name=Pizza&station=PizzaStation").with(csrf())).andExpect(status().isOk()).andReturn();
 
         verify(ucsbDiningCommonsMenuItemRepository, times(1)).save(uCSBDiningCommonsMenuItem1);
+        verify(menuItemLeaderboardService, times(1)).menuItemSaved(uCSBDiningCommonsMenuItem1);
         String expectedJSON = mapper.writeValueAsString(uCSBDiningCommonsMenuItem1);
         String responseJSON = response.getResponse().getContentAsString();
         assertEquals(expectedJSON, responseJSON);
@@ -218,6 +233,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         
         verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(eq(1L));
         verify(ucsbDiningCommonsMenuItemRepository, times(1)).save(uCSBDiningCommonsMenuItem2);
+        verify(menuItemLeaderboardService, times(1)).menuItemSaved(uCSBDiningCommonsMenuItem2);
         String responseString = response.getResponse().getContentAsString();
         assertEquals(requestBody, responseString);
     }
@@ -251,21 +267,17 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
     @WithMockUser(roles = { "ADMIN", "USER" })
     @Test
     public void admin_can_delete_a_item() throws Exception{
-        UCSBDiningCommonsMenuItem uCSBDiningCommonsMenuItem1 = UCSBDiningCommonsMenuItem.builder()
-            .diningCommonsCode("Carrillo")
-            .name("Pizza")
-            .station("PizzaStation")
-            .build();
 
-        when(ucsbDiningCommonsMenuItemRepository.findById(eq(1L))).thenReturn(Optional.of(uCSBDiningCommonsMenuItem1));
+        when(ucsbDiningCommonsMenuItemRepository.deleteRow(eq(1L))).thenReturn(1);
 
         MvcResult response = mockMvc.perform(
             delete("/api/UCSBDiningCommonsMenuItem?id=1")
             .with(csrf()))
             .andExpect(status().isOk()).andReturn();
 
-        verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(eq(1L));
-        verify(ucsbDiningCommonsMenuItemRepository, times(1)).delete(any());
+        verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteRow(eq(1L));
+        verify(ucsbDiningCommonsMenuItemRepository, never()).findById(any());
+        verify(menuItemLeaderboardService, times(1)).menuItemDeleted(1L);
 
         Map<String, Object> json = responseToJson(response);
         assertEquals("UCSBDiningCommonsMenuItem with id 1 deleted", json.get("message"));
@@ -275,15 +287,528 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
     @Test
     public void admin_tries_to_delete_non_existant_item_and_gets_right_error_message() throws Exception{
 
-        when(ucsbDiningCommonsMenuItemRepository.findById(eq(1L))).thenReturn(Optional.empty());
+        when(ucsbDiningCommonsMenuItemRepository.deleteRow(eq(1L))).thenReturn(0);
 
         MvcResult response = mockMvc.perform(
             delete("/api/UCSBDiningCommonsMenuItem?id=1")
             .with(csrf()))
             .andExpect(status().isNotFound()).andReturn();
 
-        verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(1L);
+        verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteRow(1L);
         Map<String, Object> json = responseToJson(response);
         assertEquals("UCSBDiningCommonsMenuItem with id 1 not found", json.get("message"));
     }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_first_page_of_menu_items() throws Exception {
+
+        // arrange
+
+        UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder()
+            .Id(1L)
+            .diningCommonsCode("ortega")
+            .name("item 1")
+            .station("station 1")
+            .build();
+        UCSBDiningCommonsMenuItem second = UCSBDiningCommonsMenuItem.builder()
+            .Id(2L)
+            .diningCommonsCode("ortega")
+            .name("item 2")
+            .station("station 2")
+            .build();
+        UCSBDiningCommonsMenuItem third = UCSBDiningCommonsMenuItem.builder()
+            .Id(3L)
+            .diningCommonsCode("ortega")
+            .name("item 3")
+            .station("station 3")
+            .build();
+
+        when(ucsbDiningCommonsMenuItemRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, 3))))
+            .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all?limit=2"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "2"))
+            .andReturn();
+
+        // assert
+
+        verify(ucsbDiningCommonsMenuItemRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, 3)));
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(first, second));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_last_page_of_menu_items() throws Exception {
+
+        // arrange
+
+        UCSBDiningCommonsMenuItem third = UCSBDiningCommonsMenuItem.builder()
+            .Id(3L)
+            .diningCommonsCode("ortega")
+            .name("item 3")
+            .station("station 3")
+            .build();
+
+        when(ucsbDiningCommonsMenuItemRepository.findPageAfter(eq(2L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1))))
+            .thenReturn(new ArrayList<>(Arrays.asList(third)));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all?after=2"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+            .andReturn();
+
+        // assert
+
+        verify(ucsbDiningCommonsMenuItemRepository, times(1)).findPageAfter(eq(2L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(third));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_export_all_menu_items_as_ndjson() throws Exception {
+
+        // arrange
+
+        UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder()
+            .Id(1L)
+            .diningCommonsCode("ortega")
+            .name("item 1")
+            .station("station 1")
+            .build();
+        UCSBDiningCommonsMenuItem second = UCSBDiningCommonsMenuItem.builder()
+            .Id(2L)
+            .diningCommonsCode("ortega")
+            .name("item 2")
+            .station("station 2")
+            .build();
+
+        when(ucsbDiningCommonsMenuItemRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all").accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        mockMvc.perform(asyncDispatch(response))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON));
+
+        // assert
+
+        verify(ucsbDiningCommonsMenuItemRepository, times(1)).streamAll();
+        String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedNdjson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_304_for_all_menu_items_when_etag_matches() throws Exception {
+
+        // arrange
+
+        UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder()
+            .Id(1L)
+            .diningCommonsCode("ortega")
+            .name("item 1")
+            .station("station 1")
+            .build();
+
+        when(ucsbDiningCommonsMenuItemRepository.findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+        // act
+
+        MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn();
+        String etag = response.getResponse().getHeader("ETag");
+
+        MvcResult notModified = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all").header("If-None-Match", etag))
+            .andExpect(status().isNotModified())
+            .andReturn();
+
+        // assert
+
+        verify(ucsbDiningCommonsMenuItemRepository, times(1)).findPageAfter(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+        assertEquals("", notModified.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_304_for_single_menu_items_when_etag_matches() throws Exception {
+
+        // arrange
+
+        UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder()
+            .Id(1L)
+            .diningCommonsCode("ortega")
+            .name("item 1")
+            .station("station 1")
+            .build();
+
+        when(ucsbDiningCommonsMenuItemRepository.findById(eq(1L))).thenReturn(Optional.of(first));
+
+        // act
+
+        MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem?id=1"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn();
+        String etag = response.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem?id=1").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+
+        // assert
+
+        verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(eq(1L));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_post_bulk_menu_items() throws Exception {
+        mockMvc.perform(post("/api/UCSBDiningCommonsMenuItem/bulk").contentType(MediaType.APPLICATION_JSON).content("[]").with(csrf()))
+            .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_post_bulk_menu_items() throws Exception {
+
+        // arrange
+
+        UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder()
+            .Id(1L)
+            .diningCommonsCode("ortega")
+            .name("item 1")
+            .station("station 1")
+            .build();
+        UCSBDiningCommonsMenuItem second = UCSBDiningCommonsMenuItem.builder()
+            .Id(2L)
+            .diningCommonsCode("ortega")
+            .name("item 2")
+            .station("station 2")
+            .build();
+
+        String requestBody = mapper.writeValueAsString(Arrays.asList(first, second));
+        first.setId(0L);
+        second.setId(0L);
+
+        when(ucsbDiningCommonsMenuItemRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // act
+
+        MvcResult response = mockMvc.perform(
+            post("/api/UCSBDiningCommonsMenuItem/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(requestBody)
+                .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+        // assert
+
+        verify(ucsbDiningCommonsMenuItemRepository, times(1)).saveAll(eq(Arrays.asList(first, second)));
+        verify(menuItemLeaderboardService, times(2)).menuItemSaved(any());
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(first, second));
+        assertEquals(expectedJson, response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_put_bulk_menu_items() throws Exception {
+
+        // arrange
+
+        UCSBDiningCommonsMenuItem firstOrig = UCSBDiningCommonsMenuItem.builder()
+            .Id(3L)
+            .diningCommonsCode("ortega")
+            .name("item 3")
+            .station("station 3")
+            .build();
+        firstOrig.setId(1L);
+        UCSBDiningCommonsMenuItem secondOrig = UCSBDiningCommonsMenuItem.builder()
+            .Id(4L)
+            .diningCommonsCode("ortega")
+            .name("item 4")
+            .station("station 4")
+            .build();
+        secondOrig.setId(2L);
+
+        UCSBDiningCommonsMenuItem firstEdited = UCSBDiningCommonsMenuItem.builder()
+            .Id(1L)
+            .diningCommonsCode("ortega")
+            .name("item 1")
+            .station("station 1")
+            .build();
+        UCSBDiningCommonsMenuItem secondEdited = UCSBDiningCommonsMenuItem.builder()
+            .Id(2L)
+            .diningCommonsCode("ortega")
+            .name("item 2")
+            .station("station 2")
+            .build();
+
+        String requestBody = mapper.writeValueAsString(Arrays.asList(firstEdited, secondEdited));
+
+        when(ucsbDiningCommonsMenuItemRepository.findAllById(eq(Arrays.asList(1L, 2L)))).thenReturn(Arrays.asList(secondOrig, firstOrig));
+
+        // act
+
+        MvcResult response = mockMvc.perform(
+            put("/api/UCSBDiningCommonsMenuItem/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(requestBody)
+                .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+        // assert
+
+        verify(ucsbDiningCommonsMenuItemRepository, times(1)).saveAll(eq(Arrays.asList(firstEdited, secondEdited)));
+        verify(menuItemLeaderboardService, times(1)).menuItemSaved(firstEdited);
+        verify(menuItemLeaderboardService, times(1)).menuItemSaved(secondEdited);
+        assertEquals(requestBody, response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_put_bulk_menu_items_when_one_has_changed_since_it_was_read() throws Exception {
+
+        // arrange
+
+        UCSBDiningCommonsMenuItem firstOrig = UCSBDiningCommonsMenuItem.builder()
+            .Id(1L).diningCommonsCode("ortega").name("item 3").station("station 3").version(1L).build();
+        UCSBDiningCommonsMenuItem secondOrig = UCSBDiningCommonsMenuItem.builder()
+            .Id(2L).diningCommonsCode("ortega").name("item 4").station("station 4").version(2L).build();
+
+        UCSBDiningCommonsMenuItem firstEdited = UCSBDiningCommonsMenuItem.builder()
+            .Id(1L).diningCommonsCode("ortega").name("item 1").station("station 1").version(1L).build();
+        UCSBDiningCommonsMenuItem secondEdited = UCSBDiningCommonsMenuItem.builder()
+            .Id(2L).diningCommonsCode("ortega").name("item 2").station("station 2").version(1L).build();
+
+        when(ucsbDiningCommonsMenuItemRepository.findAllById(eq(Arrays.asList(1L, 2L)))).thenReturn(Arrays.asList(secondOrig, firstOrig));
+
+        // act
+
+        MvcResult response = mockMvc.perform(
+            put("/api/UCSBDiningCommonsMenuItem/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(mapper.writeValueAsString(Arrays.asList(firstEdited, secondEdited)))
+                .with(csrf()))
+            .andExpect(status().isPreconditionFailed())
+            .andReturn();
+
+        // assert
+
+        verify(ucsbDiningCommonsMenuItemRepository, never()).saveAll(any());
+        verify(menuItemLeaderboardService, never()).menuItemSaved(any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("UCSBDiningCommonsMenuItem with id 2 has been changed since it was read", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_put_bulk_menu_items_when_one_does_not_exist() throws Exception {
+
+        // arrange
+
+        UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder()
+            .Id(1L)
+            .diningCommonsCode("ortega")
+            .name("item 1")
+            .station("station 1")
+            .build();
+        UCSBDiningCommonsMenuItem second = UCSBDiningCommonsMenuItem.builder()
+            .Id(2L)
+            .diningCommonsCode("ortega")
+            .name("item 2")
+            .station("station 2")
+            .build();
+
+        String requestBody = mapper.writeValueAsString(Arrays.asList(first, second));
+
+        when(ucsbDiningCommonsMenuItemRepository.findAllById(eq(Arrays.asList(1L, 2L)))).thenReturn(Arrays.asList(first));
+
+        // act
+
+        MvcResult response = mockMvc.perform(
+            put("/api/UCSBDiningCommonsMenuItem/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(requestBody)
+                .with(csrf()))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+        // assert
+
+        verify(ucsbDiningCommonsMenuItemRepository, never()).saveAll(any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("UCSBDiningCommonsMenuItem with id 2 not found", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_delete_bulk_menu_items() throws Exception {
+
+        // arrange
+
+        UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder()
+            .Id(1L)
+            .diningCommonsCode("ortega")
+            .name("item 1")
+            .station("station 1")
+            .build();
+        UCSBDiningCommonsMenuItem second = UCSBDiningCommonsMenuItem.builder()
+            .Id(2L)
+            .diningCommonsCode("ortega")
+            .name("item 2")
+            .station("station 2")
+            .build();
+
+        when(ucsbDiningCommonsMenuItemRepository.findAllById(eq(Arrays.asList(1L, 2L)))).thenReturn(Arrays.asList(first, second));
+
+        // act
+
+        MvcResult response = mockMvc.perform(
+            delete("/api/UCSBDiningCommonsMenuItem/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[1,2]")
+                .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+        // assert
+
+        verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteRows(eq(Arrays.asList(1L, 2L)));
+        verify(menuItemLeaderboardService, times(1)).menuItemDeleted(1L);
+        verify(menuItemLeaderboardService, times(1)).menuItemDeleted(2L);
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("2 UCSBDiningCommonsMenuItems deleted", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_delete_bulk_menu_items_when_one_does_not_exist() throws Exception {
+
+        // arrange
+
+        when(ucsbDiningCommonsMenuItemRepository.findAllById(eq(Arrays.asList(1L, 2L)))).thenReturn(new ArrayList<>());
+
+        // act
+
+        MvcResult response = mockMvc.perform(
+            delete("/api/UCSBDiningCommonsMenuItem/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[1,2]")
+                .with(csrf()))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+        // assert
+
+        verify(ucsbDiningCommonsMenuItemRepository, never()).deleteRows(any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("UCSBDiningCommonsMenuItem with id 1 not found", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_edit_an_item_with_if_match() throws Exception {
+        UCSBDiningCommonsMenuItem edited = UCSBDiningCommonsMenuItem.builder()
+                .diningCommonsCode("Ortega")
+                .name("Lasagna")
+                .station("LasagnaStation")
+                .build();
+
+        String requestBody = mapper.writeValueAsString(edited);
+        when(ucsbDiningCommonsMenuItemRepository.updateIfVersion(eq(1L), eq(3L), any())).thenReturn(1);
+
+        MvcResult response = mockMvc.perform(
+                put("/api/UCSBDiningCommonsMenuItem?id=1")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(requestBody)
+                        .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // one conditional UPDATE, without reading the row first
+        verify(ucsbDiningCommonsMenuItemRepository, never()).findById(any());
+        verify(ucsbDiningCommonsMenuItemRepository, never()).save(any());
+        verify(menuItemLeaderboardService, times(1)).menuItemSaved(any());
+        UCSBDiningCommonsMenuItem expected = UCSBDiningCommonsMenuItem.builder()
+                .diningCommonsCode("Ortega")
+                .name("Lasagna")
+                .station("LasagnaStation")
+                .Id(1L)
+                .version(4L)
+                .build();
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_cannot_edit_an_item_with_a_stale_if_match() throws Exception {
+        UCSBDiningCommonsMenuItem edited = UCSBDiningCommonsMenuItem.builder()
+                .diningCommonsCode("Ortega")
+                .name("Lasagna")
+                .station("LasagnaStation")
+                .build();
+
+        when(ucsbDiningCommonsMenuItemRepository.updateIfVersion(eq(1L), eq(3L), any())).thenReturn(0);
+        when(ucsbDiningCommonsMenuItemRepository.existsById(eq(1L))).thenReturn(true);
+
+        MvcResult response = mockMvc.perform(
+                put("/api/UCSBDiningCommonsMenuItem?id=1")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(mapper.writeValueAsString(edited))
+                        .with(csrf()))
+                .andExpect(status().isPreconditionFailed()).andReturn();
+
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("PreconditionFailedException", json.get("type"));
+        assertEquals("UCSBDiningCommonsMenuItem with id 1 has been changed since it was read", json.get("message"));
+        verify(menuItemLeaderboardService, never()).menuItemSaved(any());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_only_some_fields_of_all_ucsb_dining_commons_menu_items() throws Exception {
+
+        // arrange
+
+        List<Map<String, Object>> rows = List.of(Map.of("id", 1L, "name", "Pizza"));
+        when(fieldProjectionService.select(eq(UCSBDiningCommonsMenuItem.class), eq(List.of("name")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1)))
+            .thenReturn(rows);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all?fields=name"))
+            .andExpect(status().isOk())
+            .andReturn();
+        String etag = response.getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all?fields=name").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+
+        // assert
+
+        verify(ucsbDiningCommonsMenuItemRepository, never()).findAll();
+        verify(fieldProjectionService, times(1)).select(eq(UCSBDiningCommonsMenuItem.class), eq(List.of("name")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1));
+        String expectedJson = mapper.writeValueAsString(rows);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
 }
@@ -9,6 +9,7 @@ import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.FieldProjectionService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -17,6 +18,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -28,13 +30,18 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 // import java.time.LocalDateTime;
 
 import java.util.Optional;
+import java.util.List;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 
 @WebMvcTest(controllers = UCSBOrganizationController.class)
 @Import(TestConfig.class)
@@ -47,6 +54,9 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
     @MockBean
     UserRepository userRepository;
 
+    @MockBean
+    FieldProjectionService fieldProjectionService;
+
 
     // Authorization tests for /api/UCSBOrganization/admin/all
 
@@ -189,7 +199,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
         ArrayList<UCSBOrganization> expectedOrg = new ArrayList<>();
         expectedOrg.addAll(Arrays.asList(obj1, obj2));
 
-        when(ucsbOrganizationRepository.findAll()).thenReturn(expectedOrg);
+        when(ucsbOrganizationRepository.findPageAfter(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(expectedOrg);
 
         // act
         MvcResult response = mockMvc.perform(get("/api/UCSBOrganization/all"))
@@ -197,7 +207,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
 
         // assert
 
-        verify(ucsbOrganizationRepository, times(1)).findAll();
+        verify(ucsbOrganizationRepository, times(1)).findPageAfter(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
         String expectedJson = mapper.writeValueAsString(expectedOrg);
         String responseString = response.getResponse().getContentAsString();
         assertEquals(expectedJson, responseString);
@@ -240,14 +250,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
     public void admin_can_delete_a_org() throws Exception {
         // arrange
 
-        UCSBOrganization obj1 = UCSBOrganization.builder()
-                .orgCode("1")
-                .orgTranslationShort("A")
-                .orgTranslation("AA")
-                .inactive(true)
-                .build();
-
-        when(ucsbOrganizationRepository.findById(eq("1"))).thenReturn(Optional.of(obj1));
+        when(ucsbOrganizationRepository.deleteRow(eq("1"))).thenReturn(1);
 
         // act
         MvcResult response = mockMvc.perform(
@@ -256,8 +259,8 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
                 .andExpect(status().isOk()).andReturn();
 
         // assert
-        verify(ucsbOrganizationRepository, times(1)).findById("1");
-        verify(ucsbOrganizationRepository, times(1)).delete(any());
+        verify(ucsbOrganizationRepository, times(1)).deleteRow("1");
+        verify(ucsbOrganizationRepository, never()).findById(any());
 
         Map<String, Object> json = responseToJson(response);
         assertEquals("record 1 deleted", json.get("message"));
@@ -271,7 +274,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
             throws Exception {
         // arrange
 
-        when(ucsbOrganizationRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+        when(ucsbOrganizationRepository.deleteRow(eq("munger-hall"))).thenReturn(0);
 
         // act
         MvcResult response = mockMvc.perform(
@@ -280,7 +283,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
                 .andExpect(status().isNotFound()).andReturn();
 
         // assert
-        verify(ucsbOrganizationRepository, times(1)).findById("munger-hall");
+        verify(ucsbOrganizationRepository, times(1)).deleteRow("munger-hall");
         Map<String, Object> json = responseToJson(response);
         assertEquals("UCSBOrganization with id munger-hall not found", json.get("message"));
     }
@@ -362,4 +365,263 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
 
     }
 
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_first_page_of_ucsborganizations() throws Exception {
+
+        // arrange
+
+        UCSBOrganization first = UCSBOrganization.builder()
+                .orgCode("A")
+                .orgTranslationShort("A")
+                .orgTranslation("AA")
+                .inactive(false)
+                .build();
+        UCSBOrganization second = UCSBOrganization.builder()
+                .orgCode("B")
+                .orgTranslationShort("B")
+                .orgTranslation("BB")
+                .inactive(false)
+                .build();
+        UCSBOrganization third = UCSBOrganization.builder()
+                .orgCode("C")
+                .orgTranslationShort("C")
+                .orgTranslation("CC")
+                .inactive(false)
+                .build();
+
+        when(ucsbOrganizationRepository.findPageAfter(eq(""), eq(PageRequest.of(0, 3))))
+                .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/UCSBOrganization/all?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ApiController.NEXT_CURSOR_HEADER, "B"))
+                .andReturn();
+
+        // assert
+
+        verify(ucsbOrganizationRepository, times(1)).findPageAfter(eq(""), eq(PageRequest.of(0, 3)));
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(first, second));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_last_page_of_ucsborganizations() throws Exception {
+
+        // arrange
+
+        UCSBOrganization third = UCSBOrganization.builder()
+                .orgCode("C")
+                .orgTranslationShort("C")
+                .orgTranslation("CC")
+                .inactive(false)
+                .build();
+
+        when(ucsbOrganizationRepository.findPageAfter(eq("B"), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1))))
+                .thenReturn(new ArrayList<>(Arrays.asList(third)));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/UCSBOrganization/all?after=B"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ApiController.NEXT_CURSOR_HEADER))
+                .andReturn();
+
+        // assert
+
+        verify(ucsbOrganizationRepository, times(1)).findPageAfter(eq("B"), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(third));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_export_all_ucsborganizations_as_ndjson() throws Exception {
+
+        // arrange
+
+        UCSBOrganization first = UCSBOrganization.builder()
+                .orgCode("A")
+                .orgTranslationShort("A")
+                .orgTranslation("AA")
+                .inactive(false)
+                .build();
+        UCSBOrganization second = UCSBOrganization.builder()
+                .orgCode("B")
+                .orgTranslationShort("B")
+                .orgTranslation("BB")
+                .inactive(false)
+                .build();
+
+        when(ucsbOrganizationRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/UCSBOrganization/all").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(response))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON));
+
+        // assert
+
+        verify(ucsbOrganizationRepository, times(1)).streamAll();
+        String expectedNdjson = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedNdjson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_304_for_all_ucsborganizations_when_etag_matches() throws Exception {
+
+        // arrange
+
+        UCSBOrganization first = UCSBOrganization.builder()
+                .orgCode("A")
+                .orgTranslationShort("A")
+                .orgTranslation("AA")
+                .inactive(false)
+                .build();
+
+        when(ucsbOrganizationRepository.findPageAfter(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)))).thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+        // act
+
+        MvcResult response = mockMvc.perform(get("/api/UCSBOrganization/all"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn();
+        String etag = response.getResponse().getHeader("ETag");
+
+        MvcResult notModified = mockMvc.perform(get("/api/UCSBOrganization/all").header("If-None-Match", etag))
+            .andExpect(status().isNotModified())
+            .andReturn();
+
+        // assert
+
+        verify(ucsbOrganizationRepository, times(1)).findPageAfter(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_SIZE + 1)));
+        assertEquals("", notModified.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_304_for_single_ucsborganizations_when_etag_matches() throws Exception {
+
+        // arrange
+
+        UCSBOrganization first = UCSBOrganization.builder()
+                .orgCode("A")
+                .orgTranslationShort("A")
+                .orgTranslation("AA")
+                .inactive(false)
+                .build();
+
+        when(ucsbOrganizationRepository.findById(eq("A"))).thenReturn(Optional.of(first));
+
+        // act
+
+        MvcResult response = mockMvc.perform(get("/api/UCSBOrganization?orgCode=A"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn();
+        String etag = response.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/UCSBOrganization?orgCode=A").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+
+        // assert
+
+        verify(ucsbOrganizationRepository, times(1)).findById(eq("A"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_edit_an_org_with_if_match() throws Exception {
+        UCSBOrganization edited = UCSBOrganization.builder()
+                .orgTranslationShort("SKYDIVING CLUB")
+                .orgTranslation("SKYDIVING CLUB AT UCSB")
+                .inactive(false)
+                .build();
+
+        String requestBody = mapper.writeValueAsString(edited);
+        when(ucsbOrganizationRepository.updateIfVersion(eq("SKY"), eq(3L), any())).thenReturn(1);
+
+        MvcResult response = mockMvc.perform(
+                put("/api/UCSBOrganization?orgCode=SKY")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(requestBody)
+                        .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // one conditional UPDATE, without reading the row first
+        verify(ucsbOrganizationRepository, never()).findById(any());
+        verify(ucsbOrganizationRepository, never()).save(any());
+        UCSBOrganization expected = UCSBOrganization.builder()
+                .orgTranslationShort("SKYDIVING CLUB")
+                .orgTranslation("SKYDIVING CLUB AT UCSB")
+                .inactive(false)
+                .orgCode("SKY")
+                .version(4L)
+                .build();
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_cannot_edit_an_org_with_a_stale_if_match() throws Exception {
+        UCSBOrganization edited = UCSBOrganization.builder()
+                .orgTranslationShort("SKYDIVING CLUB")
+                .orgTranslation("SKYDIVING CLUB AT UCSB")
+                .inactive(false)
+                .build();
+
+        when(ucsbOrganizationRepository.updateIfVersion(eq("SKY"), eq(3L), any())).thenReturn(0);
+        when(ucsbOrganizationRepository.existsById(eq("SKY"))).thenReturn(true);
+
+        MvcResult response = mockMvc.perform(
+                put("/api/UCSBOrganization?orgCode=SKY")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(mapper.writeValueAsString(edited))
+                        .with(csrf()))
+                .andExpect(status().isPreconditionFailed()).andReturn();
+
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("PreconditionFailedException", json.get("type"));
+        assertEquals("UCSBOrganization with id SKY has been changed since it was read", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_only_some_fields_of_all_ucsb_organizations() throws Exception {
+
+        // arrange
+
+        List<Map<String, Object>> rows = List.of(Map.of("orgCode", "ZPR", "orgTranslationShort", "ZETA PHI RHO"));
+        when(fieldProjectionService.select(eq(UCSBOrganization.class), eq(List.of("orgTranslationShort")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1)))
+                .thenReturn(rows);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/UCSBOrganization/all?fields=orgTranslationShort"))
+                .andExpect(status().isOk())
+                .andReturn();
+        String etag = response.getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/UCSBOrganization/all?fields=orgTranslationShort").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        // assert
+
+        verify(ucsbOrganizationRepository, never()).findAll();
+        verify(fieldProjectionService, times(1)).select(eq(UCSBOrganization.class), eq(List.of("orgTranslationShort")), isNull(), eq(ApiController.MAX_PAGE_SIZE + 1));
+        String expectedJson = mapper.writeValueAsString(rows);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
 }
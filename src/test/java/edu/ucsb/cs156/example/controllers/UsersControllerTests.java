@@ -9,6 +9,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -21,6 +22,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.stream.Stream;
 
 @WebMvcTest(controllers = UsersController.class)
 @Import(TestConfig.class)
@@ -70,4 +72,39 @@ public class UsersControllerTests extends ControllerTestCase {
     assertEquals(expectedJson, responseString);
 
   }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void users__admin_can_export_users_as_ndjson() throws Exception {
+
+    // arrange
+
+    User u1 = User.builder().id(1L).email("u1@example.org").build();
+    User u2 = User.builder().id(2L).email("u2@example.org").build();
+
+    when(userRepository.streamAll()).thenReturn(Stream.of(u1, u2));
+
+    // act
+
+    MvcResult response = mockMvc.perform(get("/api/admin/users").accept(MediaType.APPLICATION_NDJSON))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc.perform(asyncDispatch(response))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MediaType.APPLICATION_NDJSON));
+
+    // assert
+
+    verify(userRepository, times(1)).streamAll();
+    String expectedNdjson = mapper.writeValueAsString(u1) + "\n" + mapper.writeValueAsString(u2) + "\n";
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedNdjson, responseString);
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void users__user_cannot_export_users() throws Exception {
+    mockMvc.perform(get("/api/admin/users").accept(MediaType.APPLICATION_NDJSON))
+        .andExpect(status().is(403));
+  }
 }
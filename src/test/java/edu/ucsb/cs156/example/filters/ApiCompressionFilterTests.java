@@ -0,0 +1,353 @@
+package edu.ucsb.cs156.example.filters;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class ApiCompressionFilterTests {
+
+  static final byte[] LARGE_JSON = ("[" + "{\"id\":1,\"name\":\"Portola\"},".repeat(400) + "{}]")
+      .getBytes(StandardCharsets.UTF_8);
+
+  ApiCompressionFilter filter = new ApiCompressionFilter(2048, 5, 2);
+
+  private MockHttpServletRequest request(String acceptEncoding) {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/ucsbdates/all");
+    request.addHeader("Accept-Encoding", acceptEncoding);
+    return request;
+  }
+
+  private MockHttpServletResponse filter(MockHttpServletRequest request, FilterChain chain) throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    filter.doFilter(request, response, chain);
+    return response;
+  }
+
+  private static byte[] gunzip(byte[] compressed) throws IOException {
+    return new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes();
+  }
+
+  private static FilterChain json(byte[] body) {
+    return (request, response) -> {
+      response.setContentType("application/json");
+      response.getOutputStream().write(body);
+    };
+  }
+
+  @Test
+  void large_json_is_gzipped_for_clients_that_accept_it() throws Exception {
+    MockHttpServletResponse response = filter(request("gzip, deflate, br"), (request, servletResponse) -> {
+      HttpServletResponse httpResponse = (HttpServletResponse) servletResponse;
+      httpResponse.setContentType("application/json;charset=UTF-8");
+      httpResponse.setHeader("ETag", "\"3\"");
+      httpResponse.addHeader("X-Next-Cursor", "400");
+      httpResponse.addHeader("Content-Length", Integer.toString(LARGE_JSON.length));
+      ServletOutputStream out = httpResponse.getOutputStream();
+      out.write(LARGE_JSON[0]);
+      out.write(LARGE_JSON, 1, 4095);
+      out.write(LARGE_JSON, 4096, LARGE_JSON.length - 4096);
+      httpResponse.setContentLength(LARGE_JSON.length);
+    });
+
+    assertEquals("gzip", response.getHeader("Content-Encoding"));
+    assertEquals("Accept-Encoding", response.getHeader("Vary"));
+    assertEquals("W/\"3\"", response.getHeader("ETag"));
+    assertNull(response.getHeader("Content-Length"));
+    assertEquals("400", response.getHeader("X-Next-Cursor"));
+    assertTrue(response.getContentAsByteArray().length < LARGE_JSON.length / 10);
+    assertArrayEquals(LARGE_JSON, gunzip(response.getContentAsByteArray()));
+
+    // the deflater went back to the pool, and is used again
+    assertEquals(1, filter.deflaters.size());
+    Deflater pooled = filter.deflaters.peek();
+    assertArrayEquals(LARGE_JSON, gunzip(filter(request("gzip"), json(LARGE_JSON)).getContentAsByteArray()));
+    assertSame(pooled, filter.deflaters.peek());
+  }
+
+  @Test
+  void small_responses_are_sent_as_they_are() throws Exception {
+    byte[] body = "{\"admin\":true}".getBytes(StandardCharsets.UTF_8);
+
+    MockHttpServletResponse response = filter(request("gzip"), (request, servletResponse) -> {
+      servletResponse.setContentType("application/json");
+      ((HttpServletResponse) servletResponse).setHeader("Content-Length", Integer.toString(body.length));
+      servletResponse.getOutputStream().write(body);
+    });
+
+    assertNull(response.getHeader("Content-Encoding"));
+    assertNull(response.getHeader("Vary"));
+    assertEquals(body.length, response.getContentLength());
+    assertArrayEquals(body, response.getContentAsByteArray());
+    assertEquals(0, filter.deflaters.size());
+  }
+
+  @Test
+  void large_responses_of_other_types_are_sent_as_they_are() throws Exception {
+    MockHttpServletResponse image = filter(request("gzip"), (request, servletResponse) -> {
+      servletResponse.setContentType("image/png");
+      ((HttpServletResponse) servletResponse).addHeader("Content-Length", "1");
+      servletResponse.getOutputStream().write(LARGE_JSON);
+      servletResponse.setContentLength(LARGE_JSON.length);
+    });
+    assertNull(image.getHeader("Content-Encoding"));
+    assertEquals(LARGE_JSON.length, image.getContentLength());
+    assertArrayEquals(LARGE_JSON, image.getContentAsByteArray());
+
+    MockHttpServletResponse untyped = filter(request("gzip"),
+        (request, servletResponse) -> servletResponse.getOutputStream().write(LARGE_JSON));
+    assertArrayEquals(LARGE_JSON, untyped.getContentAsByteArray());
+
+    MockHttpServletResponse encoded = filter(request("gzip"), (request, servletResponse) -> {
+      ((HttpServletResponse) servletResponse).setHeader("Content-Encoding", "br");
+      json(LARGE_JSON).doFilter(request, servletResponse);
+    });
+    assertEquals("br", encoded.getHeader("Content-Encoding"));
+    assertArrayEquals(LARGE_JSON, encoded.getContentAsByteArray());
+  }
+
+  @Test
+  void clients_that_do_not_accept_gzip_and_head_requests_are_left_alone() throws Exception {
+    for (MockHttpServletRequest request : new MockHttpServletRequest[] {
+        request("br, gzip;q=0"), new MockHttpServletRequest("GET", "/api/ucsbdates/all"), head() }) {
+      MockHttpServletResponse response = new MockHttpServletResponse();
+      ServletResponse[] seen = new ServletResponse[1];
+      filter.doFilter(request, response, (req, res) -> seen[0] = res);
+      assertSame(response, seen[0]);
+    }
+  }
+
+  private MockHttpServletRequest head() {
+    MockHttpServletRequest request = request("gzip");
+    request.setMethod("HEAD");
+    return request;
+  }
+
+  @Test
+  void text_written_with_the_writer_is_held_back_on_flush_then_gzipped() throws Exception {
+    String text = "café ".repeat(1000);
+
+    MockHttpServletResponse response = filter(request("gzip"), (request, servletResponse) -> {
+      servletResponse.setContentType("text/plain;charset=UTF-8");
+      PrintWriter writer = servletResponse.getWriter();
+      writer.print("café");
+      servletResponse.flushBuffer();
+      assertFalse(servletResponse.isCommitted());
+      writer.print(text.substring(4));
+      servletResponse.flushBuffer();
+      assertSame(writer, servletResponse.getWriter());
+    });
+
+    assertEquals("gzip", response.getHeader("Content-Encoding"));
+    assertEquals(text, new String(gunzip(response.getContentAsByteArray()), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void the_event_stream_is_sent_as_soon_as_it_is_flushed() throws Exception {
+    MockHttpServletResponse response = filter(request("gzip"), (request, servletResponse) -> {
+      servletResponse.setContentType("text/event-stream");
+      servletResponse.getOutputStream().write("event: change\n\n".getBytes(StandardCharsets.UTF_8));
+      servletResponse.flushBuffer();
+      assertTrue(servletResponse.isCommitted());
+    });
+
+    assertNull(response.getHeader("Content-Encoding"));
+    assertEquals("event: change\n\n", response.getContentAsString());
+  }
+
+  @Test
+  void an_async_response_is_finished_on_the_async_dispatch() throws Exception {
+    MockHttpServletRequest request = request("gzip");
+    request.setAsyncStarted(true);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ServletResponse[] wrapped = new ServletResponse[1];
+    filter.doFilter(request, response, (req, res) -> {
+      res.setContentType("application/x-ndjson");
+      wrapped[0] = res;
+    });
+    assertEquals(0, response.getContentAsByteArray().length);
+
+    // the export is written on another thread, then the request is dispatched back
+    wrapped[0].getOutputStream().write(LARGE_JSON);
+    request.setAsyncStarted(false);
+    request.setDispatcherType(DispatcherType.ASYNC);
+    filter.doFilter(request, wrapped[0], (req, res) -> assertSame(wrapped[0], res));
+
+    assertEquals("gzip", response.getHeader("Content-Encoding"));
+    assertArrayEquals(LARGE_JSON, gunzip(response.getContentAsByteArray()));
+    assertEquals(1, filter.deflaters.size());
+  }
+
+  @Test
+  void a_failed_request_gives_its_deflater_back() throws Exception {
+    FilterChain failsAfterWriting = (request, response) -> {
+      json(LARGE_JSON).doFilter(request, response);
+      throw new IllegalStateException("failed");
+    };
+    assertThrows(IllegalStateException.class, () -> filter(request("gzip"), failsAfterWriting));
+    assertEquals(1, filter.deflaters.size());
+
+    FilterChain failsAtOnce = (request, response) -> {
+      throw new IOException("failed");
+    };
+    assertThrows(IOException.class, () -> filter(request("gzip"), failsAtOnce));
+    assertEquals(1, filter.deflaters.size());
+  }
+
+  @Test
+  void the_pool_keeps_at_most_pool_size_deflaters() {
+    filter.giveBack(new Deflater());
+    filter.giveBack(new Deflater());
+    Deflater extra = new Deflater();
+    filter.giveBack(extra);
+
+    assertEquals(2, filter.deflaters.size());
+    assertFalse(filter.deflaters.contains(extra));
+  }
+
+  @Test
+  void resetting_discards_what_was_held_back() throws Exception {
+    MockHttpServletResponse response = filter(request("gzip"), (request, servletResponse) -> {
+      servletResponse.setContentType("application/json");
+      servletResponse.getOutputStream().write("discarded".getBytes(StandardCharsets.UTF_8));
+      servletResponse.resetBuffer();
+      servletResponse.setContentLength(9);
+      servletResponse.reset();
+      servletResponse.setContentType("application/json");
+      servletResponse.getOutputStream().write("{}".getBytes(StandardCharsets.UTF_8));
+    });
+
+    assertEquals("{}", response.getContentAsString());
+    assertNull(response.getHeader("Content-Length"));
+  }
+
+  @Test
+  void a_weak_etag_is_kept_and_a_gzipped_response_stays_blocking() throws Exception {
+    MockHttpServletResponse response = filter(request("gzip"), (request, servletResponse) -> {
+      ((HttpServletResponse) servletResponse).setHeader("ETag", "W/\"3\"");
+      json(LARGE_JSON).doFilter(request, servletResponse);
+      ServletOutputStream out = servletResponse.getOutputStream();
+      assertTrue(out.isReady());
+      assertThrows(IllegalStateException.class, () -> out.setWriteListener(null));
+    });
+
+    assertEquals("W/\"3\"", response.getHeader("ETag"));
+  }
+
+  // A response whose stream supports non-blocking writes, as the container's does
+  static class NonBlockingResponse extends HttpServletResponseWrapper {
+    final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+    WriteListener listener;
+    boolean ready = true;
+    boolean broken;
+
+    NonBlockingResponse() {
+      super(new MockHttpServletResponse());
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+      return new ServletOutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          if (broken) {
+            throw new IOException("Broken pipe");
+          }
+          sent.write(b);
+        }
+
+        @Override
+        public boolean isReady() {
+          return ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+          listener = writeListener;
+        }
+      };
+    }
+  }
+
+  @Test
+  void a_response_that_switches_to_non_blocking_writes_is_sent_as_it_is() throws Exception {
+    NonBlockingResponse response = new NonBlockingResponse();
+    WriteListener listener = mock(WriteListener.class);
+    filter.doFilter(request("gzip"), response, (request, servletResponse) -> {
+      servletResponse.setContentType("application/json");
+      ServletOutputStream out = servletResponse.getOutputStream();
+      out.write(LARGE_JSON, 0, 100);
+      assertTrue(out.isReady());
+
+      out.setWriteListener(listener);
+      assertSame(listener, response.listener);
+      assertArrayEquals(Arrays.copyOf(LARGE_JSON, 100), response.sent.toByteArray());
+      response.ready = false;
+      assertFalse(out.isReady());
+      response.ready = true;
+      out.write(LARGE_JSON, 100, LARGE_JSON.length - 100);
+    });
+
+    assertNull(response.getHeader("Content-Encoding"));
+    assertArrayEquals(LARGE_JSON, response.sent.toByteArray());
+  }
+
+  @Test
+  void an_event_stream_already_sent_can_switch_to_non_blocking_writes() throws Exception {
+    NonBlockingResponse response = new NonBlockingResponse();
+    WriteListener listener = mock(WriteListener.class);
+    filter.doFilter(request("gzip"), response, (request, servletResponse) -> {
+      servletResponse.setContentType("text/event-stream");
+      ServletOutputStream out = servletResponse.getOutputStream();
+      out.write(":\n\n".getBytes(StandardCharsets.UTF_8));
+      out.flush();
+
+      out.setWriteListener(listener);
+      assertSame(listener, response.listener);
+      assertTrue(out.isReady());
+    });
+
+    assertEquals(":\n\n", response.sent.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void a_failure_to_send_what_was_held_back_is_thrown_when_switching_to_non_blocking_writes() throws Exception {
+    NonBlockingResponse response = new NonBlockingResponse();
+    response.broken = true;
+    filter.doFilter(request("gzip"), response, (request, servletResponse) -> {
+      servletResponse.setContentType("application/json");
+      ServletOutputStream out = servletResponse.getOutputStream();
+      out.write(LARGE_JSON, 0, 100);
+
+      UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> out.setWriteListener(null));
+      assertEquals("Broken pipe", e.getCause().getMessage());
+      assertNull(response.listener);
+    });
+  }
+}
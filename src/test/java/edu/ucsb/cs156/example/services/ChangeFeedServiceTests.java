@@ -0,0 +1,178 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+class ChangeFeedServiceTests {
+
+  static final ChangeFeedService.Change CHANGE = new ChangeFeedService.Change("HelpRequest", "\"1-1\"", 1L);
+
+  ScheduledExecutorService heartbeats = mock(ScheduledExecutorService.class);
+  ExecutorService sender = mock(ExecutorService.class);
+  SseEmitter emitter = mock(SseEmitter.class);
+
+  ChangeFeedService changeFeed;
+  ChangeFeedService.Subscriber subscriber;
+
+  @BeforeEach
+  void setup() {
+    changeFeed = new ChangeFeedService(2, 20, Duration.ofMinutes(30), Duration.ofSeconds(15), heartbeats, sender);
+    subscriber = changeFeed.subscribe(emitter);
+  }
+
+  // Runs the latest drain task handed to the sender pool
+  private void runSenderTasks(int expectedTasks) {
+    ArgumentCaptor<Runnable> tasks = ArgumentCaptor.forClass(Runnable.class);
+    verify(sender, times(expectedTasks)).execute(tasks.capture());
+    tasks.getAllValues().get(expectedTasks - 1).run();
+  }
+
+  @Test
+  void a_burst_of_changes_is_sent_by_one_sender_task() throws Exception {
+    changeFeed.publish(CHANGE);
+    changeFeed.publish(CHANGE);
+    changeFeed.publish(CHANGE);
+
+    runSenderTasks(1);
+
+    verify(emitter, times(3)).send(any(SseEventBuilder.class));
+    assertTrue(subscriber.pending.isEmpty());
+  }
+
+  @Test
+  void a_long_backlog_is_sent_in_batches() throws Exception {
+    for (int i = 0; i < ChangeFeedService.MAX_BATCH + 2; i++) {
+      changeFeed.publish(CHANGE);
+    }
+
+    runSenderTasks(1);
+    verify(emitter, times(ChangeFeedService.MAX_BATCH)).send(any(SseEventBuilder.class));
+
+    runSenderTasks(2);
+    verify(emitter, times(ChangeFeedService.MAX_BATCH + 2)).send(any(SseEventBuilder.class));
+  }
+
+  @Test
+  void a_subscriber_that_falls_too_far_behind_is_disconnected_by_its_sender() throws Exception {
+    for (int i = 0; i < 21; i++) {
+      changeFeed.publish(CHANGE);
+    }
+
+    // the publishing thread leaves the emitter to the sender
+    verify(emitter, never()).complete();
+    assertTrue(changeFeed.subscribers.isEmpty());
+    assertTrue(subscriber.pending.isEmpty());
+
+    runSenderTasks(1);
+    verify(emitter, never()).send(any(SseEventBuilder.class));
+    verify(emitter).complete();
+  }
+
+  @Test
+  void a_subscriber_that_overflows_mid_send_is_disconnected_once_the_send_returns() throws Exception {
+    doAnswer(invocation -> {
+      for (int i = 0; i < 21; i++) {
+        changeFeed.publish(CHANGE);
+      }
+      return null;
+    }).when(emitter).send(any(SseEventBuilder.class));
+
+    changeFeed.publish(CHANGE);
+    runSenderTasks(1);
+
+    verify(emitter, times(1)).send(any(SseEventBuilder.class));
+    verify(emitter).complete();
+    verify(sender, times(1)).execute(any());
+  }
+
+  @Test
+  void a_subscriber_that_cannot_be_sent_to_is_removed() throws Exception {
+    doThrow(new IOException("Broken pipe")).when(emitter).send(any(SseEventBuilder.class));
+
+    changeFeed.publish(CHANGE);
+    changeFeed.publish(CHANGE);
+    runSenderTasks(1);
+
+    verify(emitter, times(1)).send(any(SseEventBuilder.class));
+    assertTrue(changeFeed.subscribers.isEmpty());
+  }
+
+  @Test
+  void idle_subscribers_get_a_heartbeat() throws Exception {
+    ChangeFeedService.Subscriber busy = changeFeed.subscribe(mock(SseEmitter.class));
+    busy.pending.add(CHANGE);
+
+    ArgumentCaptor<Runnable> heartbeat = ArgumentCaptor.forClass(Runnable.class);
+    verify(heartbeats).scheduleWithFixedDelay(heartbeat.capture(), eq(15000L), eq(15000L), eq(TimeUnit.MILLISECONDS));
+    heartbeat.getValue().run();
+
+    assertEquals(List.of(ChangeFeedService.HEARTBEAT), List.copyOf(subscriber.pending));
+    assertEquals(List.of(CHANGE), List.copyOf(busy.pending));
+  }
+
+  @Test
+  void subscribers_are_limited() {
+    SseEmitter subscribed = changeFeed.subscribe();
+
+    assertEquals(Duration.ofMinutes(30).toMillis(), subscribed.getTimeout());
+    assertEquals(2, changeFeed.subscribers.size());
+    ResponseStatusException e = assertThrows(ResponseStatusException.class, changeFeed::subscribe);
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+  }
+
+  @Test
+  void a_closed_subscriber_frees_its_slot_once() {
+    changeFeed.subscribe();
+
+    subscriber.close();
+    subscriber.close();
+
+    changeFeed.subscribe();
+    assertThrows(ResponseStatusException.class, changeFeed::subscribe);
+    assertEquals(2, changeFeed.subscriberCount());
+  }
+
+  @Test
+  void close_ends_every_stream() {
+    changeFeed.close();
+
+    verify(heartbeats).shutdownNow();
+    verify(sender).shutdownNow();
+    verify(emitter).complete();
+    assertTrue(changeFeed.subscribers.isEmpty());
+  }
+
+  @Test
+  void the_default_sender_pool_sends_heartbeats() throws Exception {
+    ChangeFeedService service = new ChangeFeedService(10, 4, Duration.ofMinutes(1), Duration.ofMillis(10));
+    service.subscribe(emitter);
+
+    verify(emitter, timeout(5000).atLeastOnce()).send(any(SseEventBuilder.class));
+    service.close();
+  }
+}
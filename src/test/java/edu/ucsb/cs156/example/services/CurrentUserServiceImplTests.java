@@ -0,0 +1,106 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+class CurrentUserServiceImplTests {
+
+  static final String EMAIL = "cgaucho@ucsb.edu";
+
+  UserRepository userRepository = mock(UserRepository.class);
+  FakeTicker ticker = new FakeTicker();
+  UserCacheService userCache = new UserCacheService(100, Duration.ofMinutes(1), ticker);
+  CurrentUserServiceImpl currentUserService = new CurrentUserServiceImpl();
+
+  OAuth2AuthenticationToken login = new OAuth2AuthenticationToken(
+      new DefaultOAuth2User(List.of(new SimpleGrantedAuthority("ROLE_USER")),
+          Map.of("sub", "sub-1", "email", EMAIL, "email_verified", true), "sub"),
+      List.of(new SimpleGrantedAuthority("ROLE_USER")), "google");
+
+  static class FakeTicker implements Ticker {
+    long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+  }
+
+  @BeforeEach
+  void setup() {
+    ReflectionTestUtils.setField(currentUserService, "userRepository", userRepository);
+    ReflectionTestUtils.setField(currentUserService, "userCache", userCache);
+  }
+
+  private static User user(boolean admin) {
+    return User.builder().id(1L).googleSub("sub-1").email(EMAIL).admin(admin).build();
+  }
+
+  private User logIn() {
+    return currentUserService.getOAuth2AuthenticatedUser(SecurityContextHolder.getContext(), login);
+  }
+
+  @Test
+  void a_repeat_login_does_not_read_the_users_table() {
+    User user = user(false);
+    when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+
+    assertSame(user, logIn());
+    assertSame(user, logIn());
+
+    verify(userRepository, times(1)).findByEmail(EMAIL);
+  }
+
+  @Test
+  void an_admin_change_made_to_the_table_takes_effect_once_the_entry_expires() {
+    when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user(false)));
+    assertFalse(logIn().getAdmin());
+
+    when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user(true)));
+    ticker.nanos += Duration.ofSeconds(30).toNanos();
+    assertFalse(logIn().getAdmin());
+    // used in between, but read from the table a minute ago
+    ticker.nanos += Duration.ofSeconds(31).toNanos();
+    assertTrue(logIn().getAdmin());
+
+    verify(userRepository, times(2)).findByEmail(EMAIL);
+  }
+
+  @Test
+  void promoting_an_admin_email_saves_the_user_and_invalidates_the_cached_one() {
+    @SuppressWarnings("unchecked")
+    List<String> adminEmails = (List<String>) ReflectionTestUtils.getField(currentUserService, "adminEmails");
+    adminEmails.add(EMAIL);
+    User user = user(false);
+    when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+
+    assertTrue(logIn().getAdmin());
+
+    verify(userRepository).save(user);
+    assertNull(userCache.getIfPresent("sub-1"));
+  }
+}
@@ -0,0 +1,123 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.NearbyDiningCommons;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+
+class DiningCommonsLocatorServiceTests {
+
+  UCSBDiningCommonsRepository repository = mock(UCSBDiningCommonsRepository.class);
+
+  DiningCommonsLocatorService locator = new DiningCommonsLocatorService();
+
+  @BeforeEach
+  void setup() {
+    locator.ucsbDiningCommonsRepository = repository;
+  }
+
+  private static UCSBDiningCommons commons(String code, double latitude, double longitude) {
+    return UCSBDiningCommons.builder().code(code).name(code).latitude(latitude).longitude(longitude).build();
+  }
+
+  private static List<String> codes(List<NearbyDiningCommons> nearest) {
+    return nearest.stream().map(n -> n.getDiningCommons().getCode()).toList();
+  }
+
+  @Test
+  void nothing_is_found_before_the_index_is_built() {
+    assertTrue(locator.nearest(34.41, -119.85, 5).isEmpty());
+  }
+
+  @Test
+  void nearest_commons_come_first_with_their_distances() {
+    when(repository.findByLatitudeNotNullAndLongitudeNotNull()).thenReturn(List.of(
+        commons("portola", 34.417908, -119.867489),
+        commons("carrillo", 34.409953, -119.85277),
+        commons("de-la-guerra", 34.409811, -119.845026),
+        commons("ortega", 34.410987, -119.847759)));
+    locator.rebuild();
+
+    List<NearbyDiningCommons> nearest = locator.nearest(34.409953, -119.85277, 2);
+
+    assertEquals(List.of("carrillo", "ortega"), codes(nearest));
+    assertEquals(0.0, nearest.get(0).getDistanceMeters(), 1e-6);
+    assertEquals(474, nearest.get(1).getDistanceMeters(), 1);
+    assertEquals(4, locator.nearest(0, 0, 10).size());
+  }
+
+  @Test
+  void distances_are_great_circle_distances() {
+    when(repository.findByLatitudeNotNullAndLongitudeNotNull()).thenReturn(List.of(
+        commons("east", 0, 179.5),
+        commons("north-pole", 90, 0),
+        commons("south-pole", -90, 0)));
+    locator.rebuild();
+
+    List<NearbyDiningCommons> nearest = locator.nearest(0, -179.5, 3);
+
+    // one degree of arc, across the antimeridian; both poles are a quarter turn away
+    assertEquals("east", codes(nearest).get(0));
+    assertEquals(Math.PI / 180 * DiningCommonsLocatorService.EARTH_RADIUS_METERS, nearest.get(0).getDistanceMeters(), 1e-3);
+    assertEquals(Math.PI / 2 * DiningCommonsLocatorService.EARTH_RADIUS_METERS, nearest.get(1).getDistanceMeters(), 1e-3);
+    assertEquals(Math.PI / 2 * DiningCommonsLocatorService.EARTH_RADIUS_METERS, nearest.get(2).getDistanceMeters(), 1e-3);
+    assertEquals(Math.PI * DiningCommonsLocatorService.EARTH_RADIUS_METERS,
+        DiningCommonsLocatorService.chordToMeters(4.0000001), 1e-3);
+  }
+
+  @Test
+  void tree_search_agrees_with_a_full_scan() {
+    Random random = new Random(17);
+    List<UCSBDiningCommons> all = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      all.add(commons("c" + i, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+    }
+    // a cluster of identical locations
+    for (int i = 0; i < 5; i++) {
+      all.add(commons("same" + i, 10, 10));
+    }
+    when(repository.findByLatitudeNotNullAndLongitudeNotNull()).thenReturn(all);
+    locator.rebuild();
+
+    for (int query = 0; query < 200; query++) {
+      double latitude = (query == 0) ? 10 : random.nextDouble() * 180 - 90;
+      double longitude = (query == 0) ? 10 : random.nextDouble() * 360 - 180;
+      int k = 1 + random.nextInt(8);
+      double[] target = DiningCommonsLocatorService.unitVector(latitude, longitude);
+
+      List<Double> expected = all.stream()
+          .map(c -> squaredChord(target, DiningCommonsLocatorService.unitVector(c.getLatitude(), c.getLongitude())))
+          .sorted(Comparator.naturalOrder())
+          .limit(k)
+          .map(DiningCommonsLocatorService::chordToMeters)
+          .toList();
+      List<Double> actual = locator.nearest(latitude, longitude, k).stream()
+          .map(NearbyDiningCommons::getDistanceMeters)
+          .toList();
+
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < k; i++) {
+        assertEquals(expected.get(i), actual.get(i), 1e-6);
+      }
+    }
+  }
+
+  private static double squaredChord(double[] a, double[] b) {
+    double dx = a[0] - b[0];
+    double dy = a[1] - b[1];
+    double dz = a[2] - b[2];
+    return dx * dx + dy * dy + dz * dz;
+  }
+}
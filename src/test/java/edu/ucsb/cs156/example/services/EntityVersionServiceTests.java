@@ -0,0 +1,60 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+
+class EntityVersionServiceTests {
+
+  Clock clock = mock(Clock.class);
+
+  @Test
+  void initial_version_uses_startup_time() {
+    when(clock.millis()).thenReturn(0x1000L);
+    EntityVersionService service = new EntityVersionService(clock);
+
+    EntityVersionService.Version version = service.current(UCSBDate.class);
+
+    assertEquals("\"1000-0\"", version.etag());
+    assertEquals(0x1000L, version.lastModified());
+  }
+
+  @Test
+  void bump_only_changes_that_table() {
+    when(clock.millis()).thenReturn(0x1000L, 0x2000L);
+    EntityVersionService service = new EntityVersionService(clock);
+
+    service.bump(UCSBDate.class);
+
+    assertEquals("\"1000-1\"", service.current(UCSBDate.class).etag());
+    assertEquals(0x2000L, service.current(UCSBDate.class).lastModified());
+    assertEquals("\"1000-0\"", service.current(UCSBOrganization.class).etag());
+  }
+
+  @Test
+  void last_modified_never_goes_backwards() {
+    when(clock.millis()).thenReturn(0x3000L, 0x1000L, 0x1000L);
+    EntityVersionService service = new EntityVersionService(clock);
+
+    service.bump(UCSBDate.class);
+    service.bump(UCSBDate.class);
+
+    assertEquals("\"3000-2\"", service.current(UCSBDate.class).etag());
+    assertEquals(0x3000L, service.current(UCSBDate.class).lastModified());
+  }
+
+  @Test
+  void default_constructor_uses_system_clock() {
+    EntityVersionService first = new EntityVersionService();
+    first.bump(UCSBDate.class);
+    assertNotEquals(first.current(UCSBOrganization.class).etag(), first.current(UCSBDate.class).etag());
+  }
+}
@@ -0,0 +1,102 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.OutboxEvent;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.errors.UnknownFieldException;
+
+class FieldProjectionServiceTests {
+
+  EntityManager entityManager = mock(EntityManager.class);
+  @SuppressWarnings("unchecked")
+  TypedQuery<Tuple> query = mock(TypedQuery.class, RETURNS_SELF);
+  FieldProjectionService service = new FieldProjectionService(entityManager);
+
+  @BeforeEach
+  void setup() {
+    when(entityManager.createQuery(anyString(), eq(Tuple.class))).thenReturn(query);
+  }
+
+  private static Tuple tuple(Object... values) {
+    Tuple tuple = mock(Tuple.class);
+    for (int i = 0; i < values.length; i++) {
+      when(tuple.get(i)).thenReturn(values[i]);
+    }
+    return tuple;
+  }
+
+  @Test
+  void fields_are_named_as_in_the_json_and_the_key_is_found() {
+    FieldProjectionService.Table articles = service.table(Articles.class);
+
+    assertEquals("articles", articles.entityName());
+    assertEquals("id", articles.key());
+    assertEquals("Id", articles.attributes().get("id"));
+    assertEquals("explanation", articles.attributes().get("explanation"));
+    assertSame(articles, service.table(Articles.class));
+
+    // constants are not columns
+    assertEquals(List.of("id", "aggregateType", "aggregateId", "eventType", "payload", "createdAt", "attempts",
+        "lastError"), List.copyOf(service.table(OutboxEvent.class).attributes().keySet()));
+  }
+
+  @Test
+  void only_the_key_and_the_given_fields_are_selected() {
+    List<Tuple> tuples = List.of(tuple(1L, "first"), tuple(2L, "second"));
+    when(query.getResultList()).thenReturn(tuples);
+
+    List<Map<String, Object>> rows = service.select(Articles.class, List.of(" title", "id"), null, 1000);
+
+    verify(entityManager).createQuery("SELECT t.Id, t.title FROM articles t ORDER BY t.Id", Tuple.class);
+    verify(query, never()).setParameter(anyString(), any());
+    verify(query).setMaxResults(1000);
+    assertEquals(List.of(Map.of("id", 1L, "title", "first"), Map.of("id", 2L, "title", "second")), rows);
+    assertEquals(List.of("id", "title"), List.copyOf(rows.get(0).keySet()));
+  }
+
+  @Test
+  void rows_after_a_key_are_selected_in_key_order() {
+    List<Tuple> tuples = List.of(tuple("B", false));
+    when(query.getResultList()).thenReturn(tuples);
+
+    List<Map<String, Object>> rows = service.select(UCSBOrganization.class, List.of("inactive"), "A", 3);
+
+    verify(entityManager).createQuery(
+        "SELECT t.orgCode, t.inactive FROM ucsborganization t WHERE t.orgCode > :after ORDER BY t.orgCode",
+        Tuple.class);
+    verify(query).setParameter("after", "A");
+    verify(query).setMaxResults(3);
+    assertEquals(List.of(Map.of("orgCode", "B", "inactive", false)), rows);
+  }
+
+  @Test
+  void unknown_fields_are_refused() {
+    UnknownFieldException e = assertThrows(UnknownFieldException.class,
+        () -> service.select(Articles.class, List.of("title", "body"), null, 10));
+
+    assertEquals("Articles has no field body", e.getMessage());
+    verify(entityManager, never()).createQuery(anyString(), eq(Tuple.class));
+  }
+}
@@ -0,0 +1,178 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.apache.catalina.Globals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.DigestUtils;
+
+class FrontendAssetServiceTests {
+
+  static final String SCRIPT = "/static/js/main.1a2b3c4d.js";
+
+  @TempDir
+  Path build;
+
+  byte[] index = "<html>index</html>".getBytes(StandardCharsets.UTF_8);
+  byte[] script = new byte[64 * 1024];
+
+  FrontendAssetService frontendAssets;
+
+  private void write(String path, byte[] content) throws Exception {
+    Path file = build.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content);
+  }
+
+  @BeforeEach
+  void setup() throws Exception {
+    write("index.html", index);
+    write("index.html.br", "br".getBytes(StandardCharsets.UTF_8));
+    write("index.html.gz", "gz".getBytes(StandardCharsets.UTF_8));
+    write(SCRIPT.substring(1), script);
+    write(SCRIPT.substring(1) + ".gz", "gz".getBytes(StandardCharsets.UTF_8));
+    write("data.unknown-type", new byte[] { 1 });
+    frontendAssets = new FrontendAssetService(build.toUri().toString());
+  }
+
+  @AfterEach
+  void close() throws Exception {
+    frontendAssets.close();
+  }
+
+  private MockHttpServletResponse get(String path, String acceptEncoding) throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+    request.addHeader("Accept-Encoding", acceptEncoding);
+    return serve(request);
+  }
+
+  private MockHttpServletResponse serve(MockHttpServletRequest request) throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    frontendAssets.handlers().get(request.getRequestURI()).handleRequest(request, response);
+    return response;
+  }
+
+  @Test
+  void every_file_of_the_build_is_routed_but_not_its_compressed_copies() throws Exception {
+    assertEquals(Set.of("/", "/index.html", SCRIPT, "/data.unknown-type"), frontendAssets.routes.keySet());
+
+    MockHttpServletResponse response = get("/data.unknown-type", "br");
+    assertEquals("application/octet-stream", response.getContentType());
+    assertNull(response.getHeader("Content-Encoding"));
+    assertNull(response.getHeader("Vary"));
+  }
+
+  @Test
+  void the_most_preferred_accepted_encoding_is_sent() throws Exception {
+    MockHttpServletResponse response = get("/", "gzip, deflate, br");
+
+    assertEquals(200, response.getStatus());
+    assertEquals("br", response.getContentAsString());
+    assertEquals("br", response.getHeader("Content-Encoding"));
+    assertEquals("Accept-Encoding", response.getHeader("Vary"));
+    assertEquals("\"" + DigestUtils.md5DigestAsHex(index) + "-br\"", response.getHeader("ETag"));
+    assertEquals("no-cache", response.getHeader("Cache-Control"));
+    assertEquals("text/html", response.getContentType());
+  }
+
+  @Test
+  void encodings_the_client_refuses_are_skipped() throws Exception {
+    MockHttpServletResponse refused = get("/index.html", "br;q=0, gzip;q=0.5");
+    assertEquals("gz", refused.getContentAsString());
+    assertEquals("gzip", refused.getHeader("Content-Encoding"));
+
+    MockHttpServletResponse wildcard = get("/index.html", "*");
+    assertEquals("br", wildcard.getContentAsString());
+
+    MockHttpServletResponse none = get("/index.html", "deflate");
+    assertArrayEquals(index, none.getContentAsByteArray());
+    assertNull(none.getHeader("Content-Encoding"));
+    assertEquals("\"" + DigestUtils.md5DigestAsHex(index) + "\"", none.getHeader("ETag"));
+  }
+
+  @Test
+  void content_hashed_files_are_cached_for_good() throws Exception {
+    MockHttpServletResponse response = serve(new MockHttpServletRequest("GET", SCRIPT));
+
+    assertEquals("public, max-age=31536000, immutable", response.getHeader("Cache-Control"));
+    assertArrayEquals(script, response.getContentAsByteArray());
+  }
+
+  @Test
+  void large_files_are_left_to_tomcat_sendfile() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", SCRIPT);
+    request.setAttribute(Globals.SENDFILE_SUPPORTED_ATTR, Boolean.TRUE);
+
+    MockHttpServletResponse response = serve(request);
+
+    assertEquals(0, response.getContentAsByteArray().length);
+    assertEquals(script.length, response.getContentLengthLong());
+    Path file = Path.of((String) request.getAttribute(Globals.SENDFILE_FILENAME_ATTR));
+    assertArrayEquals(script, Files.readAllBytes(file));
+    assertEquals(0L, request.getAttribute(Globals.SENDFILE_FILE_START_ATTR));
+    assertEquals((long) script.length, request.getAttribute(Globals.SENDFILE_FILE_END_ATTR));
+
+    // small files are written directly
+    MockHttpServletRequest small = new MockHttpServletRequest("GET", "/index.html");
+    small.setAttribute(Globals.SENDFILE_SUPPORTED_ATTR, Boolean.TRUE);
+    assertArrayEquals(index, serve(small).getContentAsByteArray());
+    assertNull(small.getAttribute(Globals.SENDFILE_FILENAME_ATTR));
+  }
+
+  @Test
+  void a_current_copy_is_not_sent_again() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/index.html");
+    request.addHeader("If-None-Match", "\"" + DigestUtils.md5DigestAsHex(index) + "\"");
+
+    MockHttpServletResponse response = serve(request);
+
+    assertEquals(304, response.getStatus());
+    assertEquals(0, response.getContentAsByteArray().length);
+  }
+
+  @Test
+  void head_sends_only_the_headers_and_other_methods_are_refused() throws Exception {
+    MockHttpServletResponse head = serve(new MockHttpServletRequest("HEAD", "/index.html"));
+    assertEquals(200, head.getStatus());
+    assertEquals(index.length, head.getContentLengthLong());
+    assertEquals(0, head.getContentAsByteArray().length);
+
+    MockHttpServletResponse post = serve(new MockHttpServletRequest("POST", "/index.html"));
+    assertEquals(405, post.getStatus());
+    assertEquals("GET, HEAD", post.getHeader("Allow"));
+  }
+
+  @Test
+  void app_routes_get_the_index_page() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    frontendAssets.serveIndex(new MockHttpServletRequest("GET", "/ucsbdates/list"), response);
+
+    assertArrayEquals(index, response.getContentAsByteArray());
+  }
+
+  @Test
+  void without_a_build_there_is_nothing_to_serve() throws Exception {
+    FrontendAssetService empty = new FrontendAssetService("classpath:/no-frontend-build/");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    empty.serveIndex(new MockHttpServletRequest("GET", "/ucsbdates/list"), response);
+    empty.close();
+
+    assertTrue(empty.routes.isEmpty());
+    assertEquals(404, response.getStatus());
+    assertFalse(Files.exists(empty.directory));
+  }
+}
@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import edu.ucsb.cs156.example.entities.OutboxEvent;
+
+class InProcessEventBusTests {
+
+  @Test
+  void events_are_published_to_the_application_listeners() {
+    InProcessEventBus bus = new InProcessEventBus();
+    bus.eventPublisher = mock(ApplicationEventPublisher.class);
+    OutboxEvent event = OutboxEvent.builder().id(1L).aggregateType("Articles").eventType(OutboxEvent.SAVED).build();
+
+    bus.publish(event);
+
+    verify(bus.eventPublisher).publishEvent(event);
+  }
+}
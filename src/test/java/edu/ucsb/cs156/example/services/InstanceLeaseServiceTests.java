@@ -0,0 +1,129 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import edu.ucsb.cs156.example.entities.InstanceLease;
+import edu.ucsb.cs156.example.repositories.InstanceLeaseRepository;
+
+class InstanceLeaseServiceTests {
+
+  static final LocalDateTime NOW = LocalDateTime.parse("2022-03-01T12:00:00");
+  static final String OWNER = "1234@host/a";
+
+  InstanceLeaseRepository repository = mock(InstanceLeaseRepository.class);
+  ConfigurableApplicationContext context = mock(ConfigurableApplicationContext.class);
+  ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+
+  InstanceLeaseService lease;
+
+  @BeforeEach
+  void setup() {
+    Clock clock = Clock.fixed(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+    lease = new InstanceLeaseService(Duration.ofSeconds(30), clock, executor, OWNER);
+    lease.instanceLeaseRepository = repository;
+    lease.context = context;
+  }
+
+  @Test
+  void the_lease_is_taken_at_startup_and_renewed_every_third_of_its_duration() {
+    when(repository.acquire(OWNER, NOW, NOW.plusSeconds(30))).thenReturn(1);
+
+    lease.acquire();
+
+    verify(repository).acquire(OWNER, NOW, NOW.plusSeconds(30));
+    verify(executor).scheduleAtFixedRate(any(), eq(10000L), eq(10000L), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  void startup_fails_while_another_instance_holds_the_lease() {
+    when(repository.findById(InstanceLease.ID)).thenReturn(Optional.of(
+        new InstanceLease(InstanceLease.ID, "99@other/b", NOW.plusSeconds(12))));
+
+    IllegalStateException e = assertThrows(IllegalStateException.class, lease::acquire);
+
+    assertEquals("Only one instance of the app may run against this database, "
+        + "and it is held by 99@other/b until 2022-03-01T12:00:12 UTC", e.getMessage());
+    verify(executor, never()).scheduleAtFixedRate(any(), anyLong(), anyLong(), any());
+  }
+
+  @Test
+  void startup_fails_when_the_lease_row_is_missing() {
+    when(repository.findById(InstanceLease.ID)).thenReturn(Optional.empty());
+
+    IllegalStateException e = assertThrows(IllegalStateException.class, lease::acquire);
+
+    assertEquals("Only one instance of the app may run against this database, and its row is missing",
+        e.getMessage());
+  }
+
+  @Test
+  void a_renewed_lease_keeps_the_app_running() {
+    when(repository.acquire(OWNER, NOW, NOW.plusSeconds(30))).thenReturn(1);
+
+    lease.renewOrStop();
+
+    verify(context, never()).close();
+  }
+
+  @Test
+  void a_lease_taken_over_by_another_instance_shuts_the_app_down() {
+    when(repository.acquire(OWNER, NOW, NOW.plusSeconds(30))).thenReturn(0);
+
+    lease.renewOrStop();
+
+    verify(context).close();
+  }
+
+  @Test
+  void a_failed_renewal_is_retried_on_the_next_run() {
+    when(repository.acquire(OWNER, NOW, NOW.plusSeconds(30)))
+        .thenThrow(new DataAccessResourceFailureException("database unreachable"));
+
+    lease.renewOrStop();
+
+    verify(context, never()).close();
+  }
+
+  @Test
+  void the_lease_is_released_on_shutdown() {
+    lease.release();
+
+    verify(executor).shutdown();
+    verify(repository).release(OWNER);
+  }
+
+  @Test
+  void the_owner_names_the_process() {
+    InstanceLeaseService service = new InstanceLeaseService(Duration.ofSeconds(30));
+    service.instanceLeaseRepository = repository;
+    when(repository.acquire(any(), any(), any())).thenReturn(1);
+
+    service.acquire();
+    service.release();
+
+    verify(repository).release(startsWith(ManagementFactory.getRuntimeMXBean().getName() + "/"));
+  }
+}
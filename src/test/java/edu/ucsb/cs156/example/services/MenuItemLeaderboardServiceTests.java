@@ -0,0 +1,164 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.TopMenuItem;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewStatsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+
+class MenuItemLeaderboardServiceTests {
+
+  UCSBDiningCommonsMenuItemRepository menuItemRepository = mock(UCSBDiningCommonsMenuItemRepository.class);
+  MenuItemReviewStatsRepository statsRepository = mock(MenuItemReviewStatsRepository.class);
+
+  MenuItemLeaderboardService leaderboard = new MenuItemLeaderboardService();
+
+  @BeforeEach
+  void setup() {
+    leaderboard.ucsbDiningCommonsMenuItemRepository = menuItemRepository;
+    leaderboard.menuItemReviewStatsRepository = statsRepository;
+  }
+
+  @AfterEach
+  void clearSynchronization() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  private static UCSBDiningCommonsMenuItem item(long id, String diningCommonsCode) {
+    return UCSBDiningCommonsMenuItem.builder()
+        .Id(id).diningCommonsCode(diningCommonsCode).name("item " + id).station("station").build();
+  }
+
+  private static List<Long> ids(List<TopMenuItem> top) {
+    return top.stream().map(t -> t.getMenuItem().getId()).toList();
+  }
+
+  @Test
+  void entry_keeps_the_menu_item_and_review_totals() {
+    MenuItemLeaderboardService.Entry entry = new MenuItemLeaderboardService.Entry(1, null, null, null, 0, 0)
+        .withMenuItem(item(1, "ortega"))
+        .withReviews(2, 7);
+
+    assertEquals("ortega", entry.diningCommonsCode());
+    assertEquals("item 1", entry.name());
+    assertEquals("station", entry.station());
+    assertEquals(2, entry.reviewCount());
+    assertEquals(7, entry.totalStars());
+    assertEquals(3.5, entry.averageStars());
+  }
+
+  @Test
+  void rebuild_loads_menu_items_and_review_totals() {
+    when(menuItemRepository.findAll()).thenReturn(List.of(item(1, "ortega"), item(2, "ortega"), item(3, "portola")));
+    when(statsRepository.findAll()).thenReturn(List.of(
+        MenuItemReviewStats.builder().itemId(1).reviewCount(2).totalStars(6).build(),
+        MenuItemReviewStats.builder().itemId(2).reviewCount(1).totalStars(5).build(),
+        MenuItemReviewStats.builder().itemId(3).reviewCount(1).totalStars(4).build()));
+
+    leaderboard.rebuild();
+
+    List<TopMenuItem> top = leaderboard.top("ortega", 10);
+    assertEquals(List.of(2L, 1L), ids(top));
+    assertEquals("item 2", top.get(0).getMenuItem().getName());
+    assertEquals("ortega", top.get(0).getMenuItem().getDiningCommonsCode());
+    assertEquals(1, top.get(0).getReviewCount());
+    assertEquals(5.0, top.get(0).getAverageStars());
+    assertEquals(List.of(2L, 3L, 1L), ids(leaderboard.top(null, 10)));
+  }
+
+  @Test
+  void top_keeps_only_the_best_n() {
+    for (long id = 1; id <= 5; id++) {
+      leaderboard.menuItemSaved(item(id, "ortega"));
+      leaderboard.reviewsChanged(id, 1, id);
+    }
+
+    assertEquals(List.of(5L, 4L), ids(leaderboard.top("ortega", 2)));
+  }
+
+  @Test
+  void ties_are_broken_by_review_count_then_id() {
+    leaderboard.menuItemSaved(item(1, "ortega"));
+    leaderboard.menuItemSaved(item(2, "ortega"));
+    leaderboard.menuItemSaved(item(3, "ortega"));
+    leaderboard.reviewsChanged(3, 1, 4);
+    leaderboard.reviewsChanged(2, 1, 4);
+    leaderboard.reviewsChanged(1, 2, 8);
+
+    assertEquals(List.of(1L, 2L, 3L), ids(leaderboard.top("ortega", 3)));
+  }
+
+  @Test
+  void items_without_reviews_or_dining_commons_are_left_out() {
+    leaderboard.menuItemSaved(item(1, "ortega"));
+    leaderboard.reviewsChanged(2, 1, 5);
+    leaderboard.menuItemSaved(item(3, "ortega"));
+    leaderboard.reviewsChanged(3, 1, 5);
+    leaderboard.reviewsChanged(3, -1, -5);
+
+    assertTrue(leaderboard.top("ortega", 10).isEmpty());
+    assertTrue(leaderboard.top(null, 10).isEmpty());
+    assertTrue(leaderboard.top("portola", 10).isEmpty());
+  }
+
+  @Test
+  void reviews_recorded_before_the_menu_item_count_once_it_is_saved() {
+    leaderboard.reviewsChanged(1, 1, 3);
+    leaderboard.menuItemSaved(item(1, "ortega"));
+
+    assertEquals(List.of(1L), ids(leaderboard.top("ortega", 10)));
+  }
+
+  @Test
+  void moving_a_menu_item_moves_it_between_dining_commons() {
+    leaderboard.menuItemSaved(item(1, "ortega"));
+    leaderboard.reviewsChanged(1, 1, 3);
+    leaderboard.menuItemSaved(item(1, "portola"));
+
+    assertTrue(leaderboard.top("ortega", 10).isEmpty());
+    assertEquals(List.of(1L), ids(leaderboard.top("portola", 10)));
+  }
+
+  @Test
+  void deleted_menu_items_are_removed() {
+    leaderboard.menuItemSaved(item(1, "ortega"));
+    leaderboard.reviewsChanged(1, 1, 3);
+    leaderboard.reviewsChanged(2, 1, 3);
+
+    leaderboard.menuItemDeleted(1);
+    leaderboard.menuItemDeleted(2);
+    leaderboard.menuItemDeleted(3);
+
+    assertTrue(leaderboard.top("ortega", 10).isEmpty());
+    assertTrue(leaderboard.top(null, 10).isEmpty());
+  }
+
+  @Test
+  void changes_made_in_a_transaction_are_applied_after_commit() {
+    TransactionSynchronizationManager.initSynchronization();
+    leaderboard.menuItemSaved(item(1, "ortega"));
+    leaderboard.reviewsChanged(1, 1, 3);
+
+    assertTrue(leaderboard.top("ortega", 10).isEmpty());
+
+    List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+    synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+    assertEquals(List.of(1L), ids(leaderboard.top("ortega", 10)));
+  }
+}
@@ -0,0 +1,141 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.entities.OutboxEvent;
+import edu.ucsb.cs156.example.models.DiningCommonsReviewStats;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewStatsRepository;
+
+class MenuItemReviewStatsServiceTests {
+
+  MenuItemReviewStatsRepository repository = mock(MenuItemReviewStatsRepository.class);
+
+  MenuItemLeaderboardService leaderboard = mock(MenuItemLeaderboardService.class);
+
+  MenuItemReviewStatsService service = new MenuItemReviewStatsService();
+
+  @BeforeEach
+  void setup() {
+    service.menuItemReviewStatsRepository = repository;
+    service.menuItemLeaderboardService = leaderboard;
+    service.objectMapper = new ObjectMapper();
+  }
+
+  private static OutboxEvent event(String aggregateType, String eventType, String payload) {
+    return OutboxEvent.builder().aggregateType(aggregateType).aggregateId(1L).eventType(eventType).payload(payload).build();
+  }
+
+  @Test
+  void review_events_from_the_outbox_are_applied() throws Exception {
+    when(repository.addToTotals(7L, 1, 4)).thenReturn(1);
+
+    service.outboxEvent(event("MenuItemReview", OutboxEvent.REVIEW_ADDED, "{\"itemId\":7,\"stars\":4}"));
+    service.outboxEvent(event("MenuItemReview", OutboxEvent.REVIEW_REMOVED, "{\"itemId\":7,\"stars\":2}"));
+
+    verify(leaderboard).reviewsChanged(7L, 1, 4);
+    verify(repository).addToTotals(7L, -1, -2);
+  }
+
+  @Test
+  void other_outbox_events_are_ignored() throws Exception {
+    service.outboxEvent(event("Articles", OutboxEvent.SAVED, null));
+    service.outboxEvent(event("MenuItemReview", OutboxEvent.SAVED, "{\"itemId\":7,\"stars\":4}"));
+
+    verifyNoInteractions(repository, leaderboard);
+  }
+
+  @Test
+  void first_review_of_an_item_creates_its_row() {
+    when(repository.addToTotals(7L, 1, 4)).thenReturn(0);
+
+    service.reviewAdded(7L, 4);
+
+    verify(repository).save(MenuItemReviewStats.builder().itemId(7L).reviewCount(1).totalStars(4).build());
+    verify(leaderboard).reviewsChanged(7L, 1, 4);
+  }
+
+  @Test
+  void later_reviews_add_to_the_existing_row() {
+    when(repository.addToTotals(7L, 1, 4)).thenReturn(1);
+
+    service.reviewAdded(7L, 4);
+
+    verify(repository, never()).save(any());
+    verify(leaderboard).reviewsChanged(7L, 1, 4);
+  }
+
+  @Test
+  void removed_review_is_subtracted() {
+    service.reviewRemoved(7L, 4);
+
+    verify(repository).addToTotals(7L, -1, -4);
+    verify(leaderboard).reviewsChanged(7L, -1, -4);
+    verify(repository, never()).save(any());
+  }
+
+  @Test
+  void reviews_without_an_item_are_not_counted() {
+    service.reviewAdded(null, 4);
+    service.reviewRemoved(null, 4);
+
+    verifyNoInteractions(repository, leaderboard);
+  }
+
+  @Test
+  void stats_for_item_without_reviews_are_zero() {
+    when(repository.findById(anyLong())).thenReturn(Optional.empty());
+
+    MenuItemReviewStats stats = service.statsForMenuItem(7L);
+
+    assertEquals(7L, stats.getItemId());
+    assertEquals(0, stats.getReviewCount());
+    assertNull(stats.getAverageStars());
+  }
+
+  @Test
+  void stats_for_item_come_from_its_row() {
+    MenuItemReviewStats row = MenuItemReviewStats.builder().itemId(7L).reviewCount(2).totalStars(9).build();
+    when(repository.findById(7L)).thenReturn(Optional.of(row));
+
+    assertSame(row, service.statsForMenuItem(7L));
+    assertEquals(4.5, row.getAverageStars());
+  }
+
+  @Test
+  void stats_for_dining_commons_without_reviews_are_zero() {
+    when(repository.findByDiningCommonsCode("ortega")).thenReturn(Optional.empty());
+
+    DiningCommonsReviewStats stats = service.statsForDiningCommons("ortega");
+
+    assertEquals("ortega", stats.getDiningCommonsCode());
+    assertEquals(0, stats.getReviewCount());
+    assertNull(stats.getAverageStars());
+  }
+
+  @Test
+  void stats_for_dining_commons_come_from_the_repository() {
+    DiningCommonsReviewStats totals = DiningCommonsReviewStats.builder()
+        .diningCommonsCode("ortega").reviewCount(4).totalStars(10).build();
+    when(repository.findByDiningCommonsCode("ortega")).thenReturn(Optional.of(totals));
+
+    assertSame(totals, service.statsForDiningCommons("ortega"));
+    assertEquals(2.5, totals.getAverageStars());
+  }
+}
@@ -0,0 +1,86 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+
+class NdjsonExportServiceTests {
+
+  ObjectMapper mapper = new ObjectMapper();
+  PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+  EntityManager entityManager = mock(EntityManager.class);
+  NdjsonExportService service = new NdjsonExportService(mapper, transactionManager, entityManager);
+
+  UCSBOrganization first = UCSBOrganization.builder().orgCode("A").orgTranslationShort("A").orgTranslation("AA").build();
+  UCSBOrganization second = UCSBOrganization.builder().orgCode("B").orgTranslationShort("B").orgTranslation("BB").build();
+
+  @Test
+  void export_writes_one_line_per_row_and_detaches_each_row() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    service.export(() -> Stream.of(first, second)).writeTo(out);
+
+    String expected = mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n";
+    assertEquals(expected, out.toString());
+    verify(entityManager, times(1)).detach(first);
+    verify(entityManager, times(1)).detach(second);
+  }
+
+  @Test
+  void export_of_empty_stream_writes_nothing() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    service.export(Stream::empty).writeTo(out);
+
+    assertEquals("", out.toString());
+    verify(entityManager, never()).detach(any());
+  }
+
+  @Test
+  void export_reads_the_stream_in_a_read_only_transaction_and_closes_it() throws Exception {
+    AtomicBoolean closed = new AtomicBoolean(false);
+
+    service.export(() -> Stream.of(first).onClose(() -> closed.set(true))).writeTo(new ByteArrayOutputStream());
+
+    ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+    verify(transactionManager, times(1)).getTransaction(definition.capture());
+    assertTrue(definition.getValue().isReadOnly());
+    assertTrue(closed.get());
+  }
+
+  @Test
+  void export_reports_write_failures() {
+    OutputStream broken = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        throw new IOException("client went away");
+      }
+    };
+
+    assertThrows(UncheckedIOException.class,
+        () -> service.export(() -> Stream.of(first, second)).writeTo(broken));
+  }
+}
@@ -0,0 +1,191 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import edu.ucsb.cs156.example.entities.OutboxEvent;
+import edu.ucsb.cs156.example.repositories.OutboxEventRepository;
+
+class OutboxRelayServiceTests {
+
+  static final PageRequest BATCH = PageRequest.of(0, 2);
+
+  OutboxEventRepository repository = mock(OutboxEventRepository.class);
+  EventBus eventBus = mock(EventBus.class);
+  PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+  ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+
+  OutboxRelayService relay;
+
+  @BeforeEach
+  void setup() {
+    relay = new OutboxRelayService(2, 3, Duration.ofSeconds(10), executor);
+    relay.outboxEventRepository = repository;
+    relay.eventBus = eventBus;
+    relay.transactionManager = transactionManager;
+  }
+
+  private static OutboxEvent event(long id, int attempts) {
+    return OutboxEvent.builder().id(id).aggregateType("Articles").aggregateId(id)
+        .eventType(OutboxEvent.SAVED).attempts(attempts).build();
+  }
+
+  @Test
+  void events_are_published_and_deleted_a_batch_at_a_time() {
+    when(repository.findPending(3, BATCH)).thenReturn(List.of(event(1, 0), event(2, 0)), List.of(event(3, 0)));
+
+    relay.drain();
+
+    verify(eventBus).publish(event(1, 0));
+    verify(eventBus).publish(event(2, 0));
+    verify(eventBus).publish(event(3, 0));
+    verify(repository).deletePublished(List.of(1L, 2L));
+    verify(repository).deletePublished(List.of(3L));
+    verify(repository, times(2)).findPending(3, BATCH);
+    verify(transactionManager, times(2)).commit(any());
+  }
+
+  @Test
+  void an_empty_outbox_publishes_nothing() {
+    when(repository.findPending(3, BATCH)).thenReturn(List.of());
+
+    relay.drain();
+
+    verify(eventBus, never()).publish(any());
+    verify(repository, never()).deletePublished(any());
+  }
+
+  @Test
+  void when_a_batch_fails_only_the_failing_events_are_counted_as_failed() {
+    List<OutboxEvent> batch = List.of(event(1, 0), event(2, 0));
+    List<OutboxEvent> retried = List.of(event(1, 0), event(2, 0), event(3, 2));
+    when(repository.findPending(3, BATCH)).thenReturn(batch, retried);
+    doThrow(new IllegalStateException("no such item")).when(eventBus).publish(event(2, 0));
+    doThrow(new IllegalStateException("still broken")).when(eventBus).publish(event(3, 2));
+
+    relay.drain();
+
+    // the batch, then each failing event on its own
+    verify(transactionManager, times(3)).rollback(any());
+    verify(repository).deletePublished(List.of(1L));
+    verify(repository).recordFailure(2L, "java.lang.IllegalStateException: no such item");
+    verify(repository).recordFailure(3L, "java.lang.IllegalStateException: still broken");
+    // the rest of the outbox waits for the next poll
+    verify(repository, times(2)).findPending(3, BATCH);
+  }
+
+  @Test
+  void the_relay_survives_a_database_outage() {
+    when(repository.findPending(anyInt(), any())).thenThrow(new IllegalStateException("connection refused"));
+
+    relay.drain();
+
+    verify(repository, times(2)).findPending(3, BATCH);
+    verify(repository, never()).recordFailure(anyLong(), anyString());
+  }
+
+  @Test
+  void long_errors_are_truncated() {
+    String error = OutboxRelayService.describe(new IllegalStateException("x".repeat(5000)));
+
+    assertEquals(OutboxRelayService.MAX_ERROR_LENGTH, error.length());
+  }
+
+  @Test
+  void the_outbox_is_polled_from_startup() {
+    when(repository.findPending(3, BATCH)).thenReturn(List.of());
+    relay.start();
+
+    ArgumentCaptor<Runnable> poll = ArgumentCaptor.forClass(Runnable.class);
+    verify(executor).scheduleWithFixedDelay(poll.capture(), eq(0L), eq(10000L), eq(TimeUnit.MILLISECONDS));
+    poll.getValue().run();
+
+    verify(repository).findPending(3, BATCH);
+  }
+
+  @Test
+  void wakes_are_merged_until_the_relay_runs() {
+    when(repository.findPending(3, BATCH)).thenReturn(List.of());
+    relay.start();
+
+    relay.wake();
+    relay.wake();
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+    verify(executor).execute(task.capture());
+
+    task.getValue().run();
+    relay.wake();
+
+    verify(repository).findPending(3, BATCH);
+    verify(executor, times(2)).execute(any());
+  }
+
+  @Test
+  void wakes_after_shutdown_are_ignored() throws Exception {
+    doThrow(new RejectedExecutionException()).when(executor).execute(any());
+
+    relay.start();
+    relay.close();
+    relay.wake();
+
+    verify(executor).shutdown();
+    verify(executor).awaitTermination(OutboxRelayService.SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void the_default_executor_runs_the_relay() throws Exception {
+    OutboxRelayService service = new OutboxRelayService(2, 3, Duration.ofSeconds(10));
+    service.outboxEventRepository = repository;
+    service.eventBus = eventBus;
+    service.transactionManager = transactionManager;
+    when(repository.findPending(3, BATCH)).thenReturn(List.of());
+
+    service.start();
+
+    verify(repository, timeout(5000)).findPending(3, BATCH);
+    service.close();
+  }
+
+  @Test
+  void wakes_before_startup_are_left_for_the_first_poll() {
+    relay.wake();
+
+    verify(executor, never()).execute(any());
+  }
+
+  @Test
+  void the_relay_starts_after_the_in_memory_state_is_loaded() throws Exception {
+    int start = OutboxRelayService.class.getMethod("start").getAnnotation(Order.class).value();
+
+    assertEquals(OutboxRelayService.LOAD_ORDER, MenuItemLeaderboardService.class.getMethod("rebuild")
+        .getAnnotation(Order.class).value());
+    assertEquals(OutboxRelayService.LOAD_ORDER, SearchIndexService.class.getMethod("rebuild")
+        .getAnnotation(Order.class).value());
+    assertTrue(start > OutboxRelayService.LOAD_ORDER);
+  }
+}
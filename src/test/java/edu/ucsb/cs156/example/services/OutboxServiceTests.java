@@ -0,0 +1,81 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.UncheckedIOException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.OutboxEvent;
+import edu.ucsb.cs156.example.repositories.OutboxEventRepository;
+
+class OutboxServiceTests {
+
+  OutboxEventRepository repository = mock(OutboxEventRepository.class);
+  OutboxRelayService relay = mock(OutboxRelayService.class);
+
+  OutboxService outbox = new OutboxService();
+
+  @BeforeEach
+  void setup() {
+    outbox.outboxEventRepository = repository;
+    outbox.outboxRelayService = relay;
+    outbox.objectMapper = new ObjectMapper();
+    TransactionSynchronizationManager.initSynchronization();
+  }
+
+  @AfterEach
+  void clear() {
+    TransactionSynchronizationManager.clearSynchronization();
+  }
+
+  private OutboxEvent saved() {
+    ArgumentCaptor<OutboxEvent> event = ArgumentCaptor.forClass(OutboxEvent.class);
+    verify(repository).save(event.capture());
+    return event.getValue();
+  }
+
+  @Test
+  void events_are_saved_and_the_relay_is_woken_after_commit() {
+    outbox.record(Articles.class, 3L, OutboxEvent.DELETED);
+
+    OutboxEvent event = saved();
+    assertEquals("Articles", event.getAggregateType());
+    assertEquals(3L, event.getAggregateId());
+    assertEquals(OutboxEvent.DELETED, event.getEventType());
+    assertNull(event.getPayload());
+    assertEquals(0, event.getAttempts());
+    verify(relay, never()).wake();
+
+    TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.afterCommit());
+    verify(relay).wake();
+  }
+
+  @Test
+  void payloads_are_stored_as_json() {
+    outbox.record(MenuItemReview.class, 5L, OutboxEvent.REVIEW_ADDED, new MenuItemReviewStatsService.Review(7L, 4));
+
+    assertEquals("{\"itemId\":7,\"stars\":4}", saved().getPayload());
+  }
+
+  @Test
+  void a_payload_that_is_not_json_is_refused() {
+    assertThrows(UncheckedIOException.class,
+        () -> outbox.record(Articles.class, 3L, OutboxEvent.SAVED, new Object()));
+    verify(repository, never()).save(any());
+  }
+}
@@ -0,0 +1,143 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.OutboxEvent;
+import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+
+class SearchIndexServiceTests {
+
+  @TempDir
+  Path indexDirectory;
+
+  ArticlesRepository articlesRepository = mock(ArticlesRepository.class);
+  HelpRequestRepository helpRequestRepository = mock(HelpRequestRepository.class);
+
+  SearchIndexService searchIndex;
+
+  @BeforeEach
+  void setup() throws IOException {
+    searchIndex = new SearchIndexService(indexDirectory.toString());
+    searchIndex.articlesRepository = articlesRepository;
+    searchIndex.helpRequestRepository = helpRequestRepository;
+  }
+
+  @AfterEach
+  void close() throws Exception {
+    searchIndex.close();
+  }
+
+  @Test
+  void rebuild_indexes_articles_and_help_requests() throws Exception {
+    when(articlesRepository.findAll()).thenReturn(List.of(
+        Articles.builder().Id(1L).title("Spring Boot tips").explanation("Caching and transactions").build(),
+        Articles.builder().Id(2L).title("Lucene in action").explanation(null).build()));
+    when(helpRequestRepository.findAll()).thenReturn(List.of(
+        HelpRequest.builder().id(1L).title("Lucene question").requestBody("How do I index Spring beans?").build()));
+
+    searchIndex.rebuild();
+
+    assertEquals(List.of(2L), searchIndex.search(Articles.class, "lucene", 10));
+    assertEquals(List.of(1L), searchIndex.search(Articles.class, "transactions", 10));
+    assertEquals(List.of(1L), searchIndex.search(HelpRequest.class, "lucene", 10));
+    assertEquals(List.of(), searchIndex.search(HelpRequest.class, "caching", 10));
+  }
+
+  @Test
+  void title_matches_rank_first_and_the_limit_is_applied() throws Exception {
+    searchIndex.indexed(Articles.class, 1, "Gardening", "A note on pizza dough");
+    searchIndex.indexed(Articles.class, 2, "Pizza", "Dough, sauce and cheese");
+    searchIndex.indexed(Articles.class, 3, "Bread", "Nothing about it");
+
+    assertEquals(List.of(2L, 1L), searchIndex.search(Articles.class, "pizza", 10));
+    assertEquals(List.of(2L), searchIndex.search(Articles.class, "pizza", 1));
+    assertEquals(List.of(2L), searchIndex.search(Articles.class, "pizza -gardening", 10));
+    assertEquals(List.of(1L), searchIndex.search(Articles.class, "\"pizza dough\"", 10));
+  }
+
+  @Test
+  void updates_replace_and_deletes_remove_documents() throws Exception {
+    searchIndex.indexed(HelpRequest.class, 1, "Old title", null);
+    searchIndex.indexed(HelpRequest.class, 2, "Other", "old");
+    assertEquals(List.of(1L, 2L), searchIndex.search(HelpRequest.class, "old", 10));
+
+    searchIndex.indexed(HelpRequest.class, 1, "New title", null);
+    searchIndex.removed(HelpRequest.class, 2);
+
+    assertEquals(List.of(), searchIndex.search(HelpRequest.class, "old", 10));
+    assertEquals(List.of(1L), searchIndex.search(HelpRequest.class, "new", 10));
+  }
+
+  private static OutboxEvent event(String aggregateType, long id, String eventType) {
+    return OutboxEvent.builder().aggregateType(aggregateType).aggregateId(id).eventType(eventType).build();
+  }
+
+  @Test
+  void outbox_events_index_the_row_as_it_is_now() throws Exception {
+    searchIndex.indexed(Articles.class, 2, "Stale article", null);
+    searchIndex.indexed(HelpRequest.class, 2, "Stale request", null);
+    when(articlesRepository.findById(1L)).thenReturn(Optional.of(
+        Articles.builder().Id(1L).title("Fresh article").explanation("body").build()));
+    when(articlesRepository.findById(2L)).thenReturn(Optional.empty());
+    when(helpRequestRepository.findById(1L)).thenReturn(Optional.of(
+        HelpRequest.builder().id(1L).title("Fresh request").requestBody("body").build()));
+    when(helpRequestRepository.findById(2L)).thenReturn(Optional.empty());
+
+    searchIndex.outboxEvent(event("Articles", 1, OutboxEvent.SAVED));
+    searchIndex.outboxEvent(event("Articles", 2, OutboxEvent.SAVED));
+    searchIndex.outboxEvent(event("HelpRequest", 1, OutboxEvent.SAVED));
+    searchIndex.outboxEvent(event("HelpRequest", 2, OutboxEvent.DELETED));
+    searchIndex.outboxEvent(event("RecommendationRequest", 1, OutboxEvent.SAVED));
+
+    assertEquals(List.of(1L), searchIndex.search(Articles.class, "fresh", 10));
+    assertEquals(List.of(), searchIndex.search(Articles.class, "stale", 10));
+    assertEquals(List.of(1L), searchIndex.search(HelpRequest.class, "fresh", 10));
+    assertEquals(List.of(), searchIndex.search(HelpRequest.class, "stale", 10));
+  }
+
+  @Test
+  void a_failed_update_is_thrown_to_the_relay_and_later_updates_still_apply() throws Exception {
+    UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> searchIndex.update(writer -> {
+      throw new IOException("disk full");
+    }));
+    assertEquals("disk full", e.getCause().getMessage());
+
+    searchIndex.indexed(Articles.class, 1, "Still indexed", null);
+    searchIndex.indexed(Articles.class, 2, null, "Also indexed");
+
+    assertEquals(List.of(1L, 2L), searchIndex.search(Articles.class, "indexed", 10));
+  }
+
+  @Test
+  void the_index_is_kept_in_the_configured_directory_and_otherwise_in_a_temporary_one() throws Exception {
+    assertTrue(Files.list(indexDirectory).findAny().isPresent());
+
+    SearchIndexService temporary = new SearchIndexService("");
+    Path temporaryDirectory = temporary.indexPath;
+    assertTrue(Files.exists(temporaryDirectory));
+    temporary.close();
+
+    assertFalse(Files.exists(temporaryDirectory));
+    assertTrue(Files.exists(indexDirectory));
+  }
+}
@@ -0,0 +1,35 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.User;
+
+class UserCacheServiceTests {
+
+  UserCacheService userCache = new UserCacheService(100, Duration.ofMinutes(30));
+
+  User user = User.builder().id(1L).googleSub("sub-1").email("cgaucho@ucsb.edu").admin(false).build();
+
+  @Test
+  void returns_null_for_unknown_user() {
+    assertNull(userCache.getIfPresent("sub-1"));
+  }
+
+  @Test
+  void returns_user_after_put() {
+    userCache.put("sub-1", user);
+    assertSame(user, userCache.getIfPresent("sub-1"));
+  }
+
+  @Test
+  void invalidate_removes_user() {
+    userCache.put("sub-1", user);
+    userCache.invalidate("sub-1");
+    assertNull(userCache.getIfPresent("sub-1"));
+  }
+}
@@ -1,11 +1,26 @@
 package edu.ucsb.cs156.example.testconfig;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
 
+import java.time.Duration;
 
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.EntityVersionService;
+import edu.ucsb.cs156.example.services.FieldProjectionService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.NdjsonExportService;
+import edu.ucsb.cs156.example.services.UserCacheService;
+
+import static org.mockito.Mockito.mock;
 
 @TestConfiguration
 public class TestConfig {
@@ -20,4 +35,35 @@ public class TestConfig {
         return new GrantedAuthoritiesService();
     }
 
+    @Bean
+    public EntityVersionService entityVersionService() {
+        return new EntityVersionService();
+    }
+
+    @Bean
+    public UserCacheService userCacheService() {
+        return new UserCacheService(100, Duration.ofMinutes(30));
+    }
+
+    // @WebMvcTest has no database, so exports run against the mocked
+    // repositories without a real transaction or persistence context
+    @Bean
+    public NdjsonExportService ndjsonExportService(ObjectProvider<ObjectMapper> mapper) {
+        return new NdjsonExportService(mapper.getIfAvailable(ObjectMapper::new),
+                mock(PlatformTransactionManager.class), mock(EntityManager.class));
+    }
+
+    // the controllers empty the reference data caches after their writes
+    // commit; @WebMvcTest leaves out CacheConfig, so give them in-memory ones
+    @Bean
+    public CacheManager cacheManager() {
+        return new ConcurrentMapCacheManager();
+    }
+
+    // replaced by a @MockBean in the tests of the ?fields= endpoints
+    @Bean
+    public FieldProjectionService fieldProjectionService() {
+        return new FieldProjectionService(mock(EntityManager.class));
+    }
+
 }